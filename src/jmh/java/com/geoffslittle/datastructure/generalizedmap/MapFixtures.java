@@ -0,0 +1,186 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Deterministic map generators for the benchmarks, so that results are comparable from one release to the next.
+ *   1-GMaps: rings of 16 edges
+ *   2-GMaps: a square grid of quads, 2-sewn along shared edges
+ *   3-GMaps: a chain of cubes, 3-sewn along shared faces
+ */
+public final class MapFixtures {
+
+    private static final int RING_EDGES = 16;
+
+    private MapFixtures() {
+    }
+
+    public static DartStorage storage(String storage) {
+        switch (storage) {
+            case "involution":
+                return InvolutionDartStorage.involutionDartStorage();
+            case "array":
+                return ArrayDartStorage.arrayDartStorage();
+            default:
+                throw new IllegalArgumentException("Unknown storage " + storage);
+        }
+    }
+
+    /**
+     * Generates a map of the given dimension with roughly the given number of darts
+     * @return the generated fixture, with one pair of i-sewn darts left unsewn
+     */
+    public static Fixture fixture(int dimension, int darts, String storage) {
+        NGMap ngMap = NGMap.ngMap(dimension, storage(storage));
+        switch (dimension) {
+            case 1:
+                return rings(ngMap, darts);
+            case 2:
+                return quadGrid(ngMap, darts);
+            case 3:
+                return cubeChain(ngMap, darts);
+            default:
+                throw new IllegalArgumentException("Fixtures exist for dimensions 1 through 3");
+        }
+    }
+
+    private static Fixture rings(NGMap ngMap, int darts) {
+        int rings = Math.max(1, darts / (2 * RING_EDGES));
+        List<NGMap.Edge> ring = null;
+        for (int k = 0; k < rings; k++) {
+            ring = ngMap.addNPolygon(RING_EDGES);
+        }
+        // Open up the last ring, whose last dart was 1-sewn to its first, to leave a sewable pair
+        NGMap.Dart left = ring.get(RING_EDGES - 1).get_2();
+        NGMap.Dart right = ring.get(0).get_1();
+        ngMap.unsew(left, 1);
+        return new Fixture(ngMap, left, right);
+    }
+
+    private static Fixture quadGrid(NGMap ngMap, int darts) {
+        int width = Math.max(2, (int) Math.sqrt(darts / 8));
+        Square[][] grid = new Square[width][width];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < width; y++) {
+                grid[x][y] = square(ngMap);
+                if (x > 0) {
+                    // The right edge of the left neighbor meets our left edge
+                    ngMap.sew(grid[x - 1][y].edges[1].get_1(), grid[x][y].edges[3].get_2(), 2);
+                }
+                if (y > 0) {
+                    // The top edge of the lower neighbor meets our bottom edge
+                    ngMap.sew(grid[x][y - 1].edges[0].get_1(), grid[x][y].edges[2].get_2(), 2);
+                }
+            }
+        }
+        NGMap.Dart left = grid[0][0].edges[1].get_1();
+        NGMap.Dart right = grid[1][0].edges[3].get_2();
+        ngMap.unsew(left, 2);
+        return new Fixture(ngMap, left, right);
+    }
+
+    private static Fixture cubeChain(NGMap ngMap, int darts) {
+        int cubes = Math.max(2, darts / 48);
+        Square[] previous = null;
+        NGMap.Dart left = null;
+        NGMap.Dart right = null;
+        for (int k = 0; k < cubes; k++) {
+            Square[] cube = cube(ngMap);
+            if (previous != null) {
+                ngMap.sew(previous[5].edges[0].get_1(), cube[0].edges[0].get_1(), 3);
+            }
+            if (k == 1) {
+                // Open up the sewing of the first two cubes
+                left = previous[5].edges[0].get_1();
+                right = cube[0].edges[0].get_1();
+            }
+            previous = cube;
+        }
+        ngMap.unsew(left, 3);
+        return new Fixture(ngMap, left, right);
+    }
+
+    /*
+     *       d1     d2
+     *        *--e1--*
+     *    d8 *        * d3
+     *       |        |
+     *      e4       e2
+     *       |        |
+     *    d7 *        * d4
+     *        *--e3--*
+     *       d6      d5
+     */
+    private static Square square(NGMap ngMap) {
+        NGMap.Edge[] edges = new NGMap.Edge[4];
+        for (int k = 0; k < 4; k++) {
+            edges[k] = ngMap.addEdge();
+        }
+        ngMap.sew(edges[0].get_1(), edges[3].get_2(), 1);
+        ngMap.sew(edges[1].get_1(), edges[0].get_2(), 1);
+        ngMap.sew(edges[2].get_1(), edges[1].get_2(), 1);
+        ngMap.sew(edges[3].get_1(), edges[2].get_2(), 1);
+        return new Square(edges);
+    }
+
+    private static Square[] cube(NGMap ngMap) {
+        Square[] squares = new Square[6];
+        for (int k = 0; k < 6; k++) {
+            squares[k] = square(ngMap);
+        }
+        ngMap.sew(squares[0].edges[0].get_1(), squares[1].edges[2].get_2(), 2);
+        ngMap.sew(squares[0].edges[1].get_1(), squares[2].edges[3].get_2(), 2);
+        ngMap.sew(squares[0].edges[2].get_1(), squares[3].edges[0].get_2(), 2);
+        ngMap.sew(squares[0].edges[3].get_1(), squares[4].edges[1].get_2(), 2);
+
+        ngMap.sew(squares[1].edges[0].get_1(), squares[5].edges[2].get_2(), 2);
+        ngMap.sew(squares[1].edges[1].get_1(), squares[2].edges[0].get_2(), 2);
+        ngMap.sew(squares[1].edges[3].get_1(), squares[4].edges[0].get_2(), 2);
+
+        ngMap.sew(squares[2].edges[1].get_1(), squares[5].edges[1].get_2(), 2);
+        ngMap.sew(squares[2].edges[2].get_1(), squares[3].edges[1].get_2(), 2);
+
+        ngMap.sew(squares[3].edges[2].get_1(), squares[5].edges[0].get_2(), 2);
+        ngMap.sew(squares[3].edges[3].get_1(), squares[4].edges[2].get_2(), 2);
+
+        ngMap.sew(squares[4].edges[3].get_1(), squares[5].edges[3].get_2(), 2);
+        return squares;
+    }
+
+    private static final class Square {
+        private final NGMap.Edge[] edges;
+
+        private Square(NGMap.Edge[] edges) {
+            this.edges = edges;
+        }
+    }
+
+    /**
+     * A generated map plus a pair of darts which are sewable in the top dimension
+     */
+    public static final class Fixture {
+        public final NGMap ngMap;
+        public final NGMap.Dart left;
+        public final NGMap.Dart right;
+
+        private Fixture(NGMap ngMap, NGMap.Dart left, NGMap.Dart right) {
+            this.ngMap = ngMap;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    public static List<NGMap.Dart> sample(NGMap ngMap, int size) {
+        List<NGMap.Dart> darts = Lists.newArrayList(ngMap.darts());
+        darts.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        List<NGMap.Dart> sample = Lists.newArrayListWithCapacity(size);
+        // A fixed stride rather than a random sample keeps runs reproducible
+        for (int k = 0; k < size; k++) {
+            sample.add(darts.get((int) ((long) k * 7919 % darts.size())));
+        }
+        return sample;
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the core n-GMap operations on generated maps, see {@link MapFixtures}.  Run with the GC profiler (as the
+ * jmh Gradle task does) to get allocation rates alongside throughput and average latency.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NGMapBenchmark {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int darts;
+
+    @Param({"1", "2", "3"})
+    private int dimension;
+
+    @Param({"involution", "array"})
+    private String storage;
+
+    private MapFixtures.Fixture fixture;
+    private NGMap.Dart[] sample;
+    private int next;
+
+    private NGMap polygonMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = MapFixtures.fixture(dimension, darts, storage);
+        List<NGMap.Dart> sampled = MapFixtures.sample(fixture.ngMap, SAMPLE_SIZE);
+        sample = sampled.toArray(new NGMap.Dart[SAMPLE_SIZE]);
+        // The top-dimensional cell of every sampled dart gets an attribute, so getAttribute, which only reads the
+        // sample, always finds one
+        for (NGMap.Dart dart : sample) {
+            if (!fixture.ngMap.getAttribute(dart, dimension).isPresent()) {
+                fixture.ngMap.putAttribute(dart, dimension, new IdAttribute(dart.getId()));
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpPolygonMap() {
+        polygonMap = NGMap.ngMap(dimension, MapFixtures.storage(storage));
+    }
+
+    private NGMap.Dart nextDart() {
+        next = (next + 1) & (SAMPLE_SIZE - 1);
+        return sample[next];
+    }
+
+    @Benchmark
+    public List<NGMap.Dart> iCell() {
+        return fixture.ngMap.iCell(nextDart(), dimension);
+    }
+
+    @Benchmark
+    public List<NGMap.Dart> vertex() {
+        return fixture.ngMap.iCell(nextDart(), 0);
+    }
+
+    @Benchmark
+    public Optional<Attribute> getAttribute() {
+        return fixture.ngMap.getAttribute(nextDart(), dimension);
+    }
+
+    @Benchmark
+    public long cells() {
+        return fixture.ngMap.cells(0).count();
+    }
+
+    @Benchmark
+    public long parallelCells() {
+        return fixture.ngMap.cells(0).parallel().count();
+    }
+
+    @Benchmark
+    public boolean isSewable() {
+        return fixture.ngMap.isSewable(fixture.left, fixture.right, dimension);
+    }
+
+    /**
+     * Sewing has to be undone to measure it repeatedly, so this measures a sew plus an unsew
+     */
+    @Benchmark
+    public NGMap sewUnsew() {
+        fixture.ngMap.sew(fixture.left, fixture.right, dimension);
+        fixture.ngMap.unsew(fixture.left, dimension);
+        return fixture.ngMap;
+    }
+
+    @Benchmark
+    public NGMap addNPolygon() {
+        polygonMap.addNPolygon(8);
+        return polygonMap;
+    }
+
+    private static final class IdAttribute implements Attribute {
+        private final int id;
+
+        private IdAttribute(int id) {
+            this.id = id;
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building a 2-GMap from the faces of a closed quad grid (a torus), with and without the final validation
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NGMapBuilderBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int faces;
+
+    private int[][] grid;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int side = (int) Math.sqrt(faces);
+        grid = new int[side * side][];
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int nextRow = (row + 1) % side;
+                int nextColumn = (column + 1) % side;
+                grid[row * side + column] = new int[] { row * side + column, row * side + nextColumn,
+                        nextRow * side + nextColumn, nextRow * side + column };
+            }
+        }
+    }
+
+    @Benchmark
+    public NGMap build() {
+        return builder().build();
+    }
+
+    @Benchmark
+    public NGMap buildAndValidate() {
+        return builder().build(true);
+    }
+
+    private NGMapBuilder builder() {
+        NGMapBuilder builder = NGMapBuilder.ngMapBuilder(8 * grid.length);
+        for (int[] face : grid) {
+            builder.addFace(face);
+        }
+        return builder;
+    }
+
+}
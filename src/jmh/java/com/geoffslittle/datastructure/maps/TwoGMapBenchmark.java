@@ -0,0 +1,69 @@
+package com.geoffslittle.datastructure.maps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building a {@link TwoGMap} edge by edge, along a path, where every vertex has degree at most 2, and as a
+ * star, where every edge is added at the same hub vertex
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TwoGMapBenchmark {
+
+    // Each benchmark has its own sizes, rather than running for every size of the other
+    @State(Scope.Benchmark)
+    public static class Path {
+        @Param({"1000", "10000", "100000"})
+        private int vertices;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Star {
+        @Param({"100", "1000", "10000"})
+        private int spokes;
+    }
+
+    /**
+     * Builds a path through all the vertices, one addEdge per consecutive pair
+     */
+    @Benchmark
+    public TwoGMap addEdgePath(Path path) {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex previous = twoGMap.addVertex();
+        for (int k = 1; k < path.vertices; k++) {
+            TwoGMap.Vertex current = twoGMap.addVertex();
+            twoGMap.addEdge(previous, current);
+            previous = current;
+        }
+        return twoGMap;
+    }
+
+    /**
+     * Joins a hub to each of the other vertices, so the k-th addEdge lands on a vertex of degree k: the time per edge
+     * should stay flat as the number of spokes grows
+     */
+    @Benchmark
+    public TwoGMap addEdgeStar(Star star) {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex hub = twoGMap.addVertex();
+        for (int k = 0; k < star.spokes; k++) {
+            twoGMap.addEdge(hub, twoGMap.addVertex());
+        }
+        return twoGMap;
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link DartStorage} which keeps every alpha as a dense int[] column indexed by dart id, with {@link #FREE} marking
+ * unsewn darts, and dart membership as a single bit per id.  Each link costs 4 bytes per dimension instead of the
+ * boxed key, {@link java.util.Optional} and hash entry of {@link InvolutionDartStorage}, which assumes dart ids stay
+ * reasonably dense (as the ids handed out by {@link NGMap} do).
+ */
+public class ArrayDartStorage implements DartStorage {
+
+    private static final int INITIAL_CAPACITY = 16;
+    // Largest array size the JVM reliably allocates
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private int[][] alphas;
+    private final BitSet darts;
+    private int capacity;
+    // linkCounts[i] is the number of pairs linked in alphas[i]
+    private int[] linkCounts;
+
+    private ArrayDartStorage(int[][] alphas, BitSet darts, int[] linkCounts) {
+        this.capacity = alphas[0].length;
+        this.alphas = alphas;
+        this.darts = darts;
+        this.linkCounts = linkCounts;
+    }
+
+    public static ArrayDartStorage arrayDartStorage() {
+        return new ArrayDartStorage(new int[][] { new int[INITIAL_CAPACITY] }, new BitSet(INITIAL_CAPACITY),
+                new int[1]);
+    }
+
+    /**
+     * Wraps columns as they are, without any validation besides counting their links; every column must have the
+     * same length
+     */
+    static ArrayDartStorage arrayDartStorage(int[][] alphas, BitSet darts) {
+        int[] linkCounts = new int[alphas.length];
+        for (int i = 0; i < alphas.length; i++) {
+            for (int codart : alphas[i]) {
+                if (codart != FREE) {
+                    linkCounts[i]++;
+                }
+            }
+            // Each link was counted from both of its darts
+            linkCounts[i] >>= 1;
+        }
+        return new ArrayDartStorage(alphas, darts, linkCounts);
+    }
+
+    @Override
+    public int dimension() {
+        return alphas.length - 1;
+    }
+
+    @Override
+    public void increaseDimension() {
+        alphas = Arrays.copyOf(alphas, alphas.length + 1);
+        alphas[alphas.length - 1] = new int[capacity];
+        linkCounts = Arrays.copyOf(linkCounts, alphas.length);
+    }
+
+    @Override
+    public void decreaseDimension() {
+        Preconditions.checkState(linkCounts[dimension()] == 0);
+        alphas = Arrays.copyOf(alphas, alphas.length - 1);
+        linkCounts = Arrays.copyOf(linkCounts, alphas.length);
+    }
+
+    @Override
+    public boolean containsDart(int dart) {
+        return dart > 0 && darts.get(dart);
+    }
+
+    @Override
+    public void addDart(int dart) {
+        Preconditions.checkArgument(dart > 0, "Dart ids must be positive");
+        ensureCapacity(dart);
+        darts.set(dart);
+    }
+
+    @Override
+    public void removeDart(int dart) {
+        if (0 < dart && dart < capacity) {
+            darts.clear(dart);
+            for (int i = 0; i < alphas.length; i++) {
+                unlink(i, dart);
+            }
+        }
+    }
+
+    @Override
+    public int linkCount(int i) {
+        return linkCounts[i];
+    }
+
+    @Override
+    public boolean supportsOptimisticReads() {
+        return true;
+    }
+
+    @Override
+    public int alpha(int i, int dart) {
+        int[] alpha = alphas[i];
+        return dart < alpha.length ? alpha[dart] : FREE;
+    }
+
+    @Override
+    public void link(int i, int dart, int codart) {
+        ensureCapacity(Math.max(dart, codart));
+        alphas[i][dart] = codart;
+        alphas[i][codart] = dart;
+        linkCounts[i]++;
+    }
+
+    @Override
+    public void unlink(int i, int dart) {
+        int codart = alpha(i, dart);
+        if (codart != FREE) {
+            alphas[i][codart] = FREE;
+            alphas[i][dart] = FREE;
+            linkCounts[i]--;
+        }
+    }
+
+    @Override
+    public void forEachDart(IntConsumer action) {
+        for (int dart = darts.nextSetBit(0); dart >= 0; dart = darts.nextSetBit(dart + 1)) {
+            action.accept(dart);
+        }
+    }
+
+    private void ensureCapacity(int dart) {
+        if (dart < capacity) {
+            return;
+        }
+        long grown = capacity;
+        while (grown <= dart) {
+            grown = grown << 1;
+        }
+        int newCapacity = (int) Math.min(grown, MAX_CAPACITY);
+        Preconditions.checkState(dart < newCapacity, "Dart id out of range");
+        for (int i = 0; i < alphas.length; i++) {
+            alphas[i] = Arrays.copyOf(alphas[i], newCapacity);
+        }
+        capacity = newCapacity;
+    }
+
+}
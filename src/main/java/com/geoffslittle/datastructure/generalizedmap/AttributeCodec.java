@@ -0,0 +1,14 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+
+/**
+ * Converts attributes to and from bytes, so that {@link NGMapSerializer} can persist them
+ */
+public interface AttributeCodec {
+
+    byte[] encode(Attribute attribute);
+
+    Attribute decode(byte[] bytes);
+
+}
@@ -0,0 +1,36 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+
+/**
+ * The attributes of the i-cells of an n-GMap, by the label of their cell, kept on the heap
+ * ({@link HeapAttributeColumn}) or in mapped files ({@link MappedAttributeColumn})
+ */
+interface AttributeColumn {
+
+    /**
+     * @return the attribute of the given label, or null
+     */
+    Attribute get(int label);
+
+    /**
+     * Sets or, given null, removes the attribute of the given label
+     */
+    void set(int label, Attribute attribute);
+
+    /**
+     * @return an upper bound on the labels holding an attribute
+     */
+    int length();
+
+    /**
+     * @return a read-only copy of the column, on the heap
+     */
+    AttributeColumn snapshot();
+
+    /**
+     * Moves every attribute to its renumbered label, given map[old label] = new label
+     */
+    void renumber(int[] map);
+
+}
@@ -0,0 +1,173 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Holds at most one attribute per i-cell, in a dense column per dimension indexed by the label the {@link CellIndex}
+ * gives the cell.  A lookup is a chunked array read: nothing is allocated and no other dart of the cell is probed.
+ * Columns are {@link AttributeColumn}s from the {@link Columns} of the n-GMap: on the heap they're snapshotted in O(1)
+ * per dimension, and in mapped files they're reopened as they were left.
+ *
+ * As a {@link CellIndex.Listener} it keeps every attribute on the label of its cell.  When two attributed cells merge,
+ * the attribute of the cell with the smaller label wins; when a cell splits, both parts keep its attribute.
+ *
+ * Within a transaction every write is logged to the {@link ChangeJournal} with the attribute it replaced.  While a
+ * transaction is rolled back the store is muted: cells merge and split without moving attributes, as the journal puts
+ * every slot back as it was.
+ */
+final class AttributeStore implements CellIndex.Listener {
+
+    private final Columns columns;
+    // slots[i].get(label) is the attribute of the i-cell with the given label, or null
+    private AttributeColumn[] slots;
+    // Logs every write while a transaction is open, otherwise null
+    private ChangeJournal journal;
+    private boolean muted;
+
+    AttributeStore(int dimension) {
+        this(dimension, Columns.HEAP);
+    }
+
+    /**
+     * @param columns, where to keep the columns, which are reopened if they're persistent
+     */
+    AttributeStore(int dimension, Columns columns) {
+        this(columns, new AttributeColumn[dimension + 1]);
+        for (int i = 0; i <= dimension; i++) {
+            slots[i] = columns.attributeColumn(i, false);
+        }
+    }
+
+    private AttributeStore(Columns columns, AttributeColumn[] slots) {
+        this.columns = columns;
+        this.slots = slots;
+    }
+
+    void dimensionChanged(int dimension) {
+        for (int i = dimension + 1; i < slots.length; i++) {
+            if (slots[i] != null) {
+                columns.dropAttributeColumn(i);
+            }
+        }
+        slots = Arrays.copyOf(slots, dimension + 1);
+    }
+
+    /**
+     * @return a read-only store sharing every heap column with this one, and copying every mapped column
+     */
+    AttributeStore snapshot() {
+        AttributeColumn[] snapshot = new AttributeColumn[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                snapshot[i] = slots[i].snapshot();
+            }
+        }
+        return new AttributeStore(Columns.HEAP, snapshot);
+    }
+
+    Attribute get(int i, int label) {
+        AttributeColumn column = slots[i];
+        return column != null ? column.get(label) : null;
+    }
+
+    void put(int i, int label, Attribute attribute) {
+        if (slots[i] == null) {
+            slots[i] = columns.attributeColumn(i, true);
+        }
+        set(slots[i], i, label, attribute);
+    }
+
+    void remove(int i, int label) {
+        AttributeColumn column = slots[i];
+        if (column != null) {
+            set(column, i, label, null);
+        }
+    }
+
+    private void set(AttributeColumn column, int i, int label, Attribute attribute) {
+        if (journal != null) {
+            Attribute previous = column.get(label);
+            if (previous == attribute) {
+                return;
+            }
+            journal.attributeSet(i, label, previous);
+        }
+        column.set(label, attribute);
+    }
+
+    void setJournal(ChangeJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Stops or resumes following merges and splits of cells
+     */
+    void setMuted(boolean muted) {
+        this.muted = muted;
+    }
+
+    /**
+     * Visits every attribute of the i-cells along with the label of its cell
+     */
+    void forEach(int i, ObjIntConsumer<Attribute> action) {
+        AttributeColumn column = slots[i];
+        if (column == null) {
+            return;
+        }
+        for (int label = 0; label < column.length(); label++) {
+            Attribute attribute = column.get(label);
+            if (attribute != null) {
+                action.accept(attribute, label);
+            }
+        }
+    }
+
+    /**
+     * Moves every attribute to the renumbered label of its cell, given map[old label] = new label
+     */
+    void renumbered(int[] map) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                slots[i].renumber(map);
+            }
+        }
+    }
+
+    /**
+     * Drops the attributes of a dart which is a cell of its own in every dimension
+     */
+    void removed(int dart) {
+        for (int i = 0; i < slots.length; i++) {
+            remove(i, dart);
+        }
+    }
+
+    @Override
+    public void merged(int i, int kept, int dropped) {
+        if (muted) {
+            return;
+        }
+        Attribute attribute = get(i, dropped);
+        if (attribute != null) {
+            remove(i, dropped);
+            if (get(i, kept) == null) {
+                put(i, kept, attribute);
+            }
+        }
+    }
+
+    @Override
+    public void split(int i, int from, int to) {
+        if (muted) {
+            return;
+        }
+        Attribute attribute = get(i, from);
+        if (attribute != null && get(i, to) == null) {
+            put(i, to, attribute);
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * An incrementally maintained labeling of darts by i-cell, kept only for the dimensions that have been indexed.  The
+ * label of a dart is the smallest dart id in its i-cell, so labels are canonical: the same cells always get the same
+ * labels no matter in which order they were sewn.
+ *
+ * Linking two darts in alpha_j can only merge i-cells (j != i), which relabels the cell with the larger label before
+ * the link is made.  Unlinking can split cells; the affected darts are queued and {@link #settle()} relabels each
+ * affected cell once the whole operation is done, so unsewing a large orbit costs one traversal per affected cell.
+ * As every merge and split goes through here, the number of cells of each indexed dimension is kept along the way.
+ */
+final class CellIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Notified as cells change labels, so that anything stored per cell can follow its cell
+     */
+    interface Listener {
+        /**
+         * The i-cell labelled dropped has been merged into the i-cell labelled kept
+         */
+        void merged(int i, int kept, int dropped);
+
+        /**
+         * Part of the i-cell labelled from has been split off as a new i-cell labelled to
+         */
+        void split(int i, int from, int to);
+    }
+
+    private final DartStorage storage;
+    // The alphas whose orbits make up the i-cells
+    private final IntFunction<int[]> dims;
+    private final Listener listener;
+    private final OrbitTraversal traversal;
+
+    // labels[i].get(dart) is the label of the i-cell of the dart, or null if dimension i isn't indexed.  Columns are
+    // copied on write so that snapshots can keep them
+    private CopyOnWriteIntArray[] labels;
+    private int indexed;
+    private int capacity;
+    // counts[i] is the number of i-cells, for the indexed dimensions
+    private int[] counts;
+
+    // Darts whose cells may have been split by unlinking in alpha_{pendingDims[k]}
+    private int[] pendingDarts;
+    private int[] pendingDims;
+    private int pendingSize;
+    // settled[dart] == settleEpoch iff the dart's cell was already relabelled by the current settle
+    private int[] settled;
+    private int settleEpoch;
+
+    CellIndex(DartStorage storage, IntFunction<int[]> dims, Listener listener) {
+        this.storage = storage;
+        this.dims = dims;
+        this.listener = listener;
+        this.traversal = new OrbitTraversal();
+        this.labels = new CopyOnWriteIntArray[storage.dimension() + 1];
+        this.counts = new int[storage.dimension() + 1];
+        this.capacity = INITIAL_CAPACITY;
+        this.pendingDarts = new int[INITIAL_CAPACITY];
+        this.pendingDims = new int[INITIAL_CAPACITY];
+        this.settled = new int[INITIAL_CAPACITY];
+    }
+
+    boolean isIndexed(int i) {
+        return 0 <= i && i < labels.length && labels[i] != null;
+    }
+
+    boolean isEmpty() {
+        return indexed == 0;
+    }
+
+    /**
+     * Labels every dart by its i-cell, one traversal per cell
+     */
+    void index(int i) {
+        if (isIndexed(i)) {
+            return;
+        }
+        storage.forEachDart(this::ensureCapacity);
+        CopyOnWriteIntArray column = new CopyOnWriteIntArray();
+        labels[i] = column;
+        indexed++;
+        counts[i] = 0;
+        storage.forEachDart(dart -> {
+            if (column.get(dart) == DartStorage.FREE) {
+                relabel(column, traversal.traverse(storage, dart, dims.apply(i)));
+                counts[i]++;
+            }
+        });
+    }
+
+    void dimensionChanged(int dimension) {
+        labels = Arrays.copyOf(labels, dimension + 1);
+        counts = Arrays.copyOf(counts, dimension + 1);
+        indexed = (int) Arrays.stream(labels).filter(column -> column != null).count();
+    }
+
+    /**
+     * @return the number of i-cells; only valid for indexed dimensions
+     */
+    int count(int i) {
+        return counts[i];
+    }
+
+    /**
+     * @return the label of the dart's i-cell; only valid for indexed dimensions
+     */
+    int label(int i, int dart) {
+        return labels[i].get(dart);
+    }
+
+    /**
+     * @return a read-only copy of the label columns as they are now, null for the dimensions which aren't indexed, in
+     * O(1) per dimension
+     */
+    CopyOnWriteIntArray[] snapshot() {
+        CopyOnWriteIntArray[] snapshot = new CopyOnWriteIntArray[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] != null) {
+                snapshot[i] = labels[i].snapshot();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Moves every label to the renumbered darts, given map[old id] = new id (FREE for removed ids).  Renumbering
+     * must preserve the order of the darts so that labels stay the smallest dart of their cell.
+     */
+    void renumbered(int[] map) {
+        for (int i = 0; i < labels.length; i++) {
+            CopyOnWriteIntArray column = labels[i];
+            if (column == null) {
+                continue;
+            }
+            CopyOnWriteIntArray renumbered = new CopyOnWriteIntArray();
+            for (int dart = 1; dart < map.length; dart++) {
+                if (map[dart] != DartStorage.FREE) {
+                    renumbered.set(map[dart], map[column.get(dart)]);
+                }
+            }
+            labels[i] = renumbered;
+        }
+    }
+
+    void added(int dart) {
+        ensureCapacity(dart);
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] != null) {
+                labels[i].set(dart, dart);
+                counts[i]++;
+            }
+        }
+    }
+
+    /**
+     * The dart must be isolated and settled, i.e. a cell of its own in every dimension
+     */
+    void removed(int dart) {
+        if (dart >= capacity) {
+            return;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] != null) {
+                labels[i].set(dart, DartStorage.FREE);
+                counts[i]--;
+            }
+        }
+    }
+
+    /**
+     * Must be called before dart and codart are linked in alpha_j: merges their i-cells for every indexed i != j
+     */
+    void beforeLink(int j, int dart, int codart) {
+        for (int i = 0; i < labels.length; i++) {
+            CopyOnWriteIntArray column = labels[i];
+            if (column == null || i == j) {
+                continue;
+            }
+            int label = column.get(dart);
+            int colabel = column.get(codart);
+            if (label == colabel) {
+                continue;
+            }
+            int kept = Math.min(label, colabel);
+            int dropped = Math.max(label, colabel);
+            int source = label == dropped ? dart : codart;
+            int size = traversal.traverse(storage, source, dims.apply(i));
+            for (int k = 0; k < size; k++) {
+                column.set(traversal.dart(k), kept);
+            }
+            counts[i]--;
+            listener.merged(i, kept, dropped);
+        }
+    }
+
+    /**
+     * Must be called after dart and codart were unlinked in alpha_j; their cells get relabelled by {@link #settle()}
+     */
+    void unlinked(int j, int dart, int codart) {
+        if (isEmpty()) {
+            return;
+        }
+        if (pendingSize + 2 > pendingDarts.length) {
+            pendingDarts = Arrays.copyOf(pendingDarts, pendingDarts.length << 1);
+            pendingDims = Arrays.copyOf(pendingDims, pendingDims.length << 1);
+        }
+        pendingDarts[pendingSize] = dart;
+        pendingDims[pendingSize++] = j;
+        pendingDarts[pendingSize] = codart;
+        pendingDims[pendingSize++] = j;
+    }
+
+    /**
+     * Relabels every cell which contains a dart unlinked since the last settle
+     */
+    void settle() {
+        if (pendingSize == 0) {
+            return;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            CopyOnWriteIntArray column = labels[i];
+            if (column == null) {
+                continue;
+            }
+            nextSettleEpoch();
+            for (int k = 0; k < pendingSize; k++) {
+                int dart = pendingDarts[k];
+                if (pendingDims[k] == i || settled[dart] == settleEpoch || !storage.containsDart(dart)) {
+                    continue;
+                }
+                int from = column.get(dart);
+                int size = traversal.traverse(storage, dart, dims.apply(i));
+                int to = relabel(column, size);
+                for (int m = 0; m < size; m++) {
+                    settled[traversal.dart(m)] = settleEpoch;
+                }
+                if (from != to) {
+                    counts[i]++;
+                    listener.split(i, from, to);
+                }
+            }
+        }
+        pendingSize = 0;
+    }
+
+    /**
+     * Labels the cell in the traversal by its smallest dart
+     * @return the label
+     */
+    private int relabel(CopyOnWriteIntArray column, int size) {
+        int label = Integer.MAX_VALUE;
+        for (int k = 0; k < size; k++) {
+            label = Math.min(label, traversal.dart(k));
+        }
+        for (int k = 0; k < size; k++) {
+            column.set(traversal.dart(k), label);
+        }
+        return label;
+    }
+
+    private void nextSettleEpoch() {
+        settleEpoch++;
+        if (settleEpoch == 0) {
+            Arrays.fill(settled, 0);
+            settleEpoch = 1;
+        }
+    }
+
+    private void ensureCapacity(int dart) {
+        if (dart < capacity) {
+            return;
+        }
+        int newCapacity = Math.max(dart + 1, capacity << 1);
+        settled = Arrays.copyOf(settled, newCapacity);
+        capacity = newCapacity;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Splits the darts of a {@link DartRegistry} by position and emits every i-cell exactly once, owned by its smallest
+ * dart.
+ *
+ * With a cell index the owner is known up front: a dart emits its cell iff it labels it.  Without one, a dart whose
+ * cell wasn't claimed yet traverses the cell and tries to claim it with a CAS on the cell's smallest dart.  Only the
+ * winner marks the rest of the cell, so later darts of the cell skip it without traversing.  Two workers may traverse
+ * the same cell at once, but only one of them emits it.
+ *
+ * The n-GMap must not change while the cells are being enumerated.
+ */
+final class CellSpliterator implements Spliterator<List<NGMap.Dart>> {
+
+    // Ranges smaller than this aren't worth handing to another worker
+    private static final int MIN_SPLIT = 1 << 10;
+
+    private final DartStorage storage;
+    private final int[] dims;
+    private final DartRegistry darts;
+    // The cell labels, or null if the dimension isn't indexed
+    private final IntUnaryOperator labels;
+    // claims[dart] != 0 iff the cell of the dart was claimed; only used without labels
+    private final AtomicIntegerArray claims;
+    private final ThreadLocal<OrbitTraversal> traversals;
+    // The range of positions in the registry left to visit
+    private int from;
+    private final int to;
+
+    /**
+     * @param idBound, an upper bound on the dart ids
+     */
+    CellSpliterator(DartStorage storage, int[] dims, IntUnaryOperator labels, DartRegistry darts, int idBound) {
+        this(storage, dims, darts, labels, labels == null ? new AtomicIntegerArray(idBound) : null,
+                ThreadLocal.withInitial(OrbitTraversal::new), 0, darts.size());
+    }
+
+    private CellSpliterator(DartStorage storage, int[] dims, DartRegistry darts, IntUnaryOperator labels,
+                            AtomicIntegerArray claims, ThreadLocal<OrbitTraversal> traversals, int from, int to) {
+        this.storage = storage;
+        this.dims = dims;
+        this.darts = darts;
+        this.labels = labels;
+        this.claims = claims;
+        this.traversals = traversals;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super List<NGMap.Dart>> action) {
+        while (from < to) {
+            int dart = darts.dart(from++);
+            if (labels != null) {
+                if (labels.applyAsInt(dart) == dart) {
+                    OrbitTraversal traversal = traversals.get();
+                    action.accept(cell(traversal, traversal.traverse(storage, dart, dims)));
+                    return true;
+                }
+            } else if (claims.get(dart) == 0) {
+                OrbitTraversal traversal = traversals.get();
+                int size = traversal.traverse(storage, dart, dims);
+                int owner = Integer.MAX_VALUE;
+                for (int k = 0; k < size; k++) {
+                    owner = Math.min(owner, traversal.dart(k));
+                }
+                if (claims.compareAndSet(owner, 0, 1)) {
+                    for (int k = 0; k < size; k++) {
+                        claims.lazySet(traversal.dart(k), 1);
+                    }
+                    action.accept(cell(traversal, size));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<NGMap.Dart> cell(OrbitTraversal traversal, int size) {
+        List<NGMap.Dart> cell = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            cell.add(new NGMap.Dart(traversal.dart(k)));
+        }
+        return cell;
+    }
+
+    @Override
+    public Spliterator<List<NGMap.Dart>> trySplit() {
+        if (to - from < MIN_SPLIT) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        CellSpliterator prefix = new CellSpliterator(storage, dims, darts, labels, claims, traversals, from,
+                middle);
+        from = middle;
+        return prefix;
+    }
+
+    /**
+     * @return the number of darts left to visit, an upper bound on the number of cells left
+     */
+    @Override
+    public long estimateSize() {
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL | DISTINCT;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+
+import java.util.Arrays;
+
+/**
+ * The changes made to an n-GMap since its transaction began, in order, so that they can be undone in reverse: pairs of
+ * darts linked and unlinked, darts added and removed, and every write to an attribute slot along with the attribute it
+ * replaced.  Attribute writes are logged slot by slot, including the ones made as the cell index merges and splits
+ * cells, so that undoing them restores every slot whatever labels the cells went through in between.
+ */
+final class ChangeJournal {
+
+    static final int LINK = 0;
+    static final int UNLINK = 1;
+    // A dart added with an id that was free, or one that grew the id bound
+    static final int ADD = 2;
+    static final int ADD_GROWN = 3;
+    static final int REMOVE = 4;
+    static final int ATTRIBUTE = 5;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] kinds;
+    // Three ints per entry: i, dart and codart for links; the dart for darts; i and the label for attributes
+    private int[] ints;
+    // The attribute each attribute write replaced
+    private Attribute[] replaced;
+    private int size;
+
+    ChangeJournal() {
+        this.kinds = new int[INITIAL_CAPACITY];
+        this.ints = new int[3 * INITIAL_CAPACITY];
+        this.replaced = new Attribute[INITIAL_CAPACITY];
+    }
+
+    void linked(int i, int dart, int codart) {
+        append(LINK, i, dart, codart, null);
+    }
+
+    void unlinked(int i, int dart, int codart) {
+        append(UNLINK, i, dart, codart, null);
+    }
+
+    void added(int dart, boolean grown) {
+        append(grown ? ADD_GROWN : ADD, 0, dart, DartStorage.FREE, null);
+    }
+
+    void removed(int dart) {
+        append(REMOVE, 0, dart, DartStorage.FREE, null);
+    }
+
+    void attributeSet(int i, int label, Attribute previous) {
+        append(ATTRIBUTE, i, label, DartStorage.FREE, previous);
+    }
+
+    /**
+     * @return the number of changes
+     */
+    int size() {
+        return size;
+    }
+
+    int kind(int k) {
+        return kinds[k];
+    }
+
+    int dimension(int k) {
+        return ints[3 * k];
+    }
+
+    /**
+     * @return the dart of a change to the darts or the alphas, or the label of an attribute write
+     */
+    int dart(int k) {
+        return ints[3 * k + 1];
+    }
+
+    int codart(int k) {
+        return ints[3 * k + 2];
+    }
+
+    Attribute replaced(int k) {
+        return replaced[k];
+    }
+
+    private void append(int kind, int i, int dart, int codart, Attribute previous) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size << 1);
+            ints = Arrays.copyOf(ints, 3 * (size << 1));
+            replaced = Arrays.copyOf(replaced, size << 1);
+        }
+        kinds[size] = kind;
+        ints[3 * size] = i;
+        ints[3 * size + 1] = dart;
+        ints[3 * size + 2] = codart;
+        replaced[size] = previous;
+        size++;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+/**
+ * Where an {@link NGMap} keeps what it holds alongside its storage: the registry of its darts, its free dart ids and
+ * its attribute columns.  {@link #HEAP} keeps them on the heap, to be rebuilt from the storage whenever it's reopened;
+ * a {@link MappedDartStorage} keeps them in files of its own, so that reopening the n-GMap finds them as they were.
+ */
+interface Columns {
+
+    Columns HEAP = new Columns() {
+
+        private static final int INITIAL_LENGTH = 16;
+
+        @Override
+        public boolean isPersistent() {
+            return false;
+        }
+
+        @Override
+        public int dartCount() {
+            return -1;
+        }
+
+        @Override
+        public IntColumn intColumn(String name) {
+            return new HeapIntColumn(INITIAL_LENGTH);
+        }
+
+        @Override
+        public AttributeColumn attributeColumn(int i, boolean create) {
+            return create ? new HeapAttributeColumn() : null;
+        }
+
+        @Override
+        public void dropAttributeColumn(int i) {
+        }
+    };
+
+    /**
+     * @return whether the columns outlive the n-GMap, in which case they're reopened rather than rebuilt
+     */
+    boolean isPersistent();
+
+    /**
+     * @return the number of darts in the storage, which reopened columns are checked against, or -1 if they aren't
+     * persistent
+     */
+    int dartCount();
+
+    /**
+     * @return the int column with the given name, as it was left if it's persistent
+     */
+    IntColumn intColumn(String name);
+
+    /**
+     * @return the attribute column of the i-cells, or null if there's none and it's not to be created
+     */
+    AttributeColumn attributeColumn(int i, boolean create);
+
+    /**
+     * Drops the attribute column of the i-cells, once the n-GMap no longer has dimension i
+     */
+    void dropAttributeColumn(int i);
+
+}
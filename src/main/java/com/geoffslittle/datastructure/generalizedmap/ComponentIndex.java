@@ -0,0 +1,251 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * An incrementally maintained labeling of darts by connected component, i.e. by orbit of every alpha, kept once
+ * {@link #index()} has been called.  Unlike the {@link CellIndex}, labels aren't canonical: they are handed out by a
+ * {@link DartIdAllocator}, and the size of each component is kept by label, so that
+ *
+ *   Linking two components relabels the smaller one.
+ *   Unlinking two darts searches from both of them at once, a dart at a time each, until the searches meet, in which
+ *   case the component is still whole, or one of them runs out, in which case it has found the smaller part, which is
+ *   relabelled.  Either way the cost is bounded by the neighbourhood of the unlinked darts or by the smaller part,
+ *   never by the whole component.
+ */
+final class ComponentIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final DartStorage storage;
+    private final OrbitTraversal traversal;
+    private final Search search;
+    private final Search cosearch;
+    // Hands out labels, reusing those of components that were merged away
+    private final DartIdAllocator labels;
+    private int[] dims;
+
+    // components[dart] is the label of the dart's component, or null if not indexed
+    private int[] components;
+    // sizes[label] is the number of darts of the component with the label
+    private int[] sizes;
+    private int count;
+
+    ComponentIndex(DartStorage storage) {
+        this.storage = storage;
+        this.traversal = new OrbitTraversal();
+        this.search = new Search();
+        this.cosearch = new Search();
+        this.labels = new DartIdAllocator();
+        dimensionChanged(storage.dimension());
+    }
+
+    boolean isIndexed() {
+        return components != null;
+    }
+
+    /**
+     * Labels every dart by its component, one traversal per component
+     */
+    void index() {
+        if (isIndexed()) {
+            return;
+        }
+        components = new int[INITIAL_CAPACITY];
+        sizes = new int[INITIAL_CAPACITY];
+        storage.forEachDart(dart -> {
+            if (dart >= components.length || components[dart] == DartStorage.FREE) {
+                int size = traversal.traverse(storage, dart, dims);
+                int label = newLabel(size);
+                for (int k = 0; k < size; k++) {
+                    setComponent(traversal.dart(k), label);
+                }
+            }
+        });
+    }
+
+    void dimensionChanged(int dimension) {
+        dims = IntStream.rangeClosed(0, dimension).toArray();
+    }
+
+    /**
+     * @return the number of components; only valid once indexed
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Moves every label to the renumbered darts, given map[old id] = new id (FREE for removed ids)
+     */
+    void renumbered(int[] map) {
+        if (!isIndexed()) {
+            return;
+        }
+        int[] renumbered = new int[components.length];
+        for (int dart = 1; dart < map.length && dart < components.length; dart++) {
+            if (map[dart] != DartStorage.FREE) {
+                renumbered[map[dart]] = components[dart];
+            }
+        }
+        components = renumbered;
+    }
+
+    void added(int dart) {
+        if (isIndexed()) {
+            setComponent(dart, newLabel(1));
+        }
+    }
+
+    /**
+     * The dart must be isolated, i.e. a component of its own
+     */
+    void removed(int dart) {
+        if (isIndexed()) {
+            labels.release(components[dart]);
+            components[dart] = DartStorage.FREE;
+            count--;
+        }
+    }
+
+    /**
+     * Must be called before dart and codart are linked: merges their components into the larger one
+     */
+    void beforeLink(int dart, int codart) {
+        if (!isIndexed()) {
+            return;
+        }
+        int label = components[dart];
+        int colabel = components[codart];
+        if (label == colabel) {
+            return;
+        }
+        int kept = sizes[label] >= sizes[colabel] ? label : colabel;
+        int dropped = kept == label ? colabel : label;
+        int size = traversal.traverse(storage, kept == label ? codart : dart, dims);
+        for (int k = 0; k < size; k++) {
+            components[traversal.dart(k)] = kept;
+        }
+        sizes[kept] += size;
+        labels.release(dropped);
+        count--;
+    }
+
+    /**
+     * Must be called once dart and codart have been unlinked, before anything else is unlinked: splits their
+     * component if they are no longer connected
+     */
+    void unlinked(int dart, int codart) {
+        if (!isIndexed()) {
+            return;
+        }
+        Search part = split(dart, codart);
+        if (part == null) {
+            return;
+        }
+        sizes[components[dart]] -= part.size;
+        int label = newLabel(part.size);
+        for (int k = 0; k < part.size; k++) {
+            components[part.queue[k]] = label;
+        }
+    }
+
+    /**
+     * @return the search which ran out, holding a whole part of the component, or null if the searches met
+     */
+    private Search split(int dart, int codart) {
+        search.start(dart);
+        cosearch.start(codart);
+        while (true) {
+            if (!search.step(cosearch)) {
+                return search.met ? null : search;
+            }
+            if (!cosearch.step(search)) {
+                return cosearch.met ? null : cosearch;
+            }
+        }
+    }
+
+    private int newLabel(int size) {
+        int label = labels.allocate();
+        if (label >= sizes.length) {
+            sizes = Arrays.copyOf(sizes, Math.max(label + 1, sizes.length << 1));
+        }
+        sizes[label] = size;
+        count++;
+        return label;
+    }
+
+    private void setComponent(int dart, int label) {
+        if (dart >= components.length) {
+            components = Arrays.copyOf(components, Math.max(dart + 1, components.length << 1));
+        }
+        components[dart] = label;
+    }
+
+    /**
+     * A breadth first search over every alpha which advances a dart at a time, so that two of them can be
+     * interleaved.  Visited marks are stamped with an epoch, as in {@link OrbitTraversal}.
+     */
+    private final class Search {
+        private int[] queue = new int[INITIAL_CAPACITY];
+        private int[] marks = new int[INITIAL_CAPACITY];
+        private int epoch;
+        private int head;
+        private int size;
+        // Whether the search reached a dart the other search visited
+        private boolean met;
+
+        private void start(int dart) {
+            epoch++;
+            if (epoch == 0) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+            head = 0;
+            size = 0;
+            met = false;
+            visit(dart);
+        }
+
+        /**
+         * Visits the neighbours of the next dart in the queue
+         * @return false once the search has met the other one or has run out of darts
+         */
+        private boolean step(Search other) {
+            if (head == size) {
+                return false;
+            }
+            int dart = queue[head++];
+            for (int i : dims) {
+                int neighbor = storage.alpha(i, dart);
+                if (neighbor == DartStorage.FREE || visited(neighbor)) {
+                    continue;
+                }
+                if (other.visited(neighbor)) {
+                    met = true;
+                    return false;
+                }
+                visit(neighbor);
+            }
+            return true;
+        }
+
+        private boolean visited(int dart) {
+            return dart < marks.length && marks[dart] == epoch;
+        }
+
+        private void visit(int dart) {
+            if (dart >= marks.length) {
+                marks = Arrays.copyOf(marks, Math.max(dart + 1, marks.length << 1));
+            }
+            if (size == queue.length) {
+                queue = Arrays.copyOf(queue, size << 1);
+            }
+            marks[dart] = epoch;
+            queue[size++] = dart;
+        }
+    }
+
+}
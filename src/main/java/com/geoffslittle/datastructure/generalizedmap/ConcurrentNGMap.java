@@ -0,0 +1,279 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import lombok.NonNull;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * A thread-safe view of an {@link NGMap}, guarded by a single {@link StampedLock}:
+ *   Small lookups (isIFree, containsDart, getAttribute and cellId of indexed dimensions, counts, ...) are optimistic
+ *   reads which take no lock at all and retry under the read lock only if a writer got in the way.  That takes a
+ *   storage whose reads are safe to race with a writer, see {@link DartStorage#supportsOptimisticReads()}; on other
+ *   storages, e.g. the default hash based one, they run under the read lock.
+ *   Traversals (iCell, darts, genericIterator, isSewable, ...) run under the read lock, each thread with its own
+ *   traversal buffers, so readers never wait on each other.
+ *   Anything that changes the n-GMap, including allocating dart ids, runs under the write lock.  So does the first
+ *   read that needs an index, e.g. the first cellCount(i), which builds it; later reads share the read lock.
+ *
+ * The wrapped n-GMap must not be used directly once wrapped.
+ */
+public class ConcurrentNGMap {
+
+    @NonNull
+    private final NGMap ngMap;
+    private final StampedLock lock;
+    // Whether small lookups may skip the lock, as the storage is safe to read while it's written
+    private final boolean optimistic;
+    private final ThreadLocal<OrbitTraversal> traversals;
+    private final ThreadLocal<OrbitTraversal> cotraversals;
+
+    private ConcurrentNGMap(NGMap ngMap) {
+        this.ngMap = ngMap;
+        this.lock = new StampedLock();
+        this.optimistic = ngMap.storage().supportsOptimisticReads();
+        this.traversals = ThreadLocal.withInitial(OrbitTraversal::new);
+        this.cotraversals = ThreadLocal.withInitial(OrbitTraversal::new);
+    }
+
+    public static ConcurrentNGMap concurrentNGMap(@NonNull NGMap ngMap) {
+        return new ConcurrentNGMap(ngMap);
+    }
+
+    public static ConcurrentNGMap concurrentNGMap(int n) {
+        return concurrentNGMap(NGMap.ngMap(n));
+    }
+
+    /**
+     * The metrics must be thread-safe, as readers record concurrently
+     */
+    public void setMetrics(@NonNull NGMapMetrics metrics) {
+        write(() -> ngMap.setMetrics(metrics));
+    }
+
+    public int dimension() {
+        return optimisticRead(ngMap::dimension);
+    }
+
+    public boolean increaseDimension() {
+        return write(ngMap::increaseDimension);
+    }
+
+    public void decreaseDimension() {
+        write(ngMap::decreaseDimension);
+    }
+
+    public Boolean isIFree(@NonNull NGMap.Dart dart, int i) {
+        return optimisticRead(() -> ngMap.isIFree(dart, i));
+    }
+
+    public boolean containsDart(@NonNull NGMap.Dart dart) {
+        return optimisticRead(() -> ngMap.containsDart(dart));
+    }
+
+    public boolean isIsolated(@NonNull NGMap.Dart dart) {
+        return optimisticRead(() -> ngMap.isIsolated(dart));
+    }
+
+    public NGMap.Dart addIsolatedDart() {
+        return write(ngMap::addIsolatedDart);
+    }
+
+    public void removeIsolatedDart(@NonNull NGMap.Dart dart) {
+        write(() -> ngMap.removeIsolatedDart(dart));
+    }
+
+    public UnaryOperator<NGMap.Dart> compact() {
+        return write(ngMap::compact);
+    }
+
+    /**
+     * @return a copy of the darts, as the live view of the wrapped n-GMap can't leave the lock
+     */
+    public Set<NGMap.Dart> darts() {
+        return read(() -> new HashSet<>(ngMap.darts()));
+    }
+
+    public int dartCount() {
+        return optimisticRead(ngMap::dartCount);
+    }
+
+    public int linkCount(int i) {
+        return optimisticRead(() -> ngMap.linkCount(i));
+    }
+
+    public int freeDartCount(int i) {
+        return optimisticRead(() -> ngMap.freeDartCount(i));
+    }
+
+    public Iterator<NGMap.Dart> genericIterator(@NonNull NGMap.Dart dart, @NonNull List<Integer> ints) {
+        return read(() -> ngMap.genericIterator(dart, ints, traversals.get()));
+    }
+
+    public boolean isSewable(@NonNull NGMap.Dart leftDart, @NonNull NGMap.Dart rightDart, int i) {
+        return read(() -> ngMap.isSewable(leftDart, rightDart, i, traversals.get(), cotraversals.get()));
+    }
+
+    public void sew(@NonNull NGMap.Dart leftDart, @NonNull NGMap.Dart rightDart, int i) {
+        write(() -> ngMap.sew(leftDart, rightDart, i));
+    }
+
+    public boolean trySew(@NonNull NGMap.Dart leftDart, @NonNull NGMap.Dart rightDart, int i) {
+        return write(() -> ngMap.trySew(leftDart, rightDart, i));
+    }
+
+    public void sewAll(@NonNull Collection<NGMap.Sewing> sewings) {
+        write(() -> ngMap.sewAll(sewings));
+    }
+
+    public void rewire(@NonNull Collection<NGMap.Sewing> unlinks, @NonNull Collection<NGMap.Sewing> links) {
+        write(() -> ngMap.rewire(unlinks, links));
+    }
+
+    public void begin() {
+        write(ngMap::begin);
+    }
+
+    public void commit() {
+        write(ngMap::commit);
+    }
+
+    public void rollback() {
+        write(ngMap::rollback);
+    }
+
+    public void unsew(@NonNull NGMap.Dart dart, int i) {
+        write(() -> ngMap.unsew(dart, i));
+    }
+
+    public NGMap.Edge addEdge() {
+        return write(ngMap::addEdge);
+    }
+
+    /**
+     * @return the edges of the polygon in order, see {@link NGMap#addNPolygon(Integer)}
+     */
+    public List<NGMap.Edge> addNPolygon(@NonNull Integer n) {
+        return write(() -> ngMap.addNPolygon(n));
+    }
+
+    public List<NGMap.Dart> iCell(@NonNull NGMap.Dart dart, @NonNull Integer i) {
+        return read(() -> ngMap.iCell(dart, i, traversals.get()));
+    }
+
+    public int cellCount(int i) {
+        Integer count = optimisticRead(() -> ngMap.isIndexed(i) ? ngMap.cellCount(i) : null);
+        // The first count of dimension i indexes it
+        return count != null ? count : write(() -> ngMap.cellCount(i));
+    }
+
+    public int eulerCharacteristic() {
+        Integer characteristic = optimisticRead(() -> IntStream.rangeClosed(0, ngMap.dimension())
+                .allMatch(ngMap::isIndexed) ? ngMap.eulerCharacteristic() : null);
+        return characteristic != null ? characteristic : write(ngMap::eulerCharacteristic);
+    }
+
+    public int componentCount() {
+        Integer count = optimisticRead(() -> ngMap.isComponentIndexed() ? ngMap.componentCount() : null);
+        return count != null ? count : write(ngMap::componentCount);
+    }
+
+    public void indexCells(int i) {
+        write(() -> ngMap.indexCells(i));
+    }
+
+    public boolean isIndexed(int i) {
+        return optimisticRead(() -> ngMap.isIndexed(i));
+    }
+
+    public int cellId(@NonNull NGMap.Dart dart, int i) {
+        if (isIndexed(i)) {
+            return optimisticRead(() -> ngMap.cellId(dart, i, traversals.get()));
+        }
+        return read(() -> ngMap.cellId(dart, i, traversals.get()));
+    }
+
+    public Attribute putAttribute(@NonNull NGMap.Dart dart, @NonNull Integer i, Attribute attribute) {
+        return write(() -> ngMap.putAttribute(dart, i, attribute));
+    }
+
+    public void removeAttribute(@NonNull NGMap.Dart dart, @NonNull Integer i) {
+        write(() -> ngMap.removeAttribute(dart, i));
+    }
+
+    public Optional<Attribute> getAttribute(@NonNull NGMap.Dart dart, @NonNull Integer i) {
+        Optional<Attribute> attribute = optimisticRead(() -> ngMap.indexedAttribute(dart, i));
+        if (attribute != null) {
+            return attribute;
+        }
+        // The first read of dimension i indexes it
+        return write(() -> ngMap.getAttribute(dart, i));
+    }
+
+    /**
+     * Runs under the read lock: taking a snapshot only marks the shared structure as shared, which the next write,
+     * under the write lock, is guaranteed to see
+     */
+    public NGMapSnapshot snapshot() {
+        return read(ngMap::snapshot);
+    }
+
+    /**
+     * Reads without locking and validates that no writer got in the way, falling back to the read lock if one did or
+     * if the storage isn't safe to read without it.  A read racing a writer may see the n-GMap in an inconsistent
+     * state and throw, which is only rethrown if the read turns out not to have raced.
+     */
+    private <T> T optimisticRead(Supplier<T> read) {
+        long stamp = optimistic ? lock.tryOptimisticRead() : 0L;
+        if (stamp != 0L) {
+            try {
+                T value = read.get();
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException | Error e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        return read(read);
+    }
+
+    private <T> T read(Supplier<T> read) {
+        long stamp = lock.readLock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <T> T write(Supplier<T> write) {
+        long stamp = lock.writeLock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void write(Runnable write) {
+        long stamp = lock.writeLock();
+        try {
+            write.run();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.Arrays;
+
+/**
+ * The object counterpart of {@link CopyOnWriteIntArray}: a growable array, null by default, whose chunks are shared
+ * with its O(1) snapshots and copied on the first write after a snapshot.
+ */
+final class CopyOnWriteArray<T> {
+
+    private static final int CHUNK_SHIFT = CopyOnWriteIntArray.CHUNK_SHIFT;
+    private static final int CHUNK_SIZE = CopyOnWriteIntArray.CHUNK_SIZE;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private Object[][] chunks;
+    private Object[] owners;
+    private Object owner;
+    private boolean directoryShared;
+
+    CopyOnWriteArray() {
+        this(new Object[0][], new Object[0], new Object());
+    }
+
+    private CopyOnWriteArray(Object[][] chunks, Object[] owners, Object owner) {
+        this.chunks = chunks;
+        this.owners = owners;
+        this.owner = owner;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        int c = index >>> CHUNK_SHIFT;
+        if (c >= chunks.length || chunks[c] == null) {
+            return null;
+        }
+        return (T) chunks[c][index & CHUNK_MASK];
+    }
+
+    void set(int index, T value) {
+        int c = index >>> CHUNK_SHIFT;
+        if (c >= chunks.length && value == null) {
+            return;
+        }
+        writableChunk(c)[index & CHUNK_MASK] = value;
+    }
+
+    /**
+     * @return an upper bound on the indices holding a value
+     */
+    int length() {
+        return chunks.length << CHUNK_SHIFT;
+    }
+
+    /**
+     * Concurrent snapshots of the same array don't race in any harmful way, as each only marks every chunk as shared,
+     * so they may be taken by readers sharing a read lock
+     */
+    CopyOnWriteArray<T> snapshot() {
+        checkWritable();
+        owner = new Object();
+        directoryShared = true;
+        return new CopyOnWriteArray<>(chunks, owners, null);
+    }
+
+    private Object[] writableChunk(int c) {
+        checkWritable();
+        if (directoryShared || c >= chunks.length) {
+            int length = Math.max(chunks.length, c + 1);
+            if (c >= chunks.length) {
+                length = Math.max(length, chunks.length << 1);
+            }
+            chunks = Arrays.copyOf(chunks, length);
+            owners = Arrays.copyOf(owners, length);
+            directoryShared = false;
+        }
+        Object[] chunk = chunks[c];
+        if (chunk == null) {
+            chunk = new Object[CHUNK_SIZE];
+        } else if (owners[c] != owner) {
+            chunk = chunk.clone();
+        } else {
+            return chunk;
+        }
+        chunks[c] = chunk;
+        owners[c] = owner;
+        return chunk;
+    }
+
+    private void checkWritable() {
+        if (owner == null) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+    }
+
+}
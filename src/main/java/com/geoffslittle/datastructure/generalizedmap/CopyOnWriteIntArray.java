@@ -0,0 +1,106 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.Arrays;
+
+/**
+ * A growable int array, 0 by default, cut into fixed size chunks which are shared with its snapshots.  Taking a
+ * snapshot is O(1): the snapshot keeps the current chunks, and the array copies a chunk the first time it writes to it
+ * afterwards (and the chunk directory on its first write).  A snapshot is read-only.
+ */
+final class CopyOnWriteIntArray {
+
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private int[][] chunks;
+    // owners[c] == owner iff chunks[c] belongs to this array alone
+    private Object[] owners;
+    // null for a snapshot
+    private Object owner;
+    private boolean directoryShared;
+
+    CopyOnWriteIntArray() {
+        this(new int[0][], new Object[0], new Object());
+    }
+
+    private CopyOnWriteIntArray(int[][] chunks, Object[] owners, Object owner) {
+        this.chunks = chunks;
+        this.owners = owners;
+        this.owner = owner;
+    }
+
+    int get(int index) {
+        int c = index >>> CHUNK_SHIFT;
+        if (c >= chunks.length || chunks[c] == null) {
+            return 0;
+        }
+        return chunks[c][index & CHUNK_MASK];
+    }
+
+    void set(int index, int value) {
+        int c = index >>> CHUNK_SHIFT;
+        if (c >= chunks.length && value == 0) {
+            return;
+        }
+        int[] chunk = writableChunk(c);
+        chunk[index & CHUNK_MASK] = value;
+    }
+
+    /**
+     * @return the number of chunks, every index below chunkCount() * CHUNK_SIZE may be non-zero
+     */
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * @return the c-th chunk for reading, or null if it's all zeros
+     */
+    int[] chunk(int c) {
+        return chunks[c];
+    }
+
+    /**
+     * Concurrent snapshots of the same array don't race in any harmful way, as each only marks every chunk as shared,
+     * so they may be taken by readers sharing a read lock
+     */
+    CopyOnWriteIntArray snapshot() {
+        checkWritable();
+        // Every chunk is now shared, which a new owner token marks in O(1)
+        owner = new Object();
+        directoryShared = true;
+        return new CopyOnWriteIntArray(chunks, owners, null);
+    }
+
+    private int[] writableChunk(int c) {
+        checkWritable();
+        if (directoryShared || c >= chunks.length) {
+            int length = Math.max(chunks.length, c + 1);
+            if (c >= chunks.length) {
+                length = Math.max(length, chunks.length << 1);
+            }
+            chunks = Arrays.copyOf(chunks, length);
+            owners = Arrays.copyOf(owners, length);
+            directoryShared = false;
+        }
+        int[] chunk = chunks[c];
+        if (chunk == null) {
+            chunk = new int[CHUNK_SIZE];
+        } else if (owners[c] != owner) {
+            chunk = chunk.clone();
+        } else {
+            return chunk;
+        }
+        chunks[c] = chunk;
+        owners[c] = owner;
+        return chunk;
+    }
+
+    private void checkWritable() {
+        if (owner == null) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+    }
+
+}
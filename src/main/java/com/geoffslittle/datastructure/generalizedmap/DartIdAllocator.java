@@ -0,0 +1,118 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Hands out dart ids, reusing the ids of removed darts before growing the id space.  Released ids are kept on a
+ * stack, so the most recently released id (likely still in cache) is reused first.  Every id handed out is in
+ * [1, bound()).
+ *
+ * The bound, the number of free ids and the stack are all kept in an {@link IntColumn}, so an allocator over a mapped
+ * column is reopened as it was left.
+ */
+final class DartIdAllocator {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // column.get(FREE_SIZE) is the number of free ids and column.get(BOUND) the bound, while
+    // column.get(FREE_IDS + k) for k in [0, free size) are ids below the bound which are not in use
+    private static final int FREE_SIZE = 0;
+    private static final int BOUND = 1;
+    private static final int FREE_IDS = 2;
+
+    private final IntColumn column;
+
+    DartIdAllocator() {
+        this(new HeapIntColumn(INITIAL_CAPACITY));
+    }
+
+    /**
+     * @param column, a column of zeros or that of an allocator to reopen
+     */
+    DartIdAllocator(IntColumn column) {
+        this.column = column;
+        column.grow(FREE_IDS);
+        if (column.get(BOUND) == 0) {
+            column.set(BOUND, 1);
+        }
+    }
+
+    /**
+     * @return an unused id
+     * @throws IllegalStateException if every positive int is in use
+     */
+    int allocate() {
+        int freeSize = freeCount();
+        if (freeSize > 0) {
+            column.set(FREE_SIZE, freeSize - 1);
+            return column.get(FREE_IDS + freeSize - 1);
+        }
+        int bound = bound();
+        Preconditions.checkState(bound < Integer.MAX_VALUE, "Dart ids exhausted");
+        column.set(BOUND, bound + 1);
+        return bound;
+    }
+
+    /**
+     * Makes an id which is no longer in use available again
+     */
+    void release(int id) {
+        int freeSize = freeCount();
+        column.grow(FREE_IDS + freeSize + 1);
+        column.set(FREE_IDS + freeSize, id);
+        column.set(FREE_SIZE, freeSize + 1);
+    }
+
+    /**
+     * Takes back the id handed out by the last allocate, leaving the allocator as it was before, e.g. to undo adding a
+     * dart
+     * @param grown, whether the id grew the bound rather than being a free id
+     */
+    void unallocate(int id, boolean grown) {
+        if (grown) {
+            Preconditions.checkState(id == bound() - 1, "Id %s didn't grow the bound", id);
+            column.set(BOUND, id);
+        } else {
+            release(id);
+        }
+    }
+
+    /**
+     * Takes back the id made available by the last release, e.g. to undo removing a dart
+     */
+    void reclaim(int id) {
+        int freeSize = freeCount();
+        Preconditions.checkState(freeSize > 0 && column.get(FREE_IDS + freeSize - 1) == id,
+                "Id %s wasn't the last released", id);
+        column.set(FREE_SIZE, freeSize - 1);
+    }
+
+    /**
+     * Restarts the allocator on [1, bound), with every id that isn't in use free
+     */
+    void reset(int bound, DartRegistry inUse) {
+        column.set(BOUND, Math.max(1, bound));
+        column.set(FREE_SIZE, 0);
+        // Push from the top so the lowest ids are reused first
+        for (int id = bound() - 1; id > 0; id--) {
+            if (!inUse.contains(id)) {
+                release(id);
+            }
+        }
+    }
+
+    /**
+     * @return an upper bound on the ids handed out
+     */
+    int bound() {
+        return column.get(BOUND);
+    }
+
+    /**
+     * @return the number of ids below the bound which are not in use
+     */
+    int freeCount() {
+        return column.get(FREE_SIZE);
+    }
+
+}
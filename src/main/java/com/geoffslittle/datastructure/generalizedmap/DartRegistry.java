@@ -0,0 +1,91 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The set of dart ids of an {@link NGMap}, as a sparse set: dense holds the darts packed in [0, size) and sparse maps
+ * a dart to its position in dense.  Membership, insertion, removal and size are O(1), and iterating the darts walks a
+ * packed int array without allocating.
+ *
+ * Both arrays are {@link IntColumn}s, and the size is kept in the first int of dense, so a registry over mapped columns
+ * is reopened as it was left.
+ */
+final class DartRegistry {
+
+    private static final int INITIAL_CAPACITY = 16;
+    // dense.get(0) is the size, dense.get(1 + position) the dart at a position
+    private static final int DARTS = 1;
+
+    private final IntColumn dense;
+    private final IntColumn sparse;
+
+    DartRegistry() {
+        this(new HeapIntColumn(INITIAL_CAPACITY), new HeapIntColumn(INITIAL_CAPACITY));
+    }
+
+    /**
+     * @param dense, a column of zeros or that of a registry to reopen
+     * @param sparse, the sparse column to go with it
+     */
+    DartRegistry(IntColumn dense, IntColumn sparse) {
+        this.dense = dense;
+        this.sparse = sparse;
+        dense.grow(DARTS);
+    }
+
+    boolean contains(int dart) {
+        if (dart <= 0 || dart >= sparse.length()) {
+            return false;
+        }
+        int position = sparse.get(dart);
+        return position < size() && dense.get(DARTS + position) == dart;
+    }
+
+    void add(int dart) {
+        if (contains(dart)) {
+            return;
+        }
+        int size = size();
+        sparse.grow(dart + 1);
+        dense.grow(DARTS + size + 1);
+        dense.set(DARTS + size, dart);
+        sparse.set(dart, size);
+        dense.set(0, size + 1);
+    }
+
+    void remove(int dart) {
+        if (!contains(dart)) {
+            return;
+        }
+        // Move the last dart into the hole
+        int position = sparse.get(dart);
+        int size = size() - 1;
+        int last = dense.get(DARTS + size);
+        dense.set(DARTS + position, last);
+        sparse.set(last, position);
+        dense.set(0, size);
+    }
+
+    void clear() {
+        dense.set(0, 0);
+    }
+
+    int size() {
+        return dense.get(0);
+    }
+
+    /**
+     * @return the dart at a position in [0, size), positions change as darts are removed
+     */
+    int dart(int position) {
+        return dense.get(DARTS + position);
+    }
+
+    void forEach(IntConsumer action) {
+        int size = size();
+        for (int position = 0; position < size; position++) {
+            action.accept(dense.get(DARTS + position));
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Storage backend for the topology of an {@link NGMap}.  Darts are plain positive int ids and each alpha_i is a
+ * partial involution without fixed point over those ids, where an unsewn (i-free) dart maps to {@link #FREE}.
+ *
+ * Implementations do no topological validation of their own; {@link NGMap} guarantees that links are only made
+ * between free darts and are always made (and removed) in pairs.
+ */
+public interface DartStorage {
+
+    /**
+     * Sentinel returned by {@link #alpha(int, int)} for a dart which is free in the given dimension.  Dart ids are
+     * strictly positive so 0 is never a valid dart.
+     */
+    int FREE = 0;
+
+    int dimension();
+
+    void increaseDimension();
+
+    /**
+     * Removes the highest alpha, in constant time.
+     * @throws IllegalStateException if the highest alpha still links any darts
+     */
+    void decreaseDimension();
+
+    boolean containsDart(int dart);
+
+    void addDart(int dart);
+
+    /**
+     * Removes a dart, unlinking it in every alpha first
+     */
+    void removeDart(int dart);
+
+    /**
+     * @return the number of pairs of darts linked in alpha_i, each pair counted once, in constant time
+     */
+    int linkCount(int i);
+
+    /**
+     * @return alpha_i(dart), or {@link #FREE} if the dart is i-free
+     */
+    int alpha(int i, int dart);
+
+    /**
+     * Links two darts such that alpha_i(dart) = codart and alpha_i(codart) = dart
+     */
+    void link(int i, int dart, int codart);
+
+    /**
+     * Removes both links alpha_i(dart) and alpha_i(alpha_i(dart)), if present
+     */
+    void unlink(int i, int dart);
+
+    void forEachDart(IntConsumer action);
+
+    /**
+     * Whether {@link #alpha(int, int)} and {@link #containsDart(int)} can run while another thread edits the storage:
+     * they must only read arrays within their own bounds, so that a racing read returns a stale value or throws, but
+     * never loops or reads memory the storage released.  {@link ConcurrentNGMap} only reads such storages without a
+     * lock.
+     */
+    default boolean supportsOptimisticReads() {
+        return false;
+    }
+
+    /**
+     * By default the storage is copied into a {@link PersistentDartStorage}, in O(darts * dimension); storages which
+     * can share their structure with their snapshots override it, as {@link PersistentDartStorage} does in O(1).
+     * @return a read-only copy of the storage as it is now, unaffected by later changes
+     */
+    default DartStorage snapshot() {
+        return PersistentDartStorage.copyOf(this).snapshot();
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+
+/**
+ * An {@link AttributeColumn} backed by a {@link CopyOnWriteArray}, so that it's snapshotted in O(1)
+ */
+final class HeapAttributeColumn implements AttributeColumn {
+
+    private CopyOnWriteArray<Attribute> attributes;
+
+    HeapAttributeColumn() {
+        this(new CopyOnWriteArray<>());
+    }
+
+    private HeapAttributeColumn(CopyOnWriteArray<Attribute> attributes) {
+        this.attributes = attributes;
+    }
+
+    @Override
+    public Attribute get(int label) {
+        return attributes.get(label);
+    }
+
+    @Override
+    public void set(int label, Attribute attribute) {
+        attributes.set(label, attribute);
+    }
+
+    @Override
+    public int length() {
+        return attributes.length();
+    }
+
+    /**
+     * Concurrent snapshots may be taken under a read lock, see {@link CopyOnWriteArray#snapshot()}
+     */
+    @Override
+    public AttributeColumn snapshot() {
+        return new HeapAttributeColumn(attributes.snapshot());
+    }
+
+    @Override
+    public void renumber(int[] map) {
+        CopyOnWriteArray<Attribute> renumbered = new CopyOnWriteArray<>();
+        for (int label = 0; label < attributes.length(); label++) {
+            Attribute attribute = attributes.get(label);
+            if (attribute != null) {
+                renumbered.set(map[label], attribute);
+            }
+        }
+        attributes = renumbered;
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.Arrays;
+
+/**
+ * An {@link IntColumn} backed by an int[], which at least doubles whenever it grows
+ */
+final class HeapIntColumn implements IntColumn {
+
+    private int[] values;
+
+    HeapIntColumn(int length) {
+        this.values = new int[length];
+    }
+
+    @Override
+    public int get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        values[index] = value;
+    }
+
+    @Override
+    public int length() {
+        return values.length;
+    }
+
+    @Override
+    public void grow(int length) {
+        if (length > values.length) {
+            values = Arrays.copyOf(values, Math.max(length, values.length << 1));
+        }
+    }
+
+}
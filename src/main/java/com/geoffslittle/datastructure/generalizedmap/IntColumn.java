@@ -0,0 +1,20 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+/**
+ * A growable column of ints which read as 0 until written, kept on the heap ({@link HeapIntColumn}) or in a mapped
+ * file ({@link MappedFile}) so that it outlives the process.  Indices must be in [0, length()).
+ */
+interface IntColumn {
+
+    int get(int index);
+
+    void set(int index, int value);
+
+    int length();
+
+    /**
+     * Grows the column to at least the given length, the new ints reading as 0
+     */
+    void grow(int length);
+
+}
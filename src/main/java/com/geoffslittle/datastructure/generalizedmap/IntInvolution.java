@@ -0,0 +1,222 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.base.Preconditions;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A primitive specialization of {@link Involution} over non-zero ints, backed by an open-addressing (linear probing)
+ * int-to-int table.  None of the operations box or allocate, except for growing the table.
+ *   Partial: Allows mappings with an "empty" value, represented by {@link #FREE}.
+ *   Involution: Always f(f(x)) = x
+ *   Without Fixed Point: Never f(x) = x
+ */
+public class IntInvolution {
+
+    /**
+     * The "empty" value; also marks unused slots in the table, so 0 can't be an element.
+     */
+    public static final int FREE = 0;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    // The number of pairs a, b with f(a) = b
+    private int links;
+
+    private IntInvolution() {
+        this.keys = new int[INITIAL_CAPACITY];
+        this.values = new int[INITIAL_CAPACITY];
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+
+    public static IntInvolution intInvolution() {
+        return new IntInvolution();
+    }
+
+    public boolean containsElement(int element) {
+        return element != FREE && keys[slot(element)] != FREE;
+    }
+
+    /**
+     * Given f is an involution, a coelement is some f(x) iff it has a non-empty value of its own.
+     */
+    public boolean containsCoelement(int coelement) {
+        return get(coelement) != FREE;
+    }
+
+    /**
+     * @return f(element), or {@link #FREE} if the element is absent or has an empty value
+     */
+    public int get(int element) {
+        if (element == FREE) {
+            return FREE;
+        }
+        return values[slot(element)];
+    }
+
+    /**
+     * @return the number of elements in the domain
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Convenience method to put an element in the domain of the Involution without a value
+     * @param element
+     */
+    public void put(int element) {
+        checkElement(element);
+        int index = slot(element);
+        if (keys[index] == FREE) {
+            insert(index, element, FREE);
+        }
+    }
+
+    /**
+     * Associates two elements, a and b, such that f(a) = b and f(b) = a.
+     * Fixed points prohibited. Overwriting non-empty values prohibited.
+     * @param element
+     * @param coelement
+     */
+    public void put(int element, int coelement) {
+        checkElement(element);
+        checkElement(coelement);
+        Preconditions.checkState(element != coelement, "Fixed points prohibited");
+        checkNoKeyOrEmptyValue(element);
+        checkNoKeyOrEmptyValue(coelement);
+
+        putValue(coelement, element);
+        putValue(element, coelement);
+        links++;
+    }
+
+    /**
+     * Removes both mappings associated with an element a, a -> b and b -> a
+     * @param element
+     */
+    public void remove(int element) {
+        if (element == FREE) {
+            return;
+        }
+        int index = slot(element);
+        if (keys[index] == FREE) {
+            return;
+        }
+        int coelement = values[index];
+        delete(index);
+        if (coelement != FREE) {
+            int coindex = slot(coelement);
+            if (keys[coindex] != FREE) {
+                delete(coindex);
+            }
+            links--;
+        }
+    }
+
+    /**
+     * @return the number of pairs of associated elements, each pair counted once
+     */
+    public int linkCount() {
+        return links;
+    }
+
+    /**
+     * @return true iff any element has a non-empty value
+     */
+    public boolean hasLinks() {
+        return links > 0;
+    }
+
+    public void forEachElement(IntConsumer action) {
+        for (int key : keys) {
+            if (key != FREE) {
+                action.accept(key);
+            }
+        }
+    }
+
+    private static void checkElement(int element) {
+        Preconditions.checkArgument(element != FREE, "0 is reserved for the empty value");
+    }
+
+    private void checkNoKeyOrEmptyValue(int element) {
+        Preconditions.checkState(get(element) == FREE, "The element is already associated with a value");
+    }
+
+    private static int hash(int element) {
+        int h = element * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the slot holding the element, or the empty slot where it would be inserted
+     */
+    private int slot(int element) {
+        int index = hash(element) & mask;
+        while (keys[index] != FREE && keys[index] != element) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void putValue(int element, int value) {
+        int index = slot(element);
+        if (keys[index] == FREE) {
+            insert(index, element, value);
+        } else {
+            values[index] = value;
+        }
+    }
+
+    private void insert(int index, int element, int value) {
+        keys[index] = element;
+        values[index] = value;
+        size++;
+        // Keep the load factor at or below 1/2 so probe sequences stay short
+        if (size << 1 > keys.length) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Backward-shift deletion, so that no tombstones are needed
+     */
+    private void delete(int index) {
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (keys[next] != FREE) {
+            int ideal = hash(keys[next]) & mask;
+            // The entry at next may move into the hole iff the hole lies on its probe path
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = FREE;
+        values[hole] = FREE;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int index = slot(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+}
@@ -19,6 +19,8 @@ public class Involution<E> {
 
     @NonNull
     private final SafeMap<E, E> safeMap;
+    // The number of pairs a, b with f(a) = b
+    private int links;
 
     private Involution() {
         this.safeMap = SafeMap.newSafeMap();
@@ -52,11 +54,28 @@ public class Involution<E> {
     }
 
     /**
-     * Convenience method to put an element in the domain of the Involution without a value
+     * @return the number of pairs of associated elements, each pair counted once
+     */
+    public int linkCount() {
+        return links;
+    }
+
+    /**
+     * @return true iff any element has a non-empty value
+     */
+    public boolean hasLinks() {
+        return links > 0;
+    }
+
+    /**
+     * Convenience method to put an element in the domain of the Involution without a value.  An element which is
+     * already in the domain keeps its value.
      * @param element
      */
     public void put(@NonNull E element) {
-        safeMap.put(element, Optional.empty());
+        if (!safeMap.containsKey(element)) {
+            safeMap.put(element, Optional.empty());
+        }
     }
 
     /**
@@ -72,6 +91,7 @@ public class Involution<E> {
 
         safeMap.put(coelement, Optional.of(element));
         safeMap.put(element, Optional.of(coelement));
+        links++;
     }
 
     private void checkNoKeyOrEmptyValue(E element) {
@@ -85,7 +105,11 @@ public class Involution<E> {
      */
     public void remove(@NonNull E element) {
         // Remove inverse
-        safeMap.get(element).ifPresent(safeMap::remove);
+        Optional<E> coelement = safeMap.get(element);
+        if (coelement.isPresent()) {
+            safeMap.remove(coelement.get());
+            links--;
+        }
         safeMap.remove(element);
     }
 
@@ -0,0 +1,110 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * The default, hash based {@link DartStorage}: one {@link IntInvolution} per alpha.  A dart belongs to the map as long
+ * as any alpha has it in its domain.
+ */
+public class InvolutionDartStorage implements DartStorage {
+
+    @NonNull
+    private final List<IntInvolution> alphas;
+
+    private InvolutionDartStorage() {
+        this.alphas = Lists.newArrayList(IntInvolution.intInvolution());
+    }
+
+    public static InvolutionDartStorage involutionDartStorage() {
+        return new InvolutionDartStorage();
+    }
+
+    @Override
+    public int dimension() {
+        return alphas.size() - 1;
+    }
+
+    @Override
+    public void increaseDimension() {
+        alphas.add(IntInvolution.intInvolution());
+    }
+
+    @Override
+    public void decreaseDimension() {
+        Preconditions.checkState(!alphas.get(dimension()).hasLinks());
+        alphas.remove(dimension());
+    }
+
+    @Override
+    public boolean containsDart(int dart) {
+        for (IntInvolution alpha : alphas) {
+            if (alpha.containsElement(dart)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void addDart(int dart) {
+        alphas.forEach(alpha -> alpha.put(dart));
+    }
+
+    @Override
+    public void removeDart(int dart) {
+        alphas.forEach(alpha -> alpha.remove(dart));
+    }
+
+    @Override
+    public int linkCount(int i) {
+        return alphas.get(i).linkCount();
+    }
+
+    @Override
+    public int alpha(int i, int dart) {
+        return alphas.get(i).get(dart);
+    }
+
+    @Override
+    public void link(int i, int dart, int codart) {
+        alphas.get(i).put(dart, codart);
+    }
+
+    /**
+     * Removes the pair from alpha_i but keeps both darts in its domain, as free elements, so that a dart whose last
+     * link is undone still belongs to the map
+     */
+    @Override
+    public void unlink(int i, int dart) {
+        IntInvolution alpha = alphas.get(i);
+        int codart = alpha.get(dart);
+        if (codart == IntInvolution.FREE) {
+            return;
+        }
+        alpha.remove(dart);
+        alpha.put(dart);
+        alpha.put(codart);
+    }
+
+    @Override
+    public void forEachDart(IntConsumer action) {
+        // Visit each dart once, from the lowest alpha that has it in its domain
+        for (int i = 0; i < alphas.size(); i++) {
+            int lowest = i;
+            alphas.get(i).forEachElement(dart -> {
+                for (int j = 0; j < lowest; j++) {
+                    if (alphas.get(j).containsElement(dart)) {
+                        return;
+                    }
+                }
+                action.accept(dart);
+            });
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * An {@link AttributeColumn} in two mapped files: the offset of the attribute of each label, and the data file the
+ * attributes are appended to, each as its length followed by the bytes of its {@link AttributeCodec}.  Replaced and
+ * removed attributes are left in the data file until more than half of it is garbage, when it's compacted in place.
+ */
+final class MappedAttributeColumn implements AttributeColumn {
+
+    // data.get(END) is where the next attribute goes, data.get(LIVE) the bytes of the attributes in use
+    private static final int END = 0;
+    private static final int LIVE = 1;
+    private static final int FIRST = 2 * Integer.BYTES;
+    // Below this many bytes the data file isn't worth compacting
+    private static final int COMPACTION_THRESHOLD = 1 << 16;
+
+    // offsets.get(label) is the offset of the attribute of the label in data, or 0
+    private final MappedFile offsets;
+    private final MappedFile data;
+    private final AttributeCodec codec;
+
+    /**
+     * @param offsets, a file of zeros or that of a column to reopen
+     * @param data, the data file to go with it
+     */
+    MappedAttributeColumn(MappedFile offsets, MappedFile data, AttributeCodec codec) {
+        this.offsets = offsets;
+        this.data = data;
+        this.codec = codec;
+        data.ensureBytes(FIRST);
+        if (data.get(END) == 0) {
+            data.set(END, FIRST);
+        }
+    }
+
+    @Override
+    public Attribute get(int label) {
+        int offset = offset(label);
+        if (offset == 0) {
+            return null;
+        }
+        return codec.decode(read(offset));
+    }
+
+    @Override
+    public void set(int label, Attribute attribute) {
+        int previous = offset(label);
+        if (previous != 0) {
+            offsets.set(label, 0);
+            data.set(LIVE, data.get(LIVE) - size(previous));
+        }
+        if (attribute != null) {
+            offsets.grow(label + 1);
+            offsets.set(label, append(codec.encode(attribute)));
+        }
+        int end = data.get(END);
+        if (end > COMPACTION_THRESHOLD && end - FIRST > 2 * data.get(LIVE)) {
+            compact(IntUnaryOperator.identity());
+        }
+    }
+
+    @Override
+    public int length() {
+        return offsets.length();
+    }
+
+    @Override
+    public AttributeColumn snapshot() {
+        AttributeColumn snapshot = new HeapAttributeColumn();
+        for (int label = 0; label < offsets.length(); label++) {
+            Attribute attribute = get(label);
+            if (attribute != null) {
+                snapshot.set(label, attribute);
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void renumber(int[] map) {
+        compact(label -> map[label]);
+    }
+
+    void force() {
+        offsets.force();
+        data.force();
+    }
+
+    void close() throws IOException {
+        offsets.close();
+        data.close();
+    }
+
+    /**
+     * Drops the mappings and deletes both files, see {@link MappedFile#delete()}
+     */
+    void delete() throws IOException {
+        offsets.delete();
+        data.delete();
+    }
+
+    private int offset(int label) {
+        return label < offsets.length() ? offsets.get(label) : 0;
+    }
+
+    private int size(int offset) {
+        return Integer.BYTES + data.buffer().getInt(offset);
+    }
+
+    private byte[] read(int offset) {
+        ByteBuffer record = data.buffer().duplicate();
+        record.position(offset);
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return bytes;
+    }
+
+    private int append(byte[] bytes) {
+        int offset = data.get(END);
+        long end = (long) offset + Integer.BYTES + bytes.length;
+        Preconditions.checkState(end <= MappedFile.MAX_BYTES, "Too many attributes");
+        data.ensureBytes(end);
+        ByteBuffer record = data.buffer().duplicate();
+        record.position(offset);
+        record.putInt(bytes.length).put(bytes);
+        data.set(END, (int) end);
+        data.set(LIVE, data.get(LIVE) + Integer.BYTES + bytes.length);
+        return offset;
+    }
+
+    /**
+     * Packs the attributes in use at the start of the data file, moving each to the label it's relabelled to
+     */
+    private void compact(IntUnaryOperator relabel) {
+        // Each attribute as its offset and label, sorted by offset so that each slides down into space already freed
+        long[] attributes = new long[offsets.length()];
+        int count = 0;
+        for (int label = 0; label < offsets.length(); label++) {
+            int offset = offsets.get(label);
+            if (offset != 0) {
+                attributes[count++] = (long) offset << 32 | label;
+                offsets.set(label, 0);
+            }
+        }
+        Arrays.sort(attributes, 0, count);
+        int end = FIRST;
+        for (int k = 0; k < count; k++) {
+            int offset = (int) (attributes[k] >>> 32);
+            int label = relabel.applyAsInt((int) attributes[k]);
+            if (label == DartStorage.FREE) {
+                continue;
+            }
+            byte[] bytes = read(offset);
+            ByteBuffer record = data.buffer().duplicate();
+            record.position(end);
+            record.putInt(bytes.length).put(bytes);
+            offsets.grow(label + 1);
+            offsets.set(label, end);
+            end += Integer.BYTES + bytes.length;
+        }
+        data.set(END, end);
+        data.set(LIVE, end - FIRST);
+    }
+
+}
@@ -0,0 +1,387 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link DartStorage} which keeps its columns off-heap in memory-mapped files, so maps far larger than the heap stay
+ * resident without any GC pressure and can be reopened after a restart without rebuilding.
+ *
+ * The storage is a directory holding a small header file with the dimension, the capacity, the number of darts and the
+ * link count of every alpha, one file per alpha laid out like the int[] columns of {@link ArrayDartStorage} (4 bytes
+ * per dart id, {@link #FREE} for unsewn), and a membership file with one byte per dart id.  Files grow by doubling and
+ * remapping; freshly grown regions read as zeros, i.e. free and absent.
+ *
+ * An {@link NGMap} on top of the storage keeps its dart registry and free ids in files of the storage as well, and,
+ * given an {@link AttributeCodec}, its attributes, so reopening it rebuilds nothing.  Without a codec the attributes
+ * stay on the heap and are lost on close.
+ *
+ * Writes go to the page cache as they're made, {@link #force()} flushes them to disk and {@link #close()} does both.
+ */
+public class MappedDartStorage implements DartStorage, Closeable {
+
+    private static final int MAGIC = 0x4E474D50; // "NGMP"
+    private static final int VERSION = 2;
+    // Offsets in the header
+    private static final int DIMENSION = 8;
+    private static final int CAPACITY = 12;
+    private static final int DART_COUNT = 16;
+    private static final int LINK_COUNTS = 20;
+    private static final int INITIAL_CAPACITY = 1024;
+    // A single mapping can't exceed 2GB, which caps an int column at 2^29 darts
+    private static final int MAX_CAPACITY = (int) (MappedFile.MAX_BYTES / Integer.BYTES);
+
+    private static final String HEADER = "header";
+    private static final String DARTS = "darts";
+    private static final String ALPHA = "alpha-";
+    private static final String COLUMN = "column-";
+    private static final String ATTRIBUTES = "attributes-";
+    private static final String ATTRIBUTE_DATA = "attribute-data-";
+
+    private final Path directory;
+    private final AttributeCodec codec;
+    private final MappedFile header;
+    private final MappedFile darts;
+    private final List<MappedFile> alphas;
+    private final MappedColumns columns;
+    private int capacity;
+
+    private MappedDartStorage(Path directory, AttributeCodec codec, MappedFile header, MappedFile darts,
+                              boolean created) {
+        this.directory = directory;
+        this.codec = codec;
+        this.header = header;
+        this.darts = darts;
+        this.alphas = new ArrayList<>();
+        this.columns = new MappedColumns(created);
+    }
+
+    /**
+     * Opens the storage in the given directory, creating a 0-dimensional one if the directory holds none yet.  The
+     * attributes of an n-GMap on top of it stay on the heap.
+     * @param directory
+     * @return the storage, which must be closed once done with
+     */
+    public static MappedDartStorage mappedDartStorage(@NonNull Path directory) {
+        return mappedDartStorage(directory, null);
+    }
+
+    /**
+     * Opens the storage in the given directory, creating a 0-dimensional one if the directory holds none yet
+     * @param directory
+     * @param codec, to keep the attributes of an n-GMap on top of the storage in its files, or null to keep them on
+     *        the heap
+     * @return the storage, which must be closed once done with
+     */
+    public static MappedDartStorage mappedDartStorage(@NonNull Path directory, AttributeCodec codec) {
+        try {
+            Files.createDirectories(directory);
+            boolean exists = Files.exists(directory.resolve(HEADER));
+            Path darts = directory.resolve(DARTS);
+            MappedDartStorage storage = new MappedDartStorage(directory, codec,
+                    MappedFile.open(directory.resolve(HEADER), LINK_COUNTS + Integer.BYTES),
+                    exists ? MappedFile.open(darts, INITIAL_CAPACITY) : MappedFile.create(darts, INITIAL_CAPACITY),
+                    !exists);
+            if (exists) {
+                storage.reopen();
+            } else {
+                storage.create();
+            }
+            return storage;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void create() throws IOException {
+        capacity = INITIAL_CAPACITY;
+        MappedByteBuffer buffer = header.buffer();
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY, capacity);
+        alphas.add(MappedFile.create(directory.resolve(ALPHA + 0), (long) capacity * Integer.BYTES));
+    }
+
+    private void reopen() throws IOException {
+        MappedByteBuffer buffer = header.buffer();
+        Preconditions.checkState(buffer.getInt(0) == MAGIC, "Not an n-GMap storage: %s", directory);
+        Preconditions.checkState(buffer.getInt(4) == VERSION, "Unsupported storage version %s", buffer.getInt(4));
+        int dimension = buffer.getInt(DIMENSION);
+        capacity = buffer.getInt(CAPACITY);
+        header.ensureBytes(linkCountOffset(dimension) + Integer.BYTES);
+        darts.map(capacity);
+        for (int i = 0; i <= dimension; i++) {
+            alphas.add(MappedFile.open(directory.resolve(ALPHA + i), (long) capacity * Integer.BYTES));
+        }
+    }
+
+    private static int linkCountOffset(int i) {
+        return LINK_COUNTS + i * Integer.BYTES;
+    }
+
+    /**
+     * @return the files an n-GMap on top of the storage keeps its registry, ids and attributes in
+     */
+    Columns columns() {
+        return columns;
+    }
+
+    @Override
+    public int dimension() {
+        return alphas.size() - 1;
+    }
+
+    @Override
+    public void increaseDimension() {
+        int i = alphas.size();
+        try {
+            // Truncates a column left behind by a crash, or by Windows refusing to delete a mapped file
+            alphas.add(MappedFile.create(directory.resolve(ALPHA + i), (long) capacity * Integer.BYTES));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        header.ensureBytes(linkCountOffset(i) + Integer.BYTES);
+        header.buffer().putInt(linkCountOffset(i), 0);
+        header.buffer().putInt(DIMENSION, i);
+    }
+
+    /**
+     * Drops the mapping of the last alpha and deletes its file, which Windows refuses while the mapping hasn't been
+     * garbage collected: the file is then left behind, and truncated if the dimension is increased again
+     */
+    @Override
+    public void decreaseDimension() {
+        Preconditions.checkState(linkCount(dimension()) == 0);
+        MappedFile toRemove = alphas.remove(dimension());
+        header.buffer().putInt(DIMENSION, dimension());
+        try {
+            toRemove.delete();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of darts in the storage, as kept in its header
+     */
+    public int dartCount() {
+        return header.buffer().getInt(DART_COUNT);
+    }
+
+    @Override
+    public boolean containsDart(int dart) {
+        return 0 < dart && dart < capacity && darts.buffer().get(dart) != 0;
+    }
+
+    @Override
+    public void addDart(int dart) {
+        Preconditions.checkArgument(dart > 0, "Dart ids must be positive");
+        ensureCapacity(dart);
+        if (darts.buffer().get(dart) == 0) {
+            darts.buffer().put(dart, (byte) 1);
+            header.buffer().putInt(DART_COUNT, dartCount() + 1);
+        }
+    }
+
+    @Override
+    public void removeDart(int dart) {
+        if (containsDart(dart)) {
+            darts.buffer().put(dart, (byte) 0);
+            header.buffer().putInt(DART_COUNT, dartCount() - 1);
+            for (int i = 0; i < alphas.size(); i++) {
+                unlink(i, dart);
+            }
+        }
+    }
+
+    @Override
+    public int linkCount(int i) {
+        return header.buffer().getInt(linkCountOffset(i));
+    }
+
+    @Override
+    public int alpha(int i, int dart) {
+        return dart < capacity ? alphas.get(i).get(dart) : FREE;
+    }
+
+    @Override
+    public void link(int i, int dart, int codart) {
+        ensureCapacity(Math.max(dart, codart));
+        MappedFile alpha = alphas.get(i);
+        alpha.set(dart, codart);
+        alpha.set(codart, dart);
+        header.buffer().putInt(linkCountOffset(i), linkCount(i) + 1);
+    }
+
+    @Override
+    public void unlink(int i, int dart) {
+        int codart = alpha(i, dart);
+        if (codart != FREE) {
+            MappedFile alpha = alphas.get(i);
+            alpha.set(codart, FREE);
+            alpha.set(dart, FREE);
+            header.buffer().putInt(linkCountOffset(i), linkCount(i) - 1);
+        }
+    }
+
+    @Override
+    public void forEachDart(IntConsumer action) {
+        MappedByteBuffer buffer = darts.buffer();
+        for (int dart = 1; dart < capacity; dart++) {
+            if (buffer.get(dart) != 0) {
+                action.accept(dart);
+            }
+        }
+    }
+
+    /**
+     * Flushes every file to disk
+     */
+    public void force() {
+        header.force();
+        darts.force();
+        alphas.forEach(MappedFile::force);
+        columns.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        header.close();
+        darts.close();
+        for (MappedFile alpha : alphas) {
+            alpha.close();
+        }
+        columns.close();
+    }
+
+    private void ensureCapacity(int dart) {
+        if (dart < capacity) {
+            return;
+        }
+        long grown = capacity;
+        while (grown <= dart) {
+            grown = grown << 1;
+        }
+        int newCapacity = (int) Math.min(grown, MAX_CAPACITY);
+        Preconditions.checkState(dart < newCapacity, "Dart id out of range");
+        try {
+            darts.map(newCapacity);
+            for (MappedFile alpha : alphas) {
+                alpha.map((long) newCapacity * Integer.BYTES);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        capacity = newCapacity;
+        header.buffer().putInt(CAPACITY, capacity);
+    }
+
+    /**
+     * The int columns of an n-GMap in files named after them, and its attribute columns in files of the dimension
+     * they're for, if there's a codec
+     */
+    private final class MappedColumns implements Columns {
+
+        private static final int INITIAL_LENGTH = 1024;
+
+        // Whether the storage was just created, so that any file left behind in the directory is to be truncated
+        private final boolean created;
+        private final Map<String, MappedFile> intColumns = new HashMap<>();
+        private final Map<Integer, MappedAttributeColumn> attributeColumns = new HashMap<>();
+
+        private MappedColumns(boolean created) {
+            this.created = created;
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return true;
+        }
+
+        @Override
+        public int dartCount() {
+            return MappedDartStorage.this.dartCount();
+        }
+
+        @Override
+        public IntColumn intColumn(String name) {
+            return intColumns.computeIfAbsent(name, key -> {
+                Path path = directory.resolve(COLUMN + key);
+                try {
+                    return created ? MappedFile.create(path, INITIAL_LENGTH * Integer.BYTES)
+                            : MappedFile.open(path, INITIAL_LENGTH * Integer.BYTES);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        @Override
+        public AttributeColumn attributeColumn(int i, boolean create) {
+            if (codec == null) {
+                return HEAP.attributeColumn(i, create);
+            }
+            MappedAttributeColumn column = attributeColumns.get(i);
+            if (column != null) {
+                return column;
+            }
+            Path offsets = directory.resolve(ATTRIBUTES + i);
+            Path data = directory.resolve(ATTRIBUTE_DATA + i);
+            try {
+                if (create) {
+                    // Truncates the files of a dimension dropped before, see decreaseDimension
+                    column = new MappedAttributeColumn(MappedFile.create(offsets, INITIAL_LENGTH * Integer.BYTES),
+                            MappedFile.create(data, INITIAL_LENGTH), codec);
+                } else if (!created && Files.exists(offsets) && Files.exists(data)) {
+                    column = new MappedAttributeColumn(MappedFile.open(offsets, 0), MappedFile.open(data, 0), codec);
+                } else {
+                    return null;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            attributeColumns.put(i, column);
+            return column;
+        }
+
+        @Override
+        public void dropAttributeColumn(int i) {
+            MappedAttributeColumn column = attributeColumns.remove(i);
+            if (column != null) {
+                try {
+                    column.delete();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void force() {
+            intColumns.values().forEach(MappedFile::force);
+            attributeColumns.values().forEach(MappedAttributeColumn::force);
+        }
+
+        private void close() throws IOException {
+            for (MappedFile column : intColumns.values()) {
+                column.close();
+            }
+            for (MappedAttributeColumn column : attributeColumns.values()) {
+                column.close();
+            }
+        }
+    }
+
+}
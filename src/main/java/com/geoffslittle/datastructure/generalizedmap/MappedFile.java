@@ -0,0 +1,124 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file mapped in full, remapped whenever it grows, which doubles as an {@link IntColumn} of 4 bytes per int.
+ * Mapping past the end of the file extends it with zeros, without writing them: a grown region is sparse until written.
+ */
+final class MappedFile implements IntColumn {
+
+    // A single mapping can't exceed 2GB
+    static final long MAX_BYTES = Integer.MAX_VALUE & -Integer.BYTES;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private MappedFile(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the file at the given path as it is, creating it empty if there's none
+     * @return the file, mapped to at least the given number of bytes
+     */
+    static MappedFile open(Path path, long bytes) throws IOException {
+        return map(path, bytes, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Creates an empty file at the given path, truncating any file left behind there, e.g. by a crash
+     * @return the file, mapped to at least the given number of bytes of zeros
+     */
+    static MappedFile create(Path path, long bytes) throws IOException {
+        return map(path, bytes, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static MappedFile map(Path path, long bytes, StandardOpenOption... options) throws IOException {
+        MappedFile file = new MappedFile(path, FileChannel.open(path, options));
+        file.map(bytes);
+        return file;
+    }
+
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Maps at least the given number of bytes, and the whole file if it's larger
+     */
+    void map(long bytes) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(bytes, channel.size()));
+    }
+
+    /**
+     * Grows the mapping to at least the given number of bytes, at least doubling it
+     * @throws IllegalStateException past 2GB
+     */
+    void ensureBytes(long bytes) {
+        if (bytes <= buffer.capacity()) {
+            return;
+        }
+        Preconditions.checkState(bytes <= MAX_BYTES, "%s is full", path);
+        try {
+            map(Math.min(Math.max(bytes, (long) buffer.capacity() << 1), MAX_BYTES));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int get(int index) {
+        return buffer.getInt(index * Integer.BYTES);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        buffer.putInt(index * Integer.BYTES, value);
+    }
+
+    @Override
+    public int length() {
+        return buffer.capacity() / Integer.BYTES;
+    }
+
+    @Override
+    public void grow(int length) {
+        ensureBytes((long) length * Integer.BYTES);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+
+    /**
+     * Drops the mapping and deletes the file.  A mapping is only released once its buffer is garbage collected, and
+     * until then Windows refuses to delete the file: it's then left behind, and truncated when it's next created.
+     */
+    void delete() throws IOException {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (AccessDeniedException e) {
+            // Still mapped on Windows, see above
+        }
+    }
+
+}
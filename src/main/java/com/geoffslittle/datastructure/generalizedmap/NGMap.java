@@ -2,44 +2,100 @@ package com.geoffslittle.datastructure.generalizedmap;
 
 import com.geoffslittle.datastructure.maps.Attribute;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
-import fj.P;
-import fj.P2;
 import lombok.NonNull;
 import lombok.Value;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.function.Predicate;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This implementation of an n-Gmap guarantees that any interaction with an n-GMap produces a valid n-GMap
  */
 public class NGMap {
 
+    // The names of the int columns of the registry and the ids, see Columns
+    private static final String REGISTRY_DENSE = "registry-dense";
+    private static final String REGISTRY_SPARSE = "registry-sparse";
+    private static final String IDS = "ids";
+
     /**
-     * The list of alphas that define the mappings of the n-Gmap. We assume each alpha to be a partial involution
-     * without fixed point.
+     * The storage of the alphas that define the mappings of the n-Gmap. We assume each alpha to be a partial
+     * involution without fixed point.
      */
     @NonNull
-    private final List<Involution<Dart>> alphas;
+    private final DartStorage storage;
+    // At most one attribute per i-cell, keyed by the label the cell index gives the cell
     @NonNull
-    private final SafeMap<P2<Dart, Integer>, Attribute> attributes;
+    private final AttributeStore attributes;
     // TODO: Decide if this should be generic in A or accept any Object (different attributes for different i-cells)
 
+    // Reusable traversals; sewing needs two orbits at once
+    private final OrbitTraversal leftOrbit;
+    private final OrbitTraversal rightOrbit;
+    // The alphas to traverse for each i, computed whenever the dimension changes so that reads never write them
+    private int[][] specialRanges;
+    private int[][] excludedRanges;
+    @NonNull
+    private final CellIndex cellIndex;
+    // Connected components, maintained once componentCount() has been called
+    @NonNull
+    private final ComponentIndex componentIndex;
+    // The darts of the n-GMap, kept alongside the storage so membership and size never scan the alphas
+    @NonNull
+    private final DartRegistry registry;
+    // Hands out dart ids, reusing those of removed darts
+    @NonNull
+    private final DartIdAllocator ids;
+    @NonNull
+    private NGMapMetrics metrics = NGMapMetrics.NOOP;
+    // Whether metrics are recorded at all, so that the default costs a single branch
+    private boolean instrumented;
+    // The undo log of the open transaction, or null
+    private ChangeJournal journal;
+
 
-    private NGMap() {
-        this.alphas = Lists.newArrayList(Involution.involution());
-        this.attributes = SafeMap.newSafeMap();
+    private NGMap(DartStorage storage) {
+        this.storage = storage;
+        // A storage which persists itself keeps the registry, the ids and the attributes in files of its own
+        Columns columns = storage instanceof MappedDartStorage
+                ? ((MappedDartStorage) storage).columns() : Columns.HEAP;
+        this.attributes = new AttributeStore(storage.dimension(), columns);
+        this.leftOrbit = new OrbitTraversal();
+        this.rightOrbit = new OrbitTraversal();
+        this.cellIndex = new CellIndex(storage, this::excludeFromRange, attributes);
+        this.componentIndex = new ComponentIndex(storage);
+        computeRanges();
+        this.registry = new DartRegistry(columns.intColumn(REGISTRY_DENSE), columns.intColumn(REGISTRY_SPARSE));
+        this.ids = new DartIdAllocator(columns.intColumn(IDS));
+        // Persistent columns are reopened as they were left, unless they don't match the storage, e.g. after a crash
+        if (columns.isPersistent() && registry.size() == columns.dartCount()) {
+            return;
+        }
+        // The storage may hold darts already, e.g. when reopening one whose columns aren't persistent
+        registry.clear();
+        int[] bound = { 1 };
+        storage.forEachDart(dart -> {
+            registry.add(dart);
+            bound[0] = Math.max(bound[0], dart + 1);
+        });
+        ids.reset(bound[0], registry);
     }
 
     /**
@@ -47,25 +103,103 @@ public class NGMap {
      * @return a 0-GMap
      */
     public static NGMap ngMap() {
-        return new NGMap();
+        return ngMap(InvolutionDartStorage.involutionDartStorage());
+    }
+
+    /**
+     * Constructs an n-GMap on top of the given storage, e.g. an {@link ArrayDartStorage} for large maps or a
+     * {@link MappedDartStorage} for maps larger than the heap
+     * @param storage, an empty storage or one holding the n-GMap to reopen
+     * @return an n-GMap with the dimension of the given storage
+     */
+    public static NGMap ngMap(@NonNull DartStorage storage) {
+        return new NGMap(storage);
+    }
+
+    /**
+     * Reassembles an n-GMap from a storage and the id bound it was saved with
+     */
+    static NGMap ngMap(DartStorage storage, int nextId) {
+        NGMap nGMap = new NGMap(storage);
+        nGMap.ids.reset(Math.max(nGMap.ids.bound(), nextId), nGMap.registry);
+        return nGMap;
     }
 
     public int dimension() {
-        return alphas.size() - 1;
+        return storage.dimension();
+    }
+
+    /**
+     * Starts recording the sew, unsew, rewire, isSewable, iCell, genericIterator and attribute operations, e.g. with a
+     * {@link Slf4jNGMapMetrics}; {@link NGMapMetrics#NOOP} stops recording
+     */
+    public void setMetrics(@NonNull NGMapMetrics metrics) {
+        this.metrics = metrics;
+        this.instrumented = metrics.isEnabled();
+    }
+
+    private long startTimer() {
+        return instrumented ? System.nanoTime() : 0L;
+    }
+
+    private void stopTimer(NGMapMetrics.Operation operation, long start) {
+        if (instrumented) {
+            metrics.recordTime(operation, System.nanoTime() - start);
+        }
+    }
+
+    private void recordOrbitSize(NGMapMetrics.Operation operation, int darts) {
+        if (instrumented) {
+            metrics.recordOrbitSize(operation, darts);
+        }
+    }
+
+    private void recordRejection(NGMapMetrics.Operation operation) {
+        if (instrumented) {
+            metrics.recordRejection(operation);
+        }
+    }
+
+    DartStorage storage() {
+        return storage;
+    }
+
+    /**
+     * @return an upper bound on the ids of the darts
+     */
+    int nextId() {
+        return ids.bound();
+    }
+
+    AttributeStore attributes() {
+        return attributes;
+    }
+
+    DartRegistry registry() {
+        return registry;
     }
 
     public boolean increaseDimension() {
-        return alphas.add(Involution.involution());
+        checkNoTransaction();
+        storage.increaseDimension();
+        dimensionChanged();
+        return true;
     }
 
     public void decreaseDimension() {
+        checkNoTransaction();
         Preconditions.checkState(0 < dimension(), "Can't decrease dimension below 0");
-        Involution<Dart> toRemove = alphas.get(dimension());
         // Decreasing a dimension is prohibited if the alpha that represents associations in the dimension to remove
         // contains any non-empty value mapping
-        Preconditions.checkState(toRemove.domainSet().stream()
-                .allMatch(element -> !toRemove.get(element).isPresent()));
-        alphas.remove(dimension());
+        storage.decreaseDimension();
+        dimensionChanged();
+    }
+
+    private void dimensionChanged() {
+        computeRanges();
+        cellIndex.dimensionChanged(dimension());
+        componentIndex.dimensionChanged(dimension());
+        attributes.dimensionChanged(dimension());
     }
 
     /**
@@ -74,8 +208,18 @@ public class NGMap {
      * @return an n-GMap of desired dimension, n
      */
     public static NGMap ngMap(int n) {
-        NGMap nGMap = NGMap.ngMap();
-        IntStream.range(0, n).forEach(i -> nGMap.increaseDimension());
+        return ngMap(n, InvolutionDartStorage.involutionDartStorage());
+    }
+
+    /**
+     * Convenience constructor for constructing an n-GMap of dimension n on top of the given storage
+     * @param n, the desired dimension of the n-GMap
+     * @param storage, an empty storage
+     * @return an n-GMap of desired dimension, n
+     */
+    public static NGMap ngMap(int n, @NonNull DartStorage storage) {
+        NGMap nGMap = NGMap.ngMap(storage);
+        IntStream.range(nGMap.dimension(), n).forEach(i -> nGMap.increaseDimension());
         return nGMap;
     }
 
@@ -86,64 +230,246 @@ public class NGMap {
 
     /**
      * Checks if a given dart is free in the given alpha.  If the dart is not "in" the alpha, it's considered i-free.
-     * @param alpha
+     * @param i
      * @param dart
      * @return true iff the dart is free in the given alpha, false otherwise
      */
-    private static boolean isFree(Involution<Dart> alpha, Dart dart) {
-        return !alpha.containsElement(dart) || !alpha.get(dart).isPresent();
+    private boolean isFree(int i, Dart dart) {
+        return storage.alpha(i, dart.getId()) == DartStorage.FREE;
     }
 
     public Boolean isIFree(@NonNull Dart dart, int i) {
         checkValidDimension(i);
-        return isFree(alphas.get(i), dart);
+        return isFree(i, dart);
+    }
+
+    /**
+     * @return the dart linked to the given dart in alpha_i, or empty if it's i-free
+     */
+    public Optional<Dart> alpha(@NonNull Dart dart, int i) {
+        checkValidDimension(i);
+        int codart = storage.alpha(i, dart.getId());
+        return codart == DartStorage.FREE ? Optional.empty() : Optional.of(new Dart(codart));
     }
 
     public boolean containsDart(@NonNull Dart dart) {
-        return alphas.stream().map(alpha -> alpha.containsElement(dart)).reduce(false, (p, q) -> p || q);
+        return registry.contains(dart.getId());
+    }
+
+    public int dartCount() {
+        return registry.size();
+    }
+
+    /**
+     * @return the number of pairs of i-sewn darts, each pair counted once, in constant time
+     */
+    public int linkCount(int i) {
+        checkValidDimension(i);
+        return storage.linkCount(i);
+    }
+
+    /**
+     * @return the number of i-free darts, in constant time
+     */
+    public int freeDartCount(int i) {
+        return dartCount() - 2 * linkCount(i);
+    }
+
+    /**
+     * Checks the whole n-GMap in one pass over its darts, e.g. after building it without per-operation checks: every
+     * alpha must be a partial involution without fixed point on the darts, and alpha_i alpha_j must be one too for
+     * |i - j| >= 2, i.e. alpha_i(alpha_j(d)) = alpha_j(alpha_i(d)) whenever either side is defined.
+     * @return true iff the n-GMap is valid
+     */
+    public boolean isValid() {
+        int dimension = dimension();
+        for (int position = 0; position < registry.size(); position++) {
+            int dart = registry.dart(position);
+            for (int i = 0; i <= dimension; i++) {
+                int codart = storage.alpha(i, dart);
+                if (codart != DartStorage.FREE
+                        && (codart == dart || !registry.contains(codart) || storage.alpha(i, codart) != dart)) {
+                    return false;
+                }
+            }
+            for (int i = 0; i <= dimension; i++) {
+                for (int j = i + 2; j <= dimension; j++) {
+                    if (compose(i, j, dart) != compose(j, i, dart)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return alpha_i(alpha_j(dart)), or FREE if either is undefined
+     */
+    private int compose(int i, int j, int dart) {
+        int codart = storage.alpha(j, dart);
+        return codart == DartStorage.FREE ? DartStorage.FREE : storage.alpha(i, codart);
     }
 
     public boolean isIsolated(@NonNull Dart dart) {
-        return alphas.stream().map(alpha -> isFree(alpha, dart)).reduce(true, (p, q) -> p && q);
+        return IntStream.range(0, dimension() + 1).allMatch(i -> isFree(i, dart));
     }
 
+    /**
+     * Adds a dart, reusing the id of a removed dart if there is one, so a {@link Dart} must not be used once its dart
+     * has been removed
+     * @throws IllegalStateException if every dart id is in use
+     */
     public Dart addIsolatedDart() {
-        Dart dart = new Dart(ids.next());
-        alphas.stream().forEach(alpha -> alpha.put(dart));
+        boolean grown = ids.freeCount() == 0;
+        Dart dart = new Dart(ids.allocate());
+        storage.addDart(dart.getId());
+        registry.add(dart.getId());
+        cellIndex.added(dart.getId());
+        componentIndex.added(dart.getId());
+        if (journal != null) {
+            journal.added(dart.getId(), grown);
+        }
         return dart;
     }
 
     public void removeIsolatedDart(@NonNull Dart dart) {
         Preconditions.checkState(isIsolated(dart), "dart is not isolated");
-        alphas.stream().forEach(alpha -> alpha.remove(dart));
+        storage.removeDart(dart.getId());
+        registry.remove(dart.getId());
+        cellIndex.removed(dart.getId());
+        componentIndex.removed(dart.getId());
+        // An isolated dart is a cell of its own in every dimension, so its attributes go with it
+        attributes.removed(dart.getId());
+        ids.release(dart.getId());
+        if (journal != null) {
+            journal.removed(dart.getId());
+        }
+    }
+
+    /**
+     * Renumbers the darts to [1, dartCount()], keeping their order, so that array-backed storages and indexes are
+     * dense again after heavy churn.  Alphas, cell labels and attributes all follow their darts, and any
+     * {@link Dart} held from before must be passed through the returned function.
+     * @return the function mapping each dart from before to its renumbered dart, or to null if it wasn't in the n-GMap
+     */
+    public UnaryOperator<Dart> compact() {
+        checkNoTransaction();
+        int bound = ids.bound();
+        int count = registry.size();
+        int[] map = new int[bound];
+        int next = 1;
+        for (int dart = 1; dart < bound; dart++) {
+            if (registry.contains(dart)) {
+                map[dart] = next++;
+            }
+        }
+        UnaryOperator<Dart> renumbering = dart -> 0 < dart.getId() && dart.getId() < bound
+                && map[dart.getId()] != DartStorage.FREE ? new Dart(map[dart.getId()]) : null;
+        if (ids.freeCount() == 0) {
+            // Already dense
+            return renumbering;
+        }
+
+        // links[i] holds the renumbered pairs of alpha_i, each pair once
+        int dimension = dimension();
+        int[][] links = new int[dimension + 1][];
+        for (int i = 0; i <= dimension; i++) {
+            int[] pairs = new int[2 * storage.linkCount(i)];
+            int size = 0;
+            for (int dart = 1; dart < bound; dart++) {
+                int codart = map[dart] != DartStorage.FREE ? storage.alpha(i, dart) : DartStorage.FREE;
+                if (dart < codart) {
+                    pairs[size++] = map[dart];
+                    pairs[size++] = map[codart];
+                }
+            }
+            links[i] = pairs;
+        }
+        registry.forEach(storage::removeDart);
+        registry.clear();
+        for (int dart = 1; dart <= count; dart++) {
+            storage.addDart(dart);
+            registry.add(dart);
+        }
+        for (int i = 0; i <= dimension; i++) {
+            for (int k = 0; k < links[i].length; k += 2) {
+                storage.link(i, links[i][k], links[i][k + 1]);
+            }
+        }
+        cellIndex.renumbered(map);
+        componentIndex.renumbered(map);
+        attributes.renumbered(map);
+        ids.reset(count + 1, registry);
+        return renumbering;
     }
 
+    /**
+     * @return a live, read-only view of the darts with O(1) size and contains; it must not be iterated while darts
+     * are added or removed
+     */
     public Set<Dart> darts() {
-        return alphas.stream()
-                .map(Involution::domainSet)
-                .flatMap(Set::stream)
-                .collect(Collectors.toSet());
+        return darts;
     }
 
-    private List<Involution<Dart>> intsToAlphas(List<Integer> ints) {
-        return ints.stream().map(i -> {checkValidDimension(i); return alphas.get(i);}).collect(Collectors.toList());
+    private final Set<Dart> darts = new AbstractSet<Dart>() {
+        @Override
+        public int size() {
+            return registry.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Dart && registry.contains(((Dart) o).getId());
+        }
+
+        @Override
+        public Iterator<Dart> iterator() {
+            return new Iterator<Dart>() {
+                private int position = 0;
+                @Override
+                public boolean hasNext() {
+                    return position < registry.size();
+                }
+                @Override
+                public Dart next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return new Dart(registry.dart(position++));
+                }
+            };
+        }
+    };
+
+    /**
+     * Visits the id of every dart without allocating
+     */
+    void forEachDart(IntConsumer action) {
+        registry.forEach(action);
+    }
+
+    private int[] intsToDims(List<Integer> ints) {
+        return ints.stream().mapToInt(i -> {checkValidDimension(i); return i;}).toArray();
     }
 
     public Iterator<Dart> genericIterator(@NonNull Dart dart, @NonNull List<Integer> ints) {
-        Function<Dart, List<Dart>> f = d -> intsToAlphas(ints).stream()
-                .map(alpha -> alpha.get(d))
-                // TODO: When Java 9 is released, the filtering and mapping of Optionals should be easier
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
-        return BreadthFirstSearch.breadthFirstSearch(dart, f);
+        return genericIterator(dart, ints, leftOrbit);
     }
 
-    private List<Integer> filterIntList(@NonNull Integer i, Predicate<Integer> predicate) {
+    Iterator<Dart> genericIterator(Dart dart, List<Integer> ints, OrbitTraversal traversal) {
+        long start = startTimer();
+        int size = traversal.traverse(storage, dart.getId(), intsToDims(ints));
+        Iterator<Dart> iterator = Arrays.stream(traversal.toArray()).mapToObj(Dart::new).iterator();
+        recordOrbitSize(NGMapMetrics.Operation.GENERIC_ITERATOR, size);
+        stopTimer(NGMapMetrics.Operation.GENERIC_ITERATOR, start);
+        return iterator;
+    }
+
+    private int[] filterIntList(int i, IntPredicate predicate) {
         return IntStream.range(0, dimension() + 1)
-                .filter(j -> predicate.test(j))
-                .boxed()
-                .collect(Collectors.toList());
+                .filter(predicate)
+                .toArray();
     }
 
     /**
@@ -151,36 +477,49 @@ public class NGMap {
      * @param i
      * @return
      */
-    private List<Integer> specialRange(@NonNull Integer i) {
-        return filterIntList(i, j -> j <= i-2 || i+2 <= j);
-    }
-
-    private List<Integer> excludeFromRange(@NonNull Integer i) {
-        return filterIntList(i, j -> j != i);
-    }
-
-    private boolean hasIsomorphismAndNonEqualOrbits(Iterator<Dart> leftIt, Iterator<Dart> rightIt,
-            List<Involution<Dart>> alphas) {
-        Set<Dart> leftOrbit = new HashSet<>();
-        Set<Dart> rightOrbit = new HashSet<>();
-        Map<Dart, Dart> iso = new HashMap<>();
-        while (leftIt.hasNext() && rightIt.hasNext()) {
-            Dart leftCurr = leftIt.next();
-            Dart rightCurr = rightIt.next();
-            leftOrbit.add(leftCurr);
-            rightOrbit.add(rightCurr);
-            iso.put(leftCurr, rightCurr);
-            for (Involution<Dart> alpha : alphas) {
-                if (alpha.get(leftCurr).isPresent()
-                        && iso.containsKey(alpha.get(leftCurr).get())
-                        && alpha.get(rightCurr).isPresent()
-                        && !iso.get(alpha.get(leftCurr).get()).equals(alpha.get(rightCurr).get())) {
+    private int[] specialRange(int i) {
+        return specialRanges[i];
+    }
+
+    private int[] excludeFromRange(int i) {
+        return excludedRanges[i];
+    }
+
+    private void computeRanges() {
+        specialRanges = IntStream.range(0, dimension() + 1)
+                .mapToObj(k -> filterIntList(k, j -> j <= k-2 || k+2 <= j))
+                .toArray(int[][]::new);
+        excludedRanges = IntStream.range(0, dimension() + 1)
+                .mapToObj(k -> filterIntList(k, j -> j != k))
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * Traverses both orbits into leftOrbit and rightOrbit and checks that visiting them in lockstep is an
+     * isomorphism, i.e. the k-th darts of both orbits are linked to the same positions by every alpha in dims
+     */
+    private boolean hasIsomorphismAndNonEqualOrbits(int leftDart, int rightDart, int[] dims,
+                                                    OrbitTraversal leftOrbit, OrbitTraversal rightOrbit) {
+        int size = leftOrbit.traverse(storage, leftDart, dims);
+        if (leftOrbit.visited(rightDart) || rightOrbit.traverse(storage, rightDart, dims) != size) {
+            return false;
+        }
+        for (int k = 0; k < size; k++) {
+            int leftCurr = leftOrbit.dart(k);
+            int rightCurr = rightOrbit.dart(k);
+            for (int i : dims) {
+                int leftNeighbor = storage.alpha(i, leftCurr);
+                int rightNeighbor = storage.alpha(i, rightCurr);
+                if (leftNeighbor == DartStorage.FREE || rightNeighbor == DartStorage.FREE) {
+                    if (leftNeighbor != rightNeighbor) {
+                        return false;
+                    }
+                } else if (leftOrbit.position(leftNeighbor) != rightOrbit.position(rightNeighbor)) {
                     return false;
                 }
             }
         }
-
-        return !(leftIt.hasNext() || rightIt.hasNext() || Objects.equals(leftOrbit, rightOrbit));
+        return true;
     }
 
     private boolean dartsNotEqualAndFree(Dart leftDart, Dart rightDart, int i) {
@@ -195,37 +534,156 @@ public class NGMap {
      * @return
      */
     public boolean isSewable(@NonNull Dart leftDart, @NonNull Dart rightDart, int i) {
+        return isSewable(leftDart, rightDart, i, leftOrbit, rightOrbit);
+    }
+
+    /**
+     * Checks sewability with the given traversal buffers, so that concurrent readers can each bring their own
+     */
+    boolean isSewable(Dart leftDart, Dart rightDart, int i, OrbitTraversal leftOrbit, OrbitTraversal rightOrbit) {
+        long start = startTimer();
+        boolean sewable = sewable(leftDart, rightDart, i, leftOrbit, rightOrbit);
+        if (!sewable) {
+            recordRejection(NGMapMetrics.Operation.IS_SEWABLE);
+        }
+        stopTimer(NGMapMetrics.Operation.IS_SEWABLE, start);
+        return sewable;
+    }
+
+    private boolean sewable(Dart leftDart, Dart rightDart, int i, OrbitTraversal leftOrbit,
+                            OrbitTraversal rightOrbit) {
         checkValidDimension(i);
-        if (dimension() <= 1 || (dimension() == 2 && i == 1)) {
+        if (sewsSinglePair(i)) {
             // For 0- and 1-GMaps, a pair of darts are sewable iff they are free, similarly for 2-GMaps where i=1
             return dartsNotEqualAndFree(leftDart, rightDart, i);
         }
-        List<Integer> ints = specialRange(i);
-        List<Involution<Dart>> alphas = intsToAlphas(ints);
 
         return dartsNotEqualAndFree(leftDart, rightDart, i) &&
-                hasIsomorphismAndNonEqualOrbits(genericIterator(leftDart, ints),
-                        genericIterator(rightDart, ints), alphas);
+                hasIsomorphismAndNonEqualOrbits(leftDart.getId(), rightDart.getId(), specialRange(i), leftOrbit,
+                        rightOrbit) &&
+                orbitsFree(i, leftOrbit, rightOrbit);
+    }
+
+    /**
+     * Checks that every dart of the orbits left in leftOrbit and rightOrbit is i-free
+     */
+    private boolean orbitsFree(int i, OrbitTraversal leftOrbit, OrbitTraversal rightOrbit) {
+        for (int k = 0; k < leftOrbit.size(); k++) {
+            if (storage.alpha(i, leftOrbit.dart(k)) != DartStorage.FREE
+                    || storage.alpha(i, rightOrbit.dart(k)) != DartStorage.FREE) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void sew(@NonNull Dart leftDart, @NonNull Dart rightDart, int i) {
-        checkValidDimension(i);
-        Preconditions.checkState(isSewable(leftDart, rightDart, i), "Darts are not sewable");
+        Preconditions.checkState(trySew(leftDart, rightDart, i), "Darts are not sewable");
+    }
 
-        Involution<Dart> alpha = alphas.get(i);
-        if (dimension() <= 1 || (dimension() == 2 && i == 1)) {
-            // For 0- and 1-GMaps, a pair of darts are sewable iff they are free, similarly for 2-GMaps where i=1
-            alpha.put(leftDart, rightDart);
-            return;
+    /**
+     * Sews two darts if they are i-sewable.  The orbits traversed to check the isomorphism are linked as they are, so
+     * this traverses each orbit once where isSewable followed by sew traverses each twice.
+     * @param leftDart
+     * @param rightDart
+     * @param i
+     * @return true iff the darts were sewn, otherwise the n-GMap is left untouched
+     */
+    public boolean trySew(@NonNull Dart leftDart, @NonNull Dart rightDart, int i) {
+        long start = startTimer();
+        boolean sewn = sewIfSewable(leftDart, rightDart, i);
+        if (!sewn) {
+            recordRejection(NGMapMetrics.Operation.SEW);
+        }
+        stopTimer(NGMapMetrics.Operation.SEW, start);
+        return sewn;
+    }
+
+    private boolean sewIfSewable(Dart leftDart, Dart rightDart, int i) {
+        if (!sewable(leftDart, rightDart, i, leftOrbit, rightOrbit)) {
+            return false;
+        }
+        if (sewsSinglePair(i)) {
+            link(i, leftDart.getId(), rightDart.getId());
+            recordOrbitSize(NGMapMetrics.Operation.SEW, 1);
+            return true;
+        }
+
+        // sewable left the isomorphic orbits in leftOrbit and rightOrbit
+        for (int k = 0; k < leftOrbit.size(); k++) {
+            link(i, leftOrbit.dart(k), rightOrbit.dart(k));
+        }
+        recordOrbitSize(NGMapMetrics.Operation.SEW, leftOrbit.size());
+        return true;
+    }
+
+    /**
+     * @return true iff i-sewing links just the two given darts, i.e. the orbits of specialRange(i) are single darts
+     */
+    private boolean sewsSinglePair(int i) {
+        return dimension() <= 1 || (dimension() == 2 && i == 1);
+    }
+
+    /**
+     * Sews a batch of pairs of darts in dimension i, see {@link #sewAll(Collection)}
+     * @param pairs
+     * @param i
+     */
+    public void sewAll(@NonNull Collection<Edge> pairs, int i) {
+        sewAll(pairs.stream().map(pair -> new Sewing(pair.get_1(), pair.get_2(), i)).collect(Collectors.toList()));
+    }
+
+    /**
+     * Sews a batch of pairs of darts, possibly in different dimensions, all or nothing.  Sewings are applied one
+     * dimension at a time in increasing order.  All the sewings of a dimension are validated against the n-GMap before
+     * any of them is linked, which also rejects two sewings of the batch that would link the same dart.
+     * @param sewings
+     * @throws IllegalStateException naming the first rejected sewing, in which case the darts are left unsewn
+     */
+    public void sewAll(@NonNull Collection<Sewing> sewings) {
+        Map<Integer, List<Sewing>> byDimension = sewings.stream()
+                .collect(Collectors.groupingBy(Sewing::getDimension, TreeMap::new, Collectors.toList()));
+        List<SewingPlan> applied = new ArrayList<>(byDimension.size());
+        try {
+            for (Map.Entry<Integer, List<Sewing>> entry : byDimension.entrySet()) {
+                SewingPlan plan = plan(entry.getKey(), entry.getValue());
+                for (int k = 0; k < plan.size(); k++) {
+                    link(plan.dimension(), plan.dart(k), plan.codart(k));
+                }
+                applied.add(plan);
+            }
+        } catch (IllegalStateException e) {
+            // Only whole dimensions were applied, unlink them in reverse
+            for (int p = applied.size() - 1; p >= 0; p--) {
+                SewingPlan plan = applied.get(p);
+                for (int k = 0; k < plan.size(); k++) {
+                    unlink(plan.dimension(), plan.dart(k));
+                }
+            }
+            cellIndex.settle();
+            throw e;
         }
+    }
 
-        Iterator<Dart> leftIt = genericIterator(leftDart, specialRange(i));
-        Iterator<Dart> rightIt = genericIterator(rightDart, specialRange(i));
-        while (leftIt.hasNext()) {
-            Dart leftDartP = leftIt.next();
-            Dart rightDartP = rightIt.next();
-            alpha.put(leftDartP, rightDartP);
+    private SewingPlan plan(int i, List<Sewing> sewings) {
+        checkValidDimension(i);
+        SewingPlan plan = new SewingPlan(i);
+        for (Sewing sewing : sewings) {
+            Dart leftDart = sewing.getLeft();
+            Dart rightDart = sewing.getRight();
+            Preconditions.checkState(isSewable(leftDart, rightDart, i), "Darts are not sewable: %s", sewing);
+            boolean claimed;
+            if (sewsSinglePair(i)) {
+                claimed = plan.add(leftDart.getId(), rightDart.getId());
+            } else {
+                claimed = true;
+                for (int k = 0; k < leftOrbit.size() && claimed; k++) {
+                    claimed = plan.add(leftOrbit.dart(k), rightOrbit.dart(k));
+                }
+            }
+            Preconditions.checkState(claimed, "Darts are sewn differently by another sewing of the batch: %s", sewing);
         }
+        return plan;
     }
 
     public void unsew(@NonNull Dart dart, int i) {
@@ -234,10 +692,84 @@ public class NGMap {
         // It's fine if it's already i-free, the client is happy
         // Preconditions.checkState(!isIFree(dart, i), "dart is already i-free");
 
-        Involution<Dart> alpha = alphas.get(i);
-        List<Dart> orbit = Lists.newArrayList(genericIterator(dart, specialRange(i)));
-        for (Dart curr : orbit) {
-            alpha.remove(curr);
+        long start = startTimer();
+        int size = leftOrbit.traverse(storage, dart.getId(), specialRange(i));
+        for (int k = 0; k < size; k++) {
+            unlink(i, leftOrbit.dart(k));
+        }
+        cellIndex.settle();
+        recordOrbitSize(NGMapMetrics.Operation.UNSEW, size);
+        stopTimer(NGMapMetrics.Operation.UNSEW, start);
+    }
+
+    /**
+     * Rewires a few alpha links at once for operators that know the neighbourhood they edit, e.g. the Euler operators
+     * of a 2-GMap, skipping the orbit traversals and isomorphism checks of sew and unsew.  The pairs of unlinks are
+     * unlinked, then the pairs of links are linked, and the cell index settles once, so attributes follow their cells
+     * as they would through sew and unsew.  Only the touched darts are checked: the alphas must stay partial
+     * involutions without fixed point, and alpha_i alpha_j too for |i - j| >= 2.
+     * @param unlinks, pairs of darts linked in alpha_i
+     * @param links, pairs of darts that are i-free once the unlinks are made
+     * @throws IllegalStateException if the rewiring would leave an invalid n-GMap, in which case nothing is changed
+     */
+    public void rewire(@NonNull Collection<Sewing> unlinks, @NonNull Collection<Sewing> links) {
+        long start = startTimer();
+        Rewiring rewiring = new Rewiring(storage, registry);
+        for (Sewing unlink : unlinks) {
+            checkValidDimension(unlink.getDimension());
+            checkRewiring(rewiring.unlink(unlink.getDimension(), unlink.getLeft().getId(), unlink.getRight().getId()),
+                    "Darts are not linked: %s", unlink);
+        }
+        for (Sewing link : links) {
+            checkValidDimension(link.getDimension());
+            checkRewiring(rewiring.link(link.getDimension(), link.getLeft().getId(), link.getRight().getId()),
+                    "Darts are not linkable: %s", link);
+        }
+        checkRewiring(rewiring.isValid(dimension()), "The rewiring breaks the involutions around its darts", null);
+
+        for (Sewing unlink : unlinks) {
+            unlink(unlink.getDimension(), unlink.getLeft().getId());
+        }
+        // Settled before linking, so that no cell merges under a label its darts no longer share
+        cellIndex.settle();
+        for (Sewing link : links) {
+            link(link.getDimension(), link.getLeft().getId(), link.getRight().getId());
+        }
+        recordOrbitSize(NGMapMetrics.Operation.REWIRE, unlinks.size() + links.size());
+        stopTimer(NGMapMetrics.Operation.REWIRE, start);
+    }
+
+    private void checkRewiring(boolean valid, String message, Sewing sewing) {
+        if (!valid) {
+            recordRejection(NGMapMetrics.Operation.REWIRE);
+            throw new IllegalStateException(sewing == null ? message : String.format(message, sewing));
+        }
+    }
+
+    /**
+     * Links a single pair of darts in alpha_i, enforcing the rules of a partial involution without fixed point
+     */
+    private void link(int i, int dart, int codart) {
+        Preconditions.checkState(dart != codart, "Fixed points prohibited");
+        Preconditions.checkState(storage.alpha(i, dart) == DartStorage.FREE
+                && storage.alpha(i, codart) == DartStorage.FREE, "The element is already associated with a value");
+        cellIndex.beforeLink(i, dart, codart);
+        componentIndex.beforeLink(dart, codart);
+        storage.link(i, dart, codart);
+        if (journal != null) {
+            journal.linked(i, dart, codart);
+        }
+    }
+
+    private void unlink(int i, int dart) {
+        int codart = storage.alpha(i, dart);
+        storage.unlink(i, dart);
+        if (codart != DartStorage.FREE) {
+            cellIndex.unlinked(i, dart, codart);
+            componentIndex.unlinked(dart, codart);
+            if (journal != null) {
+                journal.unlinked(i, dart, codart);
+            }
         }
     }
 
@@ -250,63 +782,327 @@ public class NGMap {
         return new Edge(dart1, dart2);
     }
 
+    /**
+     * Adds a closed polygon of n edges, each 1-sewn to the next and the last to the first
+     * @return the edges in order, each running from its first dart to its second
+     */
     public List<Edge> addNPolygon(@NonNull Integer n) {
+        List<Edge> edges = new ArrayList<>(n);
         Edge firstEdge = addEdge();
+        edges.add(firstEdge);
         Edge lastEdge = firstEdge;
         for (int i = 1; i < n; i++) {
             Edge currEdge = addEdge();
             sew(lastEdge.get_2(), currEdge.get_1(), 1);
+            edges.add(currEdge);
             lastEdge = currEdge;
         }
         sew(lastEdge.get_2(), firstEdge.get_1(), 1);
-        return null;
+        return edges;
     }
 
     public List<Dart> iCell(@NonNull Dart dart, @NonNull Integer i) {
-        return Lists.newArrayList(genericIterator(dart, excludeFromRange(i)));
+        return iCell(dart, i, leftOrbit);
+    }
+
+    List<Dart> iCell(Dart dart, int i, OrbitTraversal traversal) {
+        checkValidDimension(i);
+        long start = startTimer();
+        int size = traversal.traverse(storage, dart.getId(), excludeFromRange(i));
+        List<Dart> iCell = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            iCell.add(new Dart(traversal.dart(k)));
+        }
+        recordOrbitSize(NGMapMetrics.Operation.I_CELL, size);
+        stopTimer(NGMapMetrics.Operation.I_CELL, start);
+        return iCell;
+    }
+
+    /**
+     * Enumerates every i-cell of the n-GMap exactly once.  The stream is sequential, call parallel() on it to spread
+     * the dart ids across fork-join workers.  The n-GMap must not change until the stream is consumed.
+     * @param i
+     * @return a stream of the darts of each i-cell
+     */
+    public Stream<List<Dart>> cells(int i) {
+        checkValidDimension(i);
+        IntUnaryOperator labels = cellIndex.isIndexed(i) ? dart -> cellIndex.label(i, dart) : null;
+        return StreamSupport.stream(new CellSpliterator(storage, excludeFromRange(i), labels, registry, ids.bound()), false);
+    }
+
+    /**
+     * Starts maintaining the cell-label index for dimension i, so that {@link #cellId(Dart, int)} no longer traverses
+     * the cell.  Indexing costs one traversal of the whole map up front, and from then on sew and unsew relabel the
+     * i-cells they merge or split.  Attributes of i-cells are kept by label, so the first attribute operation on
+     * dimension i indexes it.
+     * @param i
+     */
+    public void indexCells(int i) {
+        checkValidDimension(i);
+        cellIndex.index(i);
+    }
+
+    public boolean isIndexed(int i) {
+        return cellIndex.isIndexed(i);
+    }
+
+    /**
+     * Counts the i-cells in O(1): the first call indexes dimension i, see {@link #indexCells(int)}, and from then on
+     * sew, unsew, addIsolatedDart and removeIsolatedDart keep the count as they relabel the cells they merge or split
+     * @param i
+     * @return the number of i-cells
+     */
+    public int cellCount(int i) {
+        indexCells(i);
+        return cellIndex.count(i);
+    }
+
+    /**
+     * @return the alternating sum of the number of i-cells over every dimension, indexing every dimension on the
+     * first call
+     */
+    public int eulerCharacteristic() {
+        int characteristic = 0;
+        for (int i = 0; i <= dimension(); i++) {
+            characteristic += (i % 2 == 0 ? 1 : -1) * cellCount(i);
+        }
+        return characteristic;
+    }
+
+    /**
+     * Counts the connected components in O(1): the first call labels every dart by its component, and from then on
+     * linking relabels the smaller of two components, while unlinking searches from both darts until the searches
+     * meet or the smaller part is found, see {@link ComponentIndex}
+     * @return the number of connected components
+     */
+    public int componentCount() {
+        componentIndex.index();
+        return componentIndex.count();
+    }
+
+    boolean isComponentIndexed() {
+        return componentIndex.isIndexed();
+    }
+
+    /**
+     * Identifies the i-cell of a dart by its smallest dart id, which is constant time once dimension i is indexed
+     * @param dart
+     * @param i
+     * @return the id of the i-cell containing the dart
+     */
+    public int cellId(@NonNull Dart dart, int i) {
+        return cellId(dart, i, leftOrbit);
     }
 
+    int cellId(Dart dart, int i, OrbitTraversal traversal) {
+        checkValidDimension(i);
+        if (cellIndex.isIndexed(i)) {
+            return cellIndex.label(i, dart.getId());
+        }
+        int size = traversal.traverse(storage, dart.getId(), excludeFromRange(i));
+        int id = Integer.MAX_VALUE;
+        for (int k = 0; k < size; k++) {
+            id = Math.min(id, traversal.dart(k));
+        }
+        return id;
+    }
+
+    /**
+     * @return the label of the dart's i-cell, indexing dimension i if needed
+     */
+    private int attributeLabel(Dart dart, int i) {
+        Preconditions.checkState(containsDart(dart), "dart is not in the n-GMap");
+        indexCells(i);
+        return cellIndex.label(i, dart.getId());
+    }
+
+    /**
+     * Attaches an attribute to the i-cell of the dart, indexing dimension i on its first use, see
+     * {@link #indexCells(int)}.  The attribute then follows its cell as the n-GMap is edited:
+     *   When two i-cells merge, the attribute of the cell with the smaller id wins and the other one is dropped.
+     *   When an i-cell splits, both parts keep the attribute.
+     * @return the attribute
+     * @throws IllegalStateException if the dart isn't in the n-GMap or its i-cell already has an attribute
+     */
     public Attribute putAttribute(@NonNull Dart dart, @NonNull Integer i, Attribute attribute) {
-        // Get the i-cell for the given dart
-        List<Dart> iCell = iCell(dart, i);
-        iCell.stream().forEach(curr -> Preconditions.checkState(Optional.empty().equals(attributes.get(P.p(curr, i)))));
-        attributes.put(P.p(dart, i), Optional.of(attribute));
+        long start = startTimer();
+        int label = attributeLabel(dart, i);
+        Preconditions.checkState(attributes.get(i, label) == null);
+        attributes.put(i, label, attribute);
+        stopTimer(NGMapMetrics.Operation.PUT_ATTRIBUTE, start);
         return attribute;
     }
 
+    /**
+     * Removes the attribute of the i-cell of the dart, if any, indexing dimension i on its first use
+     * @throws IllegalStateException if the dart isn't in the n-GMap
+     */
     public void removeAttribute(@NonNull Dart dart, @NonNull Integer i) {
-        // Get the i-cell for the given dart
-        List<Dart> iCell = iCell(dart, i);
-        // Remove any and all associations with each dart in the i-cell
-        iCell.stream().forEach(curr -> attributes.put(P.p(curr, i), Optional.empty()));
+        long start = startTimer();
+        attributes.remove(i, attributeLabel(dart, i));
+        stopTimer(NGMapMetrics.Operation.REMOVE_ATTRIBUTE, start);
     }
 
+    /**
+     * Looks up the attribute of the i-cell of the dart, see {@link #putAttribute(Dart, Integer, Attribute)} for how
+     * attributes follow their cells.  The first call for dimension i indexes it, which traverses the whole n-GMap
+     * once; from then on a lookup is O(1).
+     * @return the attribute, or empty if the i-cell has none or the dart isn't in the n-GMap
+     */
     public Optional<Attribute> getAttribute(@NonNull Dart dart, @NonNull Integer i) {
-        List<Dart> iCell = iCell(dart, i);
-        return iCell.stream()
-                .map(curr -> attributes.get(P.p(curr, i)))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .findFirst();
+        if (!containsDart(dart)) {
+            checkValidDimension(i);
+            return Optional.empty();
+        }
+        long start = startTimer();
+        Optional<Attribute> attribute = Optional.ofNullable(attributes.get(i, attributeLabel(dart, i)));
+        stopTimer(NGMapMetrics.Operation.GET_ATTRIBUTE, start);
+        return attribute;
     }
 
-    private final Iterator<Integer> ids = new Iterator<Integer>() {
-        private int i = 1;
-        @Override
-        public boolean hasNext() {
-            return true;
+    /**
+     * Reads an attribute without writing anything, unlike {@link #getAttribute(Dart, Integer)} which may index
+     * @return the attribute, or null (not empty) if dimension i isn't indexed yet
+     */
+    Optional<Attribute> indexedAttribute(Dart dart, int i) {
+        checkValidDimension(i);
+        if (!containsDart(dart)) {
+            return Optional.empty();
         }
-        @Override
-        public Integer next() {
-            return i++;
+        if (!cellIndex.isIndexed(i)) {
+            return null;
         }
-    };
+        return Optional.ofNullable(attributes.get(i, cellIndex.label(i, dart.getId())));
+    }
+
+    /**
+     * Opens a transaction: from now on every link, unlink, dart added or removed and attribute write is logged, so
+     * that {@link #rollback()} can undo them in time proportional to their number rather than to the size of the
+     * n-GMap.  Only the n-GMap is rolled back, not anything kept alongside it, e.g. by a TwoGMap.  Compacting and
+     * changing the dimension aren't allowed within a transaction.
+     * @throws IllegalStateException if a transaction is already open
+     */
+    public void begin() {
+        checkNoTransaction();
+        journal = new ChangeJournal();
+        attributes.setJournal(journal);
+    }
+
+    /**
+     * Keeps the changes made since {@link #begin()} and closes the transaction
+     * @throws IllegalStateException if no transaction is open
+     */
+    public void commit() {
+        Preconditions.checkState(journal != null, "No transaction is open");
+        journal = null;
+        attributes.setJournal(null);
+    }
+
+    /**
+     * Undoes the changes made since {@link #begin()}, in reverse, and closes the transaction.  Darts get their ids
+     * back and the ids handed out are taken back, so the n-GMap is exactly as it was, down to the next dart id.
+     * @throws IllegalStateException if no transaction is open
+     */
+    public void rollback() {
+        Preconditions.checkState(journal != null, "No transaction is open");
+        ChangeJournal changes = journal;
+        journal = null;
+        attributes.setJournal(null);
+        // Cells are relabelled as the changes are undone, but attributes are put back slot by slot from the journal
+        attributes.setMuted(true);
+        try {
+            for (int k = changes.size() - 1; k >= 0; k--) {
+                undo(changes, k);
+            }
+            cellIndex.settle();
+        } finally {
+            attributes.setMuted(false);
+        }
+    }
+
+    private void undo(ChangeJournal changes, int k) {
+        int i = changes.dimension(k);
+        int dart = changes.dart(k);
+        switch (changes.kind(k)) {
+            case ChangeJournal.LINK:
+                storage.unlink(i, dart);
+                cellIndex.unlinked(i, dart, changes.codart(k));
+                componentIndex.unlinked(dart, changes.codart(k));
+                break;
+            case ChangeJournal.UNLINK:
+                // Settled first, so that no cell merges under a label its darts no longer share
+                cellIndex.settle();
+                cellIndex.beforeLink(i, dart, changes.codart(k));
+                componentIndex.beforeLink(dart, changes.codart(k));
+                storage.link(i, dart, changes.codart(k));
+                break;
+            case ChangeJournal.ADD:
+            case ChangeJournal.ADD_GROWN:
+                // Settled first, so that the dart is a cell of its own when it goes
+                cellIndex.settle();
+                storage.removeDart(dart);
+                registry.remove(dart);
+                cellIndex.removed(dart);
+                componentIndex.removed(dart);
+                ids.unallocate(dart, changes.kind(k) == ChangeJournal.ADD_GROWN);
+                break;
+            case ChangeJournal.REMOVE:
+                ids.reclaim(dart);
+                storage.addDart(dart);
+                registry.add(dart);
+                cellIndex.added(dart);
+                componentIndex.added(dart);
+                break;
+            case ChangeJournal.ATTRIBUTE:
+                Attribute replaced = changes.replaced(k);
+                if (replaced != null) {
+                    attributes.put(i, dart, replaced);
+                } else {
+                    attributes.remove(i, dart);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown change " + changes.kind(k));
+        }
+    }
+
+    /**
+     * @return true iff a transaction is open
+     */
+    public boolean inTransaction() {
+        return journal != null;
+    }
+
+    private void checkNoTransaction() {
+        Preconditions.checkState(journal == null, "A transaction is open");
+    }
+
+    /**
+     * Takes an immutable snapshot of the n-GMap which shares its structure with the n-GMap, e.g. to hand a consistent
+     * view to readers while this n-GMap keeps being edited.  O(1) in the number of darts on a
+     * {@link PersistentDartStorage}, e.g. {@code NGMap.ngMap(n, PersistentDartStorage.persistentDartStorage())};
+     * other storages are copied, see {@link DartStorage#snapshot()}.  The snapshot keeps the cell labels of the indexed
+     * dimensions, in O(1) as well.
+     * @return the snapshot
+     */
+    public NGMapSnapshot snapshot() {
+        return new NGMapSnapshot(storage.snapshot(), attributes.snapshot(), cellIndex.snapshot());
+    }
 
     @Value
     public static final class Dart {
         private final int id;
     }
 
+    @Value
+    public static final class Sewing {
+        @NonNull
+        private final Dart left;
+        @NonNull
+        private final Dart right;
+        private final int dimension;
+    }
+
     @Value
     public static final class Edge {
         private final Dart _1;
@@ -0,0 +1,250 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Builds a 2-GMap from the vertex index lists of its faces in a single linear pass, without sewing dart by dart.
+ *
+ * Each edge (v_j, v_j+1) of a face gets two darts laid out next to each other: one at v_j and one at v_j+1, linked in
+ * alpha_0.  alpha_1 links consecutive edges of the face at their shared vertex, and alpha_2 links the edges of two
+ * faces sharing the same pair of vertices, which are found through a hash table keyed by the pair.  Nothing is
+ * checked per dart; {@link #build(boolean)} can check the finished n-GMap once with {@link NGMap#isValid()}.
+ */
+public final class NGMapBuilder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // alphas[i][dart] is the dart linked to dart in alpha_i, as in ArrayDartStorage
+    private int[][] alphas;
+    private int nextId;
+    // vertexDarts[v] is a dart at vertex v
+    private int[] vertexDarts;
+    private final EdgeTable edges;
+    private boolean built;
+
+    private NGMapBuilder(int expectedDarts) {
+        int capacity = Math.max(INITIAL_CAPACITY, expectedDarts + 1);
+        this.alphas = new int[3][capacity];
+        this.nextId = 1;
+        this.vertexDarts = new int[INITIAL_CAPACITY];
+        this.edges = new EdgeTable(expectedDarts / 2);
+    }
+
+    public static NGMapBuilder ngMapBuilder() {
+        return new NGMapBuilder(0);
+    }
+
+    /**
+     * @param expectedDarts, the number of darts to make room for up front: twice the sum of the face sizes
+     */
+    public static NGMapBuilder ngMapBuilder(int expectedDarts) {
+        Preconditions.checkArgument(expectedDarts >= 0);
+        return new NGMapBuilder(expectedDarts);
+    }
+
+    /**
+     * Adds a face bounded by the given vertices in order
+     * @param vertices, at least 3 non-negative vertex indices with no vertex repeated consecutively
+     * @return this builder
+     * @throws IllegalStateException if an edge of the face is already shared by two faces
+     */
+    public NGMapBuilder addFace(@NonNull int... vertices) {
+        return addFace(vertices, 0, vertices.length);
+    }
+
+    /**
+     * Adds a face bounded by vertices[offset, offset + k) in order, e.g. from a batch of packed faces
+     * @see #addFace(int...)
+     */
+    public NGMapBuilder addFace(@NonNull int[] vertices, int offset, int k) {
+        Preconditions.checkState(!built, "Already built");
+        Preconditions.checkArgument(k >= 3, "A face needs at least 3 vertices");
+        Preconditions.checkPositionIndexes(offset, offset + k, vertices.length);
+        ensureCapacity(nextId + 2 * k);
+        int first = nextId;
+        for (int j = 0; j < k; j++) {
+            int from = vertices[offset + j];
+            int to = vertices[offset + (j + 1) % k];
+            Preconditions.checkArgument(from >= 0 && from != to, "Invalid edge %s-%s", from, to);
+            // The edge's dart at from, then its dart at to
+            int dart = first + 2 * j;
+            int codart = dart + 1;
+            alphas[0][dart] = codart;
+            alphas[0][codart] = dart;
+            int next = j + 1 < k ? codart + 1 : first;
+            alphas[1][codart] = next;
+            alphas[1][next] = codart;
+            setVertexDart(from, dart);
+            sewAlongEdge(from, to, dart, codart);
+        }
+        nextId = first + 2 * k;
+        return this;
+    }
+
+    private void sewAlongEdge(int from, int to, int dart, int codart) {
+        boolean reversed = from > to;
+        long key = reversed ? ((long) to << 32) | from : ((long) from << 32) | to;
+        int index = edges.slot(key);
+        if (!edges.contains(index)) {
+            edges.put(index, key, dart, reversed);
+            return;
+        }
+        int other = edges.dart(index);
+        Preconditions.checkState(other != EdgeTable.SEWN, "Edge %s-%s is shared by more than two faces", from, to);
+        edges.markSewn(index);
+        // other is the other face's dart at its edge's first vertex; sew the darts at the same vertices
+        int otherCodart = alphas[0][other];
+        boolean sameDirection = edges.reversed(index) == reversed;
+        alphas[2][dart] = sameDirection ? other : otherCodart;
+        alphas[2][alphas[2][dart]] = dart;
+        alphas[2][codart] = sameDirection ? otherCodart : other;
+        alphas[2][alphas[2][codart]] = codart;
+    }
+
+    private void setVertexDart(int vertex, int dart) {
+        if (vertex >= vertexDarts.length) {
+            vertexDarts = Arrays.copyOf(vertexDarts, Math.max(vertex + 1, vertexDarts.length << 1));
+        }
+        if (vertexDarts[vertex] == DartStorage.FREE) {
+            vertexDarts[vertex] = dart;
+        }
+    }
+
+    /**
+     * @return true iff a face has the given vertex
+     */
+    public boolean containsVertex(int vertex) {
+        return 0 <= vertex && vertex < vertexDarts.length && vertexDarts[vertex] != DartStorage.FREE;
+    }
+
+    /**
+     * @return a dart at the given vertex, e.g. to attach the vertex's attribute once built
+     * @throws IllegalArgumentException if no face has the vertex
+     */
+    public NGMap.Dart vertexDart(int vertex) {
+        Preconditions.checkArgument(containsVertex(vertex), "No face has vertex %s", vertex);
+        return new NGMap.Dart(vertexDarts[vertex]);
+    }
+
+    public NGMap build() {
+        return build(false);
+    }
+
+    /**
+     * Builds the 2-GMap on an {@link ArrayDartStorage}; the builder can't add faces afterwards
+     * @param validate, whether to check the 2-GMap with {@link NGMap#isValid()}
+     * @throws IllegalStateException if validation fails
+     */
+    public NGMap build(boolean validate) {
+        Preconditions.checkState(!built, "Already built");
+        built = true;
+        BitSet darts = new BitSet(nextId);
+        darts.set(1, nextId);
+        NGMap ngMap = NGMap.ngMap(ArrayDartStorage.arrayDartStorage(alphas, darts), nextId);
+        Preconditions.checkState(!validate || ngMap.isValid(), "The faces don't make a valid 2-GMap");
+        return ngMap;
+    }
+
+    private void ensureCapacity(int bound) {
+        int capacity = alphas[0].length;
+        if (bound <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(bound, capacity << 1);
+        for (int i = 0; i < alphas.length; i++) {
+            alphas[i] = Arrays.copyOf(alphas[i], newCapacity);
+        }
+    }
+
+    /**
+     * An open addressing table from an edge, as its two vertices packed in a long with the smaller one first, to the
+     * dart of the first face with the edge at the edge's first vertex in that face
+     */
+    private static final class EdgeTable {
+
+        private static final int SEWN = -1;
+        private static final long EMPTY = -1L;
+
+        private long[] keys;
+        private int[] darts;
+        // reversed[index] iff the first face runs along the edge from its larger vertex to its smaller one
+        private boolean[] reversed;
+        private int mask;
+        private int size;
+
+        private EdgeTable(int expectedEdges) {
+            int capacity = Integer.highestOneBit(Math.max(16, expectedEdges) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            this.darts = new int[capacity];
+            this.reversed = new boolean[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private boolean contains(int index) {
+            return keys[index] != EMPTY;
+        }
+
+        private int dart(int index) {
+            return darts[index];
+        }
+
+        private boolean reversed(int index) {
+            return reversed[index];
+        }
+
+        /**
+         * Maps the edge at the slot found for it; the slot is invalid afterwards
+         */
+        private void put(int index, long key, int dart, boolean isReversed) {
+            keys[index] = key;
+            darts[index] = dart;
+            reversed[index] = isReversed;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+        }
+
+        /**
+         * Keeps the edge in the table, so that a third face with the edge is caught
+         */
+        private void markSewn(int index) {
+            darts[index] = SEWN;
+        }
+
+        /**
+         * @return the slot holding the key, or the empty slot it would go in
+         */
+        private int slot(long key) {
+            int index = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (keys[index] != EMPTY && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldDarts = darts;
+            boolean[] oldReversed = reversed;
+            keys = new long[oldKeys.length << 1];
+            Arrays.fill(keys, EMPTY);
+            darts = new int[keys.length];
+            reversed = new boolean[keys.length];
+            mask = keys.length - 1;
+            for (int k = 0; k < oldKeys.length; k++) {
+                if (oldKeys[k] != EMPTY) {
+                    int index = slot(oldKeys[k]);
+                    keys[index] = oldKeys[k];
+                    darts[index] = oldDarts[k];
+                    reversed[index] = oldReversed[k];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,256 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import com.geoffslittle.datastructure.maps.Position;
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Optional;
+
+/**
+ * Streams an {@link NGMap} to an {@link OutputStream} as it goes, without building anything in memory besides a
+ * couple of int columns per dart id:
+ *
+ *   JSON, through a Gson {@link JsonWriter}: the dimension, the darts, the linked pairs of each alpha and the
+ *   attributes of the cells of each dimension, keyed by cell id (see {@link NGMap#cellId(NGMap.Dart, int)}).
+ *   OFF and OBJ, for 2-GMaps: one vertex per 0-cell at its {@link Position} (the origin if it has none) and one
+ *   polygon per closed face.  Faces whose boundary is open can't be written as polygons and are skipped.
+ *
+ * The stream is flushed but left open.
+ */
+public final class NGMapExporter {
+
+    private static final int BUFFER_CHARS = 1 << 16;
+    private static final int[] VERTEX_DIMS = { 1, 2 };
+
+    private NGMapExporter() {
+    }
+
+    public static void writeJson(@NonNull NGMap ngMap, @NonNull OutputStream out) throws IOException {
+        writeJson(ngMap, out, new Gson());
+    }
+
+    /**
+     * @param gson, to write each attribute with, along with the name of its class
+     */
+    public static void writeJson(@NonNull NGMap ngMap, @NonNull OutputStream out, @NonNull Gson gson)
+            throws IOException {
+        DartStorage storage = ngMap.storage();
+        int dimension = storage.dimension();
+        JsonWriter json = new JsonWriter(writer(out));
+        json.beginObject();
+        json.name("dimension").value(dimension);
+
+        json.name("darts").beginArray();
+        for (int position = 0; position < ngMap.dartCount(); position++) {
+            json.value(ngMap.registry().dart(position));
+        }
+        json.endArray();
+
+        json.name("alphas").beginArray();
+        for (int i = 0; i <= dimension; i++) {
+            json.beginArray();
+            for (int position = 0; position < ngMap.dartCount(); position++) {
+                int dart = ngMap.registry().dart(position);
+                int codart = storage.alpha(i, dart);
+                // Each pair once
+                if (dart < codart) {
+                    json.beginArray().value(dart).value(codart).endArray();
+                }
+            }
+            json.endArray();
+        }
+        json.endArray();
+
+        json.name("attributes").beginArray();
+        AttributeStore attributes = ngMap.attributes();
+        for (int i = 0; i <= dimension; i++) {
+            json.beginArray();
+            IOException[] failure = new IOException[1];
+            attributes.forEach(i, (attribute, label) -> {
+                if (failure[0] == null) {
+                    try {
+                        writeAttribute(json, gson, label, attribute);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            json.endArray();
+        }
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeAttribute(JsonWriter json, Gson gson, int label, Attribute attribute) throws IOException {
+        json.beginObject();
+        json.name("cell").value(label);
+        json.name("type").value(attribute.getClass().getName());
+        json.name("value");
+        gson.toJson(attribute, attribute.getClass(), json);
+        json.endObject();
+    }
+
+    /**
+     * Writes a 2-GMap as an OFF mesh
+     * @throws IllegalArgumentException if the n-GMap isn't a 2-GMap
+     */
+    public static void writeOff(@NonNull NGMap ngMap, @NonNull OutputStream out) throws IOException {
+        Mesh mesh = new Mesh(ngMap);
+        Writer writer = writer(out);
+        writer.write("OFF\n");
+        writer.write(mesh.vertexCount + " " + mesh.countFaces() + " 0\n");
+        mesh.writeVertices(writer, "");
+        mesh.writeFaces(writer, true);
+        writer.flush();
+    }
+
+    /**
+     * Writes a 2-GMap as an OBJ mesh
+     * @throws IllegalArgumentException if the n-GMap isn't a 2-GMap
+     */
+    public static void writeObj(@NonNull NGMap ngMap, @NonNull OutputStream out) throws IOException {
+        Mesh mesh = new Mesh(ngMap);
+        Writer writer = writer(out);
+        mesh.writeVertices(writer, "v ");
+        mesh.writeFaces(writer, false);
+        writer.flush();
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_CHARS);
+    }
+
+    /**
+     * Numbers the 0-cells of a 2-GMap and walks the boundaries of its faces
+     */
+    private static final class Mesh {
+        private final NGMap ngMap;
+        private final DartStorage storage;
+        private final int bound;
+        // vertices[dart] is the number of the dart's 0-cell
+        private final int[] vertices;
+        // representatives[v] is a dart of 0-cell v
+        private int[] representatives;
+        private int vertexCount;
+
+        private Mesh(NGMap ngMap) {
+            Preconditions.checkArgument(ngMap.dimension() == 2, "Only 2-GMaps are meshes");
+            this.ngMap = ngMap;
+            this.storage = ngMap.storage();
+            this.bound = ngMap.nextId();
+            this.vertices = new int[bound];
+            Arrays.fill(vertices, -1);
+            this.representatives = new int[16];
+            OrbitTraversal traversal = new OrbitTraversal();
+            ngMap.forEachDart(dart -> {
+                if (vertices[dart] < 0) {
+                    int size = traversal.traverse(storage, dart, VERTEX_DIMS);
+                    for (int k = 0; k < size; k++) {
+                        vertices[traversal.dart(k)] = vertexCount;
+                    }
+                    if (vertexCount == representatives.length) {
+                        representatives = Arrays.copyOf(representatives, vertexCount << 1);
+                    }
+                    representatives[vertexCount++] = dart;
+                }
+            });
+        }
+
+        private void writeVertices(Writer writer, String prefix) throws IOException {
+            for (int v = 0; v < vertexCount; v++) {
+                Position position = position(representatives[v]);
+                writer.write(prefix);
+                writer.write(position.getX() + " " + position.getY() + " " + position.getZ() + "\n");
+            }
+        }
+
+        private Position position(int dart) {
+            // Reading through the index as it stands, as exporting mustn't index anything
+            Optional<Attribute> attribute = ngMap.indexedAttribute(new NGMap.Dart(dart), 0);
+            if (attribute != null && attribute.isPresent() && attribute.get() instanceof Position) {
+                return (Position) attribute.get();
+            }
+            return new Position(0, 0, 0);
+        }
+
+        private int countFaces() {
+            int[] count = new int[1];
+            forEachFace((start, size) -> count[0]++);
+            return count[0];
+        }
+
+        private void writeFaces(Writer writer, boolean off) throws IOException {
+            IOException[] failure = new IOException[1];
+            forEachFace((start, size) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    writer.write(off ? Integer.toString(size) : "f");
+                    int dart = start;
+                    for (int k = 0; k < size; k++) {
+                        writer.write(' ');
+                        // OBJ vertices are 1-based
+                        writer.write(Integer.toString(off ? vertices[dart] : vertices[dart] + 1));
+                        dart = storage.alpha(1, storage.alpha(0, dart));
+                    }
+                    writer.write('\n');
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+
+        /**
+         * Visits each closed face once, as its first dart and number of vertices; the k-th vertex is at the dart
+         * reached by applying alpha_1 alpha_0 k times
+         */
+        private void forEachFace(FaceConsumer action) {
+            BitSet visited = new BitSet(bound);
+            ngMap.forEachDart(start -> {
+                if (visited.get(start)) {
+                    return;
+                }
+                int size = 0;
+                int dart = start;
+                do {
+                    int codart = storage.alpha(0, dart);
+                    visited.set(dart);
+                    if (codart == DartStorage.FREE) {
+                        return;
+                    }
+                    visited.set(codart);
+                    dart = storage.alpha(1, codart);
+                    size++;
+                } while (dart != DartStorage.FREE && dart != start);
+                if (dart == start) {
+                    action.accept(start, size);
+                }
+            });
+        }
+    }
+
+    private interface FaceConsumer {
+        void accept(int start, int size);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+/**
+ * Receives measurements from the hot paths of an {@link NGMap}, see {@link NGMap#setMetrics(NGMapMetrics)}.  Calls
+ * come from whichever thread runs the operation, so implementations must be thread-safe when the n-GMap is read
+ * concurrently, e.g. through a {@link ConcurrentNGMap}.
+ *
+ * The default, {@link #NOOP}, is disabled, in which case the n-GMap doesn't even read the clock.
+ */
+public interface NGMapMetrics {
+
+    enum Operation {
+        SEW, UNSEW, REWIRE, IS_SEWABLE, I_CELL, GENERIC_ITERATOR, PUT_ATTRIBUTE, GET_ATTRIBUTE, REMOVE_ATTRIBUTE
+    }
+
+    NGMapMetrics NOOP = new NGMapMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordTime(Operation operation, long nanos) {
+        }
+
+        @Override
+        public void recordOrbitSize(Operation operation, int darts) {
+        }
+
+        @Override
+        public void recordRejection(Operation operation) {
+        }
+    };
+
+    /**
+     * Read once when the metrics are set; nothing is recorded unless enabled
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Records one call of the operation and how long it took
+     */
+    void recordTime(Operation operation, long nanos);
+
+    /**
+     * Records how many darts the operation traversed, linked or unlinked
+     */
+    void recordOrbitSize(Operation operation, int darts);
+
+    /**
+     * Records that the operation turned down its darts, i.e. they weren't sewable
+     */
+    void recordRejection(Operation operation);
+
+}
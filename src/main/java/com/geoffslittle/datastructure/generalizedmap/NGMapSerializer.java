@@ -0,0 +1,266 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Saves an {@link NGMap} to a compact binary snapshot and loads it back.  All values are big-endian:
+ *
+ *   header:     magic, version, dimension, dart count, next id (ints)
+ *   darts:      word count (int), then the dart membership bits (longs)
+ *   alphas:     for each i in [0, dimension], alpha_i(d) for every id d in [0, next id) (ints, {@link DartStorage#FREE}
+ *               for unsewn darts)
+ *   attributes: for each i in [0, dimension], the attribute count (int), then label, length and codec bytes per
+ *               attribute
+ *
+ * Columns move through a direct buffer with bulk puts and gets, and loading wraps the columns in an
+ * {@link ArrayDartStorage} as they are, so nothing is re-validated or re-sewn dart by dart.
+ */
+public final class NGMapSerializer {
+
+    private static final int MAGIC = 0x4E474D53; // "NGMS"
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private NGMapSerializer() {
+    }
+
+    /**
+     * Saves the topology of an n-GMap without any attributes
+     * @throws IllegalStateException if the n-GMap has attributes
+     */
+    public static void save(@NonNull NGMap ngMap, @NonNull Path path) throws IOException {
+        save(ngMap, path, null);
+    }
+
+    public static void save(@NonNull NGMap ngMap, @NonNull Path path, AttributeCodec codec) throws IOException {
+        DartStorage storage = ngMap.storage();
+        int dimension = storage.dimension();
+        int nextId = ngMap.nextId();
+        BitSet darts = new BitSet(nextId);
+        ngMap.forEachDart(darts::set);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new Writer(channel);
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            writer.putInt(dimension);
+            writer.putInt(darts.cardinality());
+            writer.putInt(nextId);
+
+            long[] words = darts.toLongArray();
+            writer.putInt(words.length);
+            writer.putLongs(words);
+
+            int[] chunk = new int[BUFFER_BYTES / Integer.BYTES];
+            for (int i = 0; i <= dimension; i++) {
+                for (int from = 0; from < nextId; from += chunk.length) {
+                    int length = Math.min(chunk.length, nextId - from);
+                    for (int k = 0; k < length; k++) {
+                        chunk[k] = storage.alpha(i, from + k);
+                    }
+                    writer.putInts(chunk, length);
+                }
+            }
+
+            AttributeStore attributes = ngMap.attributes();
+            for (int i = 0; i <= dimension; i++) {
+                List<Attribute> values = new ArrayList<>();
+                List<Integer> labels = new ArrayList<>();
+                attributes.forEach(i, (attribute, label) -> {
+                    values.add(attribute);
+                    labels.add(label);
+                });
+                Preconditions.checkState(values.isEmpty() || codec != null, "An attribute codec is required");
+                writer.putInt(values.size());
+                for (int k = 0; k < values.size(); k++) {
+                    byte[] bytes = codec.encode(values.get(k));
+                    writer.putInt(labels.get(k));
+                    writer.putInt(bytes.length);
+                    writer.putBytes(bytes);
+                }
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * Loads a snapshot saved without attributes
+     * @throws IllegalStateException if the snapshot has attributes
+     */
+    public static NGMap load(@NonNull Path path) throws IOException {
+        return load(path, null);
+    }
+
+    /**
+     * Loads a snapshot into an n-GMap backed by an {@link ArrayDartStorage}
+     */
+    public static NGMap load(@NonNull Path path, AttributeCodec codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Reader reader = new Reader(channel);
+            Preconditions.checkState(reader.getInt() == MAGIC, "Not an n-GMap snapshot: %s", path);
+            Preconditions.checkState(reader.getInt() == VERSION, "Unsupported snapshot version");
+            int dimension = reader.getInt();
+            int dartCount = reader.getInt();
+            int nextId = reader.getInt();
+
+            long[] words = new long[reader.getInt()];
+            reader.getLongs(words);
+            BitSet darts = BitSet.valueOf(words);
+            Preconditions.checkState(darts.cardinality() == dartCount, "Corrupt snapshot: %s", path);
+
+            int[][] alphas = new int[dimension + 1][];
+            for (int i = 0; i <= dimension; i++) {
+                alphas[i] = new int[nextId];
+                reader.getInts(alphas[i]);
+            }
+            NGMap ngMap = NGMap.ngMap(ArrayDartStorage.arrayDartStorage(alphas, darts), nextId);
+
+            for (int i = 0; i <= dimension; i++) {
+                int count = reader.getInt();
+                Preconditions.checkState(count == 0 || codec != null, "An attribute codec is required");
+                for (int k = 0; k < count; k++) {
+                    int label = reader.getInt();
+                    byte[] bytes = new byte[reader.getInt()];
+                    reader.getBytes(bytes);
+                    ngMap.putAttribute(new NGMap.Dart(label), i, codec.decode(bytes));
+                }
+            }
+            return ngMap;
+        }
+    }
+
+    /**
+     * Buffers writes to a channel through a direct buffer
+     */
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void putInts(int[] values, int length) throws IOException {
+            for (int from = 0; from < length; ) {
+                ensureRemaining(Integer.BYTES);
+                int count = Math.min(buffer.remaining() / Integer.BYTES, length - from);
+                IntBuffer ints = buffer.asIntBuffer();
+                ints.put(values, from, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                from += count;
+            }
+        }
+
+        private void putLongs(long[] values) throws IOException {
+            for (int from = 0; from < values.length; ) {
+                ensureRemaining(Long.BYTES);
+                int count = Math.min(buffer.remaining() / Long.BYTES, values.length - from);
+                LongBuffer longs = buffer.asLongBuffer();
+                longs.put(values, from, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                from += count;
+            }
+        }
+
+        private void putBytes(byte[] values) throws IOException {
+            for (int from = 0; from < values.length; ) {
+                ensureRemaining(1);
+                int count = Math.min(buffer.remaining(), values.length - from);
+                buffer.put(values, from, count);
+                from += count;
+            }
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Buffers reads from a channel through a direct buffer
+     */
+    private static final class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        private Reader(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        private int getInt() throws IOException {
+            ensureAvailable(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        private void getInts(int[] values) throws IOException {
+            for (int from = 0; from < values.length; ) {
+                ensureAvailable(Integer.BYTES);
+                int count = Math.min(buffer.remaining() / Integer.BYTES, values.length - from);
+                buffer.asIntBuffer().get(values, from, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                from += count;
+            }
+        }
+
+        private void getLongs(long[] values) throws IOException {
+            for (int from = 0; from < values.length; ) {
+                ensureAvailable(Long.BYTES);
+                int count = Math.min(buffer.remaining() / Long.BYTES, values.length - from);
+                buffer.asLongBuffer().get(values, from, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                from += count;
+            }
+        }
+
+        private void getBytes(byte[] values) throws IOException {
+            for (int from = 0; from < values.length; ) {
+                ensureAvailable(1);
+                int count = Math.min(buffer.remaining(), values.length - from);
+                buffer.get(values, from, count);
+                from += count;
+            }
+        }
+
+        private void ensureAvailable(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                Preconditions.checkState(channel.read(buffer) >= 0, "Truncated snapshot");
+            }
+            buffer.flip();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable view of an {@link NGMap} as it was when {@link NGMap#snapshot()} was taken.  It shares its structure
+ * with the n-GMap, which keeps being edited, and any number of threads may read it at once.
+ *
+ * Snapshots carry the cell labels of the dimensions the n-GMap had indexed, so finding the cell of a dart (and thus
+ * its attribute) is a lookup in those dimensions and a traversal of the cell in the others.
+ */
+public class NGMapSnapshot {
+
+    @NonNull
+    private final DartStorage storage;
+    @NonNull
+    private final AttributeStore attributes;
+    // labels[i].get(dart) is the label of the i-cell of the dart, or null if dimension i wasn't indexed
+    private final CopyOnWriteIntArray[] labels;
+    // excludedRanges[i] are the alphas whose orbits are the i-cells
+    private final int[][] excludedRanges;
+    private final ThreadLocal<OrbitTraversal> traversals;
+
+    NGMapSnapshot(DartStorage storage, AttributeStore attributes, CopyOnWriteIntArray[] labels) {
+        this.storage = storage;
+        this.attributes = attributes;
+        this.labels = labels;
+        this.excludedRanges = IntStream.range(0, storage.dimension() + 1)
+                .mapToObj(k -> IntStream.range(0, storage.dimension() + 1).filter(j -> j != k).toArray())
+                .toArray(int[][]::new);
+        this.traversals = ThreadLocal.withInitial(OrbitTraversal::new);
+    }
+
+    public int dimension() {
+        return storage.dimension();
+    }
+
+    private void checkValidDimension(int i) {
+        Preconditions.checkState(0 <= i && i <= dimension(), "0 <= i <= n");
+    }
+
+    public boolean containsDart(@NonNull NGMap.Dart dart) {
+        return storage.containsDart(dart.getId());
+    }
+
+    public Boolean isIFree(@NonNull NGMap.Dart dart, int i) {
+        checkValidDimension(i);
+        return storage.alpha(i, dart.getId()) == DartStorage.FREE;
+    }
+
+    public Set<NGMap.Dart> darts() {
+        Set<NGMap.Dart> darts = new HashSet<>();
+        storage.forEachDart(id -> darts.add(new NGMap.Dart(id)));
+        return darts;
+    }
+
+    public List<NGMap.Dart> iCell(@NonNull NGMap.Dart dart, @NonNull Integer i) {
+        checkValidDimension(i);
+        OrbitTraversal traversal = traversals.get();
+        int size = traversal.traverse(storage, dart.getId(), excludedRanges[i]);
+        List<NGMap.Dart> iCell = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            iCell.add(new NGMap.Dart(traversal.dart(k)));
+        }
+        return iCell;
+    }
+
+    /**
+     * @return the smallest dart id of the i-cell of the dart, as {@link NGMap#cellId(NGMap.Dart, int)}
+     */
+    public int cellId(@NonNull NGMap.Dart dart, int i) {
+        checkValidDimension(i);
+        if (labels[i] != null) {
+            return labels[i].get(dart.getId());
+        }
+        OrbitTraversal traversal = traversals.get();
+        int size = traversal.traverse(storage, dart.getId(), excludedRanges[i]);
+        int id = Integer.MAX_VALUE;
+        for (int k = 0; k < size; k++) {
+            id = Math.min(id, traversal.dart(k));
+        }
+        return id;
+    }
+
+    /**
+     * @return the attribute of the i-cell of the dart, or empty if it has none or the dart isn't in the snapshot
+     */
+    public Optional<Attribute> getAttribute(@NonNull NGMap.Dart dart, @NonNull Integer i) {
+        checkValidDimension(i);
+        if (!containsDart(dart)) {
+            return Optional.empty();
+        }
+        // Attributes are kept by the label of their cell, which is the cell id
+        return Optional.ofNullable(attributes.get(i, cellId(dart, i)));
+    }
+
+}
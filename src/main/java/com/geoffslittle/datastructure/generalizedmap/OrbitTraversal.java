@@ -0,0 +1,101 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.Arrays;
+
+/**
+ * A breadth first orbit traversal over a {@link DartStorage} which reuses its queue and visited marks from one call to
+ * the next.  Visited marks are stamped with an epoch that is bumped per traversal, so starting a traversal never
+ * clears anything and visiting a dart never allocates (besides growing the arrays to fit larger dart ids).
+ *
+ * After {@link #traverse(DartStorage, int, int[])} the queue holds the whole orbit in visit order, which is the same
+ * order {@link BreadthFirstSearch} visits it in.
+ */
+final class OrbitTraversal {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Darts in visit order; [0, size) is the orbit of the last traversal
+    private int[] queue;
+    // marks[dart] == epoch iff the dart was visited by the current traversal
+    private int[] marks;
+    // positions[dart] is the index of the dart in the queue, only valid for marked darts
+    private int[] positions;
+    private int epoch;
+    private int size;
+
+    OrbitTraversal() {
+        this.queue = new int[INITIAL_CAPACITY];
+        this.marks = new int[INITIAL_CAPACITY];
+        this.positions = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Visits the orbit of source under the alphas listed in dims
+     * @return the size of the orbit
+     */
+    int traverse(DartStorage storage, int source, int[] dims) {
+        nextEpoch();
+        size = 0;
+        visit(source);
+        for (int head = 0; head < size; head++) {
+            int dart = queue[head];
+            for (int i : dims) {
+                int neighbor = storage.alpha(i, dart);
+                if (neighbor != DartStorage.FREE && !visited(neighbor)) {
+                    visit(neighbor);
+                }
+            }
+        }
+        return size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the k-th dart of the orbit, in visit order
+     */
+    int dart(int k) {
+        return queue[k];
+    }
+
+    boolean visited(int dart) {
+        return dart < marks.length && marks[dart] == epoch;
+    }
+
+    /**
+     * @return the index of a visited dart in the orbit
+     */
+    int position(int dart) {
+        return positions[dart];
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(queue, size);
+    }
+
+    private void nextEpoch() {
+        epoch++;
+        if (epoch == 0) {
+            // Wrapped around, stale marks could collide with the new epoch
+            Arrays.fill(marks, 0);
+            epoch = 1;
+        }
+    }
+
+    private void visit(int dart) {
+        if (dart >= marks.length) {
+            int capacity = Math.max(dart + 1, marks.length << 1);
+            marks = Arrays.copyOf(marks, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        if (size == queue.length) {
+            queue = Arrays.copyOf(queue, size << 1);
+        }
+        marks[dart] = epoch;
+        positions[dart] = size;
+        queue[size++] = dart;
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link DartStorage} laid out like {@link ArrayDartStorage}, a column per alpha indexed by dart id plus a membership
+ * column, but with every column a {@link CopyOnWriteIntArray}.  {@link #snapshot()} is O(1) in the number of darts and
+ * each edit after it copies at most one chunk per column it touches, so consecutive versions share everything the
+ * edits between them left alone.
+ */
+public class PersistentDartStorage implements DartStorage {
+
+    private final List<CopyOnWriteIntArray> alphas;
+    // 1 for the darts of the storage, 0 otherwise
+    private final CopyOnWriteIntArray darts;
+    // linkCounts[i] is the number of pairs linked in alphas.get(i)
+    private int[] linkCounts;
+    private final boolean readOnly;
+
+    private PersistentDartStorage(List<CopyOnWriteIntArray> alphas, CopyOnWriteIntArray darts, int[] linkCounts,
+                                  boolean readOnly) {
+        this.alphas = alphas;
+        this.darts = darts;
+        this.linkCounts = linkCounts;
+        this.readOnly = readOnly;
+    }
+
+    public static PersistentDartStorage persistentDartStorage() {
+        List<CopyOnWriteIntArray> alphas = new ArrayList<>();
+        alphas.add(new CopyOnWriteIntArray());
+        return new PersistentDartStorage(alphas, new CopyOnWriteIntArray(), new int[1], false);
+    }
+
+    /**
+     * @return a writable copy of the storage, in O(darts * dimension)
+     */
+    public static PersistentDartStorage copyOf(@NonNull DartStorage storage) {
+        PersistentDartStorage copy = persistentDartStorage();
+        while (copy.dimension() < storage.dimension()) {
+            copy.increaseDimension();
+        }
+        storage.forEachDart(copy::addDart);
+        storage.forEachDart(dart -> {
+            for (int i = 0; i <= storage.dimension(); i++) {
+                int codart = storage.alpha(i, dart);
+                // Each pair is linked once, from its smaller dart
+                if (dart < codart) {
+                    copy.link(i, dart, codart);
+                }
+            }
+        });
+        return copy;
+    }
+
+    @Override
+    public int dimension() {
+        return alphas.size() - 1;
+    }
+
+    @Override
+    public void increaseDimension() {
+        checkWritable();
+        alphas.add(new CopyOnWriteIntArray());
+        linkCounts = Arrays.copyOf(linkCounts, alphas.size());
+    }
+
+    @Override
+    public void decreaseDimension() {
+        checkWritable();
+        Preconditions.checkState(linkCounts[dimension()] == 0);
+        alphas.remove(dimension());
+        linkCounts = Arrays.copyOf(linkCounts, alphas.size());
+    }
+
+    @Override
+    public boolean containsDart(int dart) {
+        return dart > 0 && darts.get(dart) != 0;
+    }
+
+    @Override
+    public void addDart(int dart) {
+        checkWritable();
+        Preconditions.checkArgument(dart > 0, "Dart ids must be positive");
+        darts.set(dart, 1);
+    }
+
+    @Override
+    public void removeDart(int dart) {
+        checkWritable();
+        if (containsDart(dart)) {
+            darts.set(dart, 0);
+            for (int i = 0; i < alphas.size(); i++) {
+                unlink(i, dart);
+            }
+        }
+    }
+
+    @Override
+    public int linkCount(int i) {
+        return linkCounts[i];
+    }
+
+    @Override
+    public boolean supportsOptimisticReads() {
+        return true;
+    }
+
+    @Override
+    public int alpha(int i, int dart) {
+        return alphas.get(i).get(dart);
+    }
+
+    @Override
+    public void link(int i, int dart, int codart) {
+        checkWritable();
+        CopyOnWriteIntArray alpha = alphas.get(i);
+        alpha.set(dart, codart);
+        alpha.set(codart, dart);
+        linkCounts[i]++;
+    }
+
+    @Override
+    public void unlink(int i, int dart) {
+        checkWritable();
+        CopyOnWriteIntArray alpha = alphas.get(i);
+        int codart = alpha.get(dart);
+        if (codart != FREE) {
+            alpha.set(codart, FREE);
+            alpha.set(dart, FREE);
+            linkCounts[i]--;
+        }
+    }
+
+    @Override
+    public void forEachDart(IntConsumer action) {
+        for (int c = 0; c < darts.chunkCount(); c++) {
+            int[] chunk = darts.chunk(c);
+            if (chunk == null) {
+                continue;
+            }
+            for (int k = 0; k < chunk.length; k++) {
+                if (chunk[k] != 0) {
+                    action.accept((c << CopyOnWriteIntArray.CHUNK_SHIFT) + k);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a read-only copy of the storage as it is now, in O(dimension)
+     */
+    @Override
+    public PersistentDartStorage snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        List<CopyOnWriteIntArray> snapshot = new ArrayList<>(alphas.size());
+        for (CopyOnWriteIntArray alpha : alphas) {
+            snapshot.add(alpha.snapshot());
+        }
+        return new PersistentDartStorage(snapshot, darts.snapshot(), linkCounts.clone(), true);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+    }
+
+}
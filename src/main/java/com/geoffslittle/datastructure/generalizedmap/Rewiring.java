@@ -0,0 +1,101 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The alphas a local rewiring leaves around the darts it touches, worked out before anything is unlinked or linked, so
+ * that a rewiring which would break the n-GMap is turned down with the n-GMap untouched.  Only the touched darts are
+ * kept; every other dart reads through to the storage.
+ */
+final class Rewiring {
+
+    private final DartStorage storage;
+    private final DartRegistry registry;
+    // alpha_i(dart) after the rewiring, keyed by i and the dart packed in a long, for the touched darts
+    private final Map<Long, Integer> alphas;
+
+    Rewiring(DartStorage storage, DartRegistry registry) {
+        this.storage = storage;
+        this.registry = registry;
+        this.alphas = new HashMap<>();
+    }
+
+    /**
+     * @return alpha_i(dart) once the unlinks and links planned so far are made
+     */
+    int alpha(int i, int dart) {
+        Integer codart = alphas.get(key(i, dart));
+        return codart != null ? codart : storage.alpha(i, dart);
+    }
+
+    /**
+     * @return false if the darts aren't linked in alpha_i, in which case nothing is planned
+     */
+    boolean unlink(int i, int dart, int codart) {
+        if (!registry.contains(dart) || alpha(i, dart) != codart || codart == DartStorage.FREE) {
+            return false;
+        }
+        set(i, dart, DartStorage.FREE);
+        set(i, codart, DartStorage.FREE);
+        return true;
+    }
+
+    /**
+     * @return false if the darts are the same, aren't in the n-GMap or aren't both i-free by then
+     */
+    boolean link(int i, int dart, int codart) {
+        if (dart == codart || !registry.contains(dart) || !registry.contains(codart)
+                || alpha(i, dart) != DartStorage.FREE || alpha(i, codart) != DartStorage.FREE) {
+            return false;
+        }
+        set(i, dart, codart);
+        set(i, codart, dart);
+        return true;
+    }
+
+    /**
+     * Checks that alpha_i alpha_j is still an involution for |i - j| >= 2 on every dart whose compositions the
+     * rewiring changes: the touched darts and the darts they are linked to afterwards
+     */
+    boolean isValid(int dimension) {
+        for (long key : alphas.keySet()) {
+            int dart = (int) key;
+            if (!commutes(dart, dimension)) {
+                return false;
+            }
+            for (int j = 0; j <= dimension; j++) {
+                int codart = alpha(j, dart);
+                if (codart != DartStorage.FREE && !commutes(codart, dimension)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean commutes(int dart, int dimension) {
+        for (int i = 0; i <= dimension; i++) {
+            for (int j = i + 2; j <= dimension; j++) {
+                if (compose(i, j, dart) != compose(j, i, dart)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int compose(int i, int j, int dart) {
+        int codart = alpha(j, dart);
+        return codart == DartStorage.FREE ? DartStorage.FREE : alpha(i, codart);
+    }
+
+    private void set(int i, int dart, int codart) {
+        alphas.put(key(i, dart), codart);
+    }
+
+    private static long key(int i, int dart) {
+        return ((long) i << 32) | (dart & 0xFFFFFFFFL);
+    }
+
+}
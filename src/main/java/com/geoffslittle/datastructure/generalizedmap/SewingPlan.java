@@ -0,0 +1,64 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import java.util.Arrays;
+
+/**
+ * The pairs of darts a batch of i-sewings is going to link, collected before any of them is linked.  A dart can only
+ * be claimed for one partner per plan, so two sewings of the batch which would link the same dart differently are
+ * caught up front, while sewings that repeat links of the plan are let through.
+ */
+final class SewingPlan {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int dimension;
+    // Pairs to link, interleaved: darts[2k] with darts[2k + 1]
+    private int[] darts;
+    private int size;
+    // The dart each dart of the plan is to be linked with, in a hash table sized by the batch rather than the ids
+    private final IntInvolution partners;
+
+    SewingPlan(int dimension) {
+        this.dimension = dimension;
+        this.darts = new int[INITIAL_CAPACITY << 1];
+        this.partners = IntInvolution.intInvolution();
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @return false if either dart was already claimed for another partner, in which case nothing is added
+     */
+    boolean add(int dart, int codart) {
+        int partner = partners.get(dart);
+        if (partner != IntInvolution.FREE || partners.get(codart) != IntInvolution.FREE) {
+            return partner == codart;
+        }
+        partners.put(dart, codart);
+        if ((size + 1) << 1 > darts.length) {
+            darts = Arrays.copyOf(darts, darts.length << 1);
+        }
+        darts[size << 1] = dart;
+        darts[(size << 1) + 1] = codart;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return the number of pairs
+     */
+    int size() {
+        return size;
+    }
+
+    int dart(int k) {
+        return darts[k << 1];
+    }
+
+    int codart(int k) {
+        return darts[(k << 1) + 1];
+    }
+
+}
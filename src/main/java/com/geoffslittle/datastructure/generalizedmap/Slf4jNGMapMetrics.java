@@ -0,0 +1,155 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link NGMapMetrics} which aggregate per operation in lock-free counters and power-of-two histograms, and report
+ * through SLF4J: {@link #report()} logs a summary line per operation at INFO, and any orbit of at least the large
+ * orbit threshold which is the largest seen so far for its operation is logged at WARN as it happens.
+ */
+public class Slf4jNGMapMetrics implements NGMapMetrics {
+
+    private static final int DEFAULT_LARGE_ORBIT = 1 << 16;
+
+    private final Logger logger;
+    private final int largeOrbit;
+    private final Map<Operation, Stats> stats;
+
+    private Slf4jNGMapMetrics(Logger logger, int largeOrbit) {
+        this.logger = logger;
+        this.largeOrbit = largeOrbit;
+        this.stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static Slf4jNGMapMetrics slf4jNGMapMetrics() {
+        return slf4jNGMapMetrics(LoggerFactory.getLogger(Slf4jNGMapMetrics.class), DEFAULT_LARGE_ORBIT);
+    }
+
+    /**
+     * @param logger, to report to
+     * @param largeOrbit, the orbit size from which orbits are logged as they're seen
+     */
+    public static Slf4jNGMapMetrics slf4jNGMapMetrics(@NonNull Logger logger, int largeOrbit) {
+        return new Slf4jNGMapMetrics(logger, largeOrbit);
+    }
+
+    @Override
+    public void recordTime(Operation operation, long nanos) {
+        Stats operationStats = stats.get(operation);
+        operationStats.calls.increment();
+        operationStats.totalNanos.add(nanos);
+        operationStats.nanos.record(nanos);
+    }
+
+    @Override
+    public void recordOrbitSize(Operation operation, int darts) {
+        Histogram orbits = stats.get(operation).orbits;
+        if (darts >= largeOrbit && darts > orbits.max()) {
+            logger.warn("Largest {} orbit so far: {} darts", operation, darts);
+        }
+        orbits.record(darts);
+    }
+
+    @Override
+    public void recordRejection(Operation operation) {
+        stats.get(operation).rejections.increment();
+    }
+
+    public long calls(@NonNull Operation operation) {
+        return stats.get(operation).calls.sum();
+    }
+
+    public long rejections(@NonNull Operation operation) {
+        return stats.get(operation).rejections.sum();
+    }
+
+    public long maxOrbitSize(@NonNull Operation operation) {
+        return stats.get(operation).orbits.max();
+    }
+
+    /**
+     * @return an upper bound on the q-quantile of the orbit sizes, within a factor of 2
+     */
+    public long orbitSizeQuantile(@NonNull Operation operation, double q) {
+        return stats.get(operation).orbits.quantile(q);
+    }
+
+    /**
+     * Logs the calls, rejections, latencies and orbit sizes of every operation called so far
+     */
+    public void report() {
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            long calls = operationStats.calls.sum();
+            if (calls == 0) {
+                continue;
+            }
+            logger.info("{}: calls={} rejections={} meanMicros={} p50Micros<={} p99Micros<={} maxMicros={} "
+                            + "orbitP50<={} orbitP99<={} orbitMax={}",
+                    entry.getKey(), calls, operationStats.rejections.sum(),
+                    micros(operationStats.totalNanos.sum() / calls),
+                    micros(operationStats.nanos.quantile(0.5)), micros(operationStats.nanos.quantile(0.99)),
+                    micros(operationStats.nanos.max()),
+                    operationStats.orbits.quantile(0.5), operationStats.orbits.quantile(0.99),
+                    operationStats.orbits.max());
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static final class Stats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rejections = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final Histogram nanos = new Histogram();
+        private final Histogram orbits = new Histogram();
+    }
+
+    /**
+     * Counts values by their highest set bit: bucket b holds the values in [2^(b-1), 2^b), bucket 0 holds 0
+     */
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void record(long value) {
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, value)));
+            max.accumulate(value);
+        }
+
+        private long max() {
+            return max.get();
+        }
+
+        private long quantile(double q) {
+            long total = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                total += buckets.get(b);
+            }
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                seen += buckets.get(b);
+                if (seen >= rank && seen > 0) {
+                    return b == 0 ? 0 : Math.min(max(), b == Long.SIZE ? Long.MAX_VALUE : (1L << b) - 1);
+                }
+            }
+            return 0;
+        }
+    }
+
+}
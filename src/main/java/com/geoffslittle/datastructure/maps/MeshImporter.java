@@ -0,0 +1,473 @@
+package com.geoffslittle.datastructure.maps;
+
+import com.geoffslittle.datastructure.generalizedmap.NGMap;
+import com.geoffslittle.datastructure.generalizedmap.NGMapBuilder;
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Imports polygon meshes from Wavefront OBJ and OFF files into a {@link TwoGMap}, with each vertex's
+ * {@link Position} attached to its 0-cell.
+ *
+ * The file is read through a {@link FileChannel} into a large direct buffer and tokenized byte by byte, so no line or
+ * number ever becomes a String.  Parsing runs on its own thread and hands faces over in packed batches through a
+ * small bounded queue to the calling thread, which feeds them to an {@link NGMapBuilder} while the next batch is
+ * parsed; the only memory that grows with the file is the 2-GMap itself and the vertex positions.
+ *
+ * Only the geometry is read: texture and normal indices, groups, materials and colors are skipped.
+ */
+public final class MeshImporter {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    // Faces are packed into batches as the vertex count followed by the vertices
+    private static final int BATCH_INTS = 1 << 16;
+    private static final int QUEUE_BATCHES = 4;
+    private static final int[] END = new int[0];
+
+    enum Format {
+        OBJ, OFF
+    }
+
+    private MeshImporter() {
+    }
+
+    /**
+     * Imports an OBJ or OFF file, going by its extension
+     * @throws IllegalArgumentException if the extension is neither .obj nor .off
+     * @throws IllegalStateException if the file is malformed
+     */
+    public static TwoGMap importMesh(@NonNull Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".obj")) {
+            return importObj(path);
+        }
+        Preconditions.checkArgument(name.endsWith(".off"), "Unknown mesh format: %s", path);
+        return importOff(path);
+    }
+
+    public static TwoGMap importObj(@NonNull Path path) throws IOException {
+        return importMesh(path, Format.OBJ, BUFFER_BYTES, BATCH_INTS);
+    }
+
+    public static TwoGMap importOff(@NonNull Path path) throws IOException {
+        return importMesh(path, Format.OFF, BUFFER_BYTES, BATCH_INTS);
+    }
+
+    static TwoGMap importMesh(Path path, Format format, int bufferBytes, int batchInts) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Parser parser = new Parser(new Tokenizer(channel, bufferBytes), format, batchInts);
+            Thread thread = new Thread(parser, "mesh-parser-" + path.getFileName());
+            thread.setDaemon(true);
+            thread.start();
+
+            NGMapBuilder builder = NGMapBuilder.ngMapBuilder();
+            try {
+                for (int[] batch = parser.take(); batch != END; batch = parser.take()) {
+                    for (int k = 0; k < batch.length && batch[k] != 0; k += batch[k] + 1) {
+                        builder.addFace(batch, k + 1, batch[k]);
+                    }
+                }
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while importing " + path);
+            } finally {
+                thread.interrupt();
+            }
+            parser.rethrow();
+
+            NGMap ngMap = builder.build(true);
+            double[] positions = parser.positions;
+            for (int vertex = 0; vertex < parser.vertexCount; vertex++) {
+                if (builder.containsVertex(vertex)) {
+                    ngMap.putAttribute(builder.vertexDart(vertex), 0, new Position(positions[3 * vertex],
+                            positions[3 * vertex + 1], positions[3 * vertex + 2]));
+                }
+            }
+            return TwoGMap.twoGMap(ngMap);
+        }
+    }
+
+    /**
+     * Parses the vertices and faces on its own thread, queueing faces in batches
+     */
+    private static final class Parser implements Runnable {
+        private final Tokenizer tokenizer;
+        private final Format format;
+        private final int batchInts;
+        private final BlockingQueue<int[]> batches;
+
+        private int[] batch;
+        private int batchSize;
+        private double[] positions;
+        private int vertexCount;
+        // Set by the parser thread before it queues END, read by the building thread after it takes END
+        private volatile RuntimeException failure;
+
+        private Parser(Tokenizer tokenizer, Format format, int batchInts) {
+            this.tokenizer = tokenizer;
+            this.format = format;
+            this.batchInts = batchInts;
+            this.batches = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+            this.batch = new int[batchInts];
+            this.positions = new double[3 * 1024];
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (format == Format.OBJ) {
+                    parseObj();
+                } else {
+                    parseOff();
+                }
+                flush();
+            } catch (RuntimeException e) {
+                failure = e;
+            } catch (IOException e) {
+                failure = new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                // The building thread gave up
+                return;
+            }
+            try {
+                batches.put(END);
+            } catch (InterruptedException e) {
+                // The building thread gave up
+            }
+        }
+
+        private int[] take() throws InterruptedException {
+            return batches.take();
+        }
+
+        private void rethrow() throws IOException {
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            } else if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void parseObj() throws IOException, InterruptedException {
+            int[] face = new int[16];
+            while (tokenizer.skipBlankLines()) {
+                int keyword = tokenizer.readKeyword();
+                if (keyword == Tokenizer.VERTEX) {
+                    addVertex(tokenizer.readDouble(), tokenizer.readDouble(), tokenizer.readDouble());
+                } else if (keyword == Tokenizer.FACE) {
+                    int k = 0;
+                    while (!tokenizer.atEndOfLine()) {
+                        int index = tokenizer.readInt();
+                        // Skip the texture and normal indices of v/vt/vn
+                        tokenizer.skipToken();
+                        if (k == face.length) {
+                            face = Arrays.copyOf(face, k << 1);
+                        }
+                        // 1-based, or relative to the last vertex when negative
+                        face[k++] = index < 0 ? vertexCount + index : index - 1;
+                    }
+                    addFace(face, k);
+                }
+                tokenizer.skipLine();
+            }
+        }
+
+        private void parseOff() throws IOException, InterruptedException {
+            tokenizer.check(tokenizer.skipBlankLines() && tokenizer.readOffHeader(), "Missing OFF header");
+            tokenizer.check(tokenizer.skipBlankLines(), "Missing OFF counts");
+            int vertices = tokenizer.readInt();
+            int faces = tokenizer.readInt();
+            tokenizer.skipLine();
+            for (int v = 0; v < vertices; v++) {
+                tokenizer.check(tokenizer.skipBlankLines(), "Missing vertex");
+                addVertex(tokenizer.readDouble(), tokenizer.readDouble(), tokenizer.readDouble());
+                tokenizer.skipLine();
+            }
+            int[] face = new int[16];
+            for (int f = 0; f < faces; f++) {
+                tokenizer.check(tokenizer.skipBlankLines(), "Missing face");
+                int k = tokenizer.readInt();
+                if (k > face.length) {
+                    face = new int[k];
+                }
+                for (int j = 0; j < k; j++) {
+                    face[j] = tokenizer.readInt();
+                }
+                addFace(face, k);
+                // Skip the color, if any
+                tokenizer.skipLine();
+            }
+        }
+
+        private void addVertex(double x, double y, double z) {
+            if (3 * vertexCount + 3 > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length << 1);
+            }
+            positions[3 * vertexCount] = x;
+            positions[3 * vertexCount + 1] = y;
+            positions[3 * vertexCount + 2] = z;
+            vertexCount++;
+        }
+
+        /**
+         * Queues a face, whose vertices must all have been read already
+         */
+        private void addFace(int[] face, int k) throws InterruptedException {
+            tokenizer.check(k >= 3, "A face needs at least 3 vertices");
+            for (int j = 0; j < k; j++) {
+                tokenizer.check(0 <= face[j] && face[j] < vertexCount, "Vertex index out of range");
+            }
+            if (batchSize + k + 1 > batch.length) {
+                flush();
+                if (k + 1 > batch.length) {
+                    batch = new int[k + 1];
+                }
+            }
+            batch[batchSize++] = k;
+            System.arraycopy(face, 0, batch, batchSize, k);
+            batchSize += k;
+        }
+
+        private void flush() throws InterruptedException {
+            if (batchSize == 0) {
+                return;
+            }
+            if (batchSize < batch.length) {
+                // A zero vertex count ends a partial batch
+                batch[batchSize] = 0;
+            }
+            batches.put(batch);
+            batch = new int[batchInts];
+            batchSize = 0;
+        }
+    }
+
+    /**
+     * Reads tokens straight from the bytes of a channel, one buffer at a time
+     */
+    private static final class Tokenizer {
+        private static final int OTHER = 0;
+        private static final int VERTEX = 1;
+        private static final int FACE = 2;
+        private static final int EOF = -1;
+        private static final double[] POWERS_OF_TEN = new double[23];
+
+        static {
+            POWERS_OF_TEN[0] = 1;
+            for (int k = 1; k < POWERS_OF_TEN.length; k++) {
+                POWERS_OF_TEN[k] = POWERS_OF_TEN[k - 1] * 10;
+            }
+        }
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private boolean eof;
+        private long line = 1;
+
+        private Tokenizer(FileChannel channel, int bufferBytes) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+            buffer.flip();
+        }
+
+        private int peek() throws IOException {
+            if (!buffer.hasRemaining()) {
+                if (eof) {
+                    return EOF;
+                }
+                buffer.clear();
+                int read;
+                do {
+                    read = channel.read(buffer);
+                } while (read == 0);
+                buffer.flip();
+                if (read < 0) {
+                    eof = true;
+                    return EOF;
+                }
+            }
+            return buffer.get(buffer.position()) & 0xFF;
+        }
+
+        private void advance() {
+            buffer.position(buffer.position() + 1);
+        }
+
+        private void skipSpaces() throws IOException {
+            for (int c = peek(); c == ' ' || c == '\t' || c == '\r'; c = peek()) {
+                advance();
+            }
+        }
+
+        /**
+         * Skips blank and comment lines
+         * @return false at the end of the file
+         */
+        private boolean skipBlankLines() throws IOException {
+            while (true) {
+                skipSpaces();
+                int c = peek();
+                if (c == EOF) {
+                    return false;
+                } else if (c == '\n' || c == '#') {
+                    skipLine();
+                } else {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Skips the rest of the line, including its newline
+         */
+        private void skipLine() throws IOException {
+            for (int c = peek(); c != EOF; c = peek()) {
+                advance();
+                if (c == '\n') {
+                    line++;
+                    return;
+                }
+            }
+        }
+
+        private boolean atEndOfLine() throws IOException {
+            skipSpaces();
+            int c = peek();
+            return c == EOF || c == '\n' || c == '#';
+        }
+
+        /**
+         * Skips the rest of the current token
+         */
+        private void skipToken() throws IOException {
+            for (int c = peek(); c != EOF && c > ' '; c = peek()) {
+                advance();
+            }
+        }
+
+        /**
+         * @return VERTEX for "v", FACE for "f" and OTHER for anything else
+         */
+        private int readKeyword() throws IOException {
+            int first = peek();
+            advance();
+            int c = peek();
+            if (c == EOF || c <= ' ') {
+                return first == 'v' ? VERTEX : first == 'f' ? FACE : OTHER;
+            }
+            skipToken();
+            return OTHER;
+        }
+
+        /**
+         * Reads OFF, COFF, NOFF and the like; the counts may follow on the same line
+         */
+        private boolean readOffHeader() throws IOException {
+            int c = peek();
+            while (c == 'C' || c == 'N' || c == 'S' || c == 'T') {
+                advance();
+                c = peek();
+            }
+            for (char expected : new char[] { 'O', 'F', 'F' }) {
+                if (peek() != expected) {
+                    return false;
+                }
+                advance();
+            }
+            skipSpaces();
+            if (peek() == '\n' || peek() == '#') {
+                skipLine();
+            }
+            return true;
+        }
+
+        private int readInt() throws IOException {
+            skipSpaces();
+            boolean negative = peek() == '-';
+            if (negative || peek() == '+') {
+                advance();
+            }
+            long value = 0;
+            int digits = 0;
+            for (int c = peek(); '0' <= c && c <= '9'; c = peek()) {
+                value = value * 10 + (c - '0');
+                check(value <= Integer.MAX_VALUE, "Integer too large");
+                digits++;
+                advance();
+            }
+            check(digits > 0, "Expected an integer");
+            return (int) (negative ? -value : value);
+        }
+
+        /**
+         * Reads a decimal number, correctly rounded when it has at most 15 significant digits and a decimal exponent
+         * within 22, which covers the coordinates mesh tools write, and otherwise within a few ulps.  Digits past the
+         * 18th significant one are dropped.
+         */
+        private double readDouble() throws IOException {
+            skipSpaces();
+            boolean negative = peek() == '-';
+            if (negative || peek() == '+') {
+                advance();
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int significant = 0;
+            int exponent = 0;
+            for (int c = peek(); '0' <= c && c <= '9'; c = peek()) {
+                if (significant < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    significant += mantissa != 0 ? 1 : 0;
+                } else {
+                    exponent++;
+                }
+                digits++;
+                advance();
+            }
+            if (peek() == '.') {
+                advance();
+                for (int c = peek(); '0' <= c && c <= '9'; c = peek()) {
+                    if (significant < 18) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        significant += mantissa != 0 ? 1 : 0;
+                        exponent--;
+                    }
+                    digits++;
+                    advance();
+                }
+            }
+            check(digits > 0, "Expected a number");
+            if (peek() == 'e' || peek() == 'E') {
+                advance();
+                exponent += readInt();
+            }
+            double value = mantissa;
+            if (-POWERS_OF_TEN.length < exponent && exponent < 0) {
+                value /= POWERS_OF_TEN[-exponent];
+            } else if (0 < exponent && exponent < POWERS_OF_TEN.length) {
+                value *= POWERS_OF_TEN[exponent];
+            } else if (exponent != 0) {
+                value *= Math.pow(10, exponent);
+            }
+            return negative ? -value : value;
+        }
+
+        private void check(boolean expression, String message) {
+            Preconditions.checkState(expression, "%s on line %s", message, line);
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.geoffslittle.datastructure.maps;
+
+import lombok.Value;
+
+/**
+ * The position of a vertex, as imported from a mesh
+ */
+@Value
+public class Position implements Attribute {
+    private final double x;
+    private final double y;
+    private final double z;
+}
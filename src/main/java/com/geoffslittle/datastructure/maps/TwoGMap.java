@@ -1,101 +1,674 @@
 package com.geoffslittle.datastructure.maps;
 
 import com.geoffslittle.datastructure.generalizedmap.NGMap;
+import com.geoffslittle.datastructure.generalizedmap.NGMapBuilder;
 import com.google.common.base.Preconditions;
 import lombok.NonNull;
 import lombok.Value;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 
+/**
+ * A graph embedded in a 2-GMap.  A vertex starts out as a single anchor dart, and an edge is made of four darts: two
+ * sides, linked in alpha_2, of two darts each, linked in alpha_0.  The edges at a vertex form an open chain in
+ * alpha_1 starting at the anchor: each new edge is linked to the single 1-free dart at the end of the chain, and its
+ * other side becomes the new end.  The end of each vertex's chain is indexed by the anchor, so adding an edge finds
+ * its free darts in O(1) and takes one alpha_1 sew per endpoint, whatever the degree of the vertices.
+ *
+ * {@link Vertex} and {@link Edge} are handles: the id of a representative dart (a vertex's anchor, an edge's dart at
+ * its first vertex) and the generation of that id when the handle was made.  Every dart this class removes bumps the
+ * generation of its id, so a handle to a removed vertex or edge is caught in O(1) even once the id is reused.  Their
+ * darts are only traversed on demand, through {@link #darts(Vertex)} and {@link #darts(Edge)}.  As this class indexes
+ * darts by id, the 2-GMap must be compacted through {@link #compact()} rather than {@link NGMap#compact()}.
+ *
+ * The faces of a mesh, e.g. from {@link #fromFaces(int[][])}, are edited with the Euler operators
+ * {@link #splitEdge(NGMap.Dart)}, {@link #collapseEdge(NGMap.Dart)}, {@link #flipEdge(NGMap.Dart)} and
+ * {@link #splitFace(NGMap.Dart, NGMap.Dart)}.  There, each edge side of a face is a pair of darts linked in alpha_0,
+ * alpha_1 links the consecutive sides of a face and alpha_2 the sides of two faces sharing an edge.  Each operator
+ * reads its neighbourhood off the alphas and rewires it in a single {@link NGMap#rewire(Collection, Collection)}, so
+ * it costs the same whatever the size of the mesh.
+ */
 public class TwoGMap {
 
     private static final Integer VERTEX_DIM = 0;
     private static final Integer EDGE_DIM = 1;
+    private static final Integer FACE_DIM = 2;
+    // The alpha linking the edges around a vertex, and the one linking the two sides of an edge
+    private static final int CHAIN_ALPHA = 1;
+    private static final int SIDE_ALPHA = 2;
+    private static final int INITIAL_CAPACITY = 16;
 
     private final NGMap ngMap;
+    // ends[anchor] is the 1-free dart at the end of the alpha_1 chain of the vertex with that anchor, or 0 if unknown
+    private int[] ends;
+    // anchors[dart] is the anchor of the vertex of a dart added by this class, or 0
+    private int[] anchors;
+    // generationBase + generations[dart] is the generation of a dart id, bumped whenever this class removes the dart
+    private int[] generations;
+    // Above the generation of every id before the last compaction, so that no handle from before is current
+    private int generationBase;
 
+    /**
+     * @return the underlying 2-GMap, which must be compacted through {@link #compact()}
+     */
     public NGMap ngMap() {
         return ngMap;
     }
 
     private TwoGMap(NGMap ngMap) {
         this.ngMap = ngMap;
+        this.ends = new int[INITIAL_CAPACITY];
+        this.anchors = new int[INITIAL_CAPACITY];
+        this.generations = new int[INITIAL_CAPACITY];
     }
 
     public static TwoGMap twoGMap() {
         return new TwoGMap(NGMap.ngMap(2));
     }
 
-    private void checkNonEmptyDarts(@NonNull List<NGMap.Dart> darts) {
-        Preconditions.checkState(!darts.isEmpty());
+    /**
+     * Wraps a 2-GMap which was built without going through this class, e.g. by the {@link MeshImporter}
+     */
+    static TwoGMap twoGMap(NGMap ngMap) {
+        Preconditions.checkArgument(ngMap.dimension() == 2, "Not a 2-GMap");
+        return new TwoGMap(ngMap);
+    }
+
+    /**
+     * Builds the 2-GMap of a polygon mesh in one linear pass with an {@link NGMapBuilder}, rather than adding its
+     * vertices and edges one by one
+     * @param faces, the vertex indices of each face in order
+     * @return the 2-GMap, checked once it's built
+     */
+    public static TwoGMap fromFaces(@NonNull int[][] faces) {
+        int darts = 0;
+        for (int[] face : faces) {
+            darts += 2 * face.length;
+        }
+        NGMapBuilder builder = NGMapBuilder.ngMapBuilder(darts);
+        for (int[] face : faces) {
+            builder.addFace(face);
+        }
+        return twoGMap(builder.build(true));
     }
 
     public Vertex addVertex() {
-        NGMap.Dart dart = ngMap.addIsolatedDart();
-        return new Vertex(ngMap.iCell(dart, VERTEX_DIM));
+        NGMap.Dart anchor = ngMap.addIsolatedDart();
+        setAnchor(anchor, anchor);
+        setEnd(anchor, anchor);
+        return new Vertex(anchor.getId(), generation(anchor.getId()));
     }
 
-    public void removeVertex(@NonNull Vertex vertex) {
-        checkNonEmptyDarts(vertex.getDarts());
+    /**
+     * @return true iff the vertex hasn't been removed
+     */
+    public boolean contains(@NonNull Vertex vertex) {
+        int id = vertex.getId();
+        return isCurrent(id, vertex.getGeneration()) && anchors[id] == id;
+    }
 
-        vertex.getDarts().stream()
-                .forEach(dart -> ngMap.unsew(dart, VERTEX_DIM));
+    /**
+     * @return the darts of the vertex, traversed now
+     * @throws IllegalStateException if the vertex has been removed
+     */
+    public List<NGMap.Dart> darts(@NonNull Vertex vertex) {
+        return ngMap.iCell(anchor(vertex), VERTEX_DIM);
     }
 
-    public void addVertexAttribute(@NonNull Vertex vertex, @NonNull Attribute attribute) {
-        checkNonEmptyDarts(vertex.getDarts());
+    private NGMap.Dart anchor(Vertex vertex) {
+        Preconditions.checkState(contains(vertex), "Stale vertex %s", vertex);
+        return vertex.dart();
+    }
+
+    /**
+     * Removes a vertex along with all its edges
+     * @throws IllegalStateException if the vertex has been removed already
+     */
+    public void removeVertex(@NonNull Vertex vertex) {
+        NGMap.Dart anchor = anchor(vertex);
+        for (NGMap.Dart dart : ngMap.iCell(anchor, VERTEX_DIM)) {
+            // Darts of edges removed earlier in the loop, e.g. loops, are gone already
+            if (!dart.equals(anchor) && ngMap.containsDart(dart)) {
+                removeEdgeAt(dart);
+            }
+        }
+        ngMap.removeIsolatedDart(anchor);
+        setEnd(anchor, null);
+        retire(anchor);
+    }
 
-        ngMap.putAttribute(vertex.getDarts().get(0), VERTEX_DIM, attribute);
+    public void addVertexAttribute(@NonNull Vertex vertex, @NonNull Attribute attribute) {
+        ngMap.putAttribute(anchor(vertex), VERTEX_DIM, attribute);
     }
 
     public Edge addEdge(@NonNull Vertex left, @NonNull Vertex right) {
-        checkNonEmptyDarts(left.getDarts());
-        checkNonEmptyDarts(right.getDarts());
+        NGMap.Dart leftAnchor = anchor(left);
+        NGMap.Dart rightAnchor = anchor(right);
+        NGMap.Edge side = ngMap.addEdge();
+        NGMap.Edge otherSide = ngMap.addEdge();
+        ngMap.sew(side.get_1(), otherSide.get_1(), SIDE_ALPHA);
+        attach(leftAnchor, side.get_1(), otherSide.get_1());
+        attach(rightAnchor, side.get_2(), otherSide.get_2());
+        int id = side.get_1().getId();
+        return new Edge(id, generation(id));
+    }
+
+    /**
+     * Links the darts of an edge at a vertex to the end of the vertex's alpha_1 chain, making the second one the end
+     */
+    private void attach(NGMap.Dart anchor, NGMap.Dart dart, NGMap.Dart otherDart) {
+        ngMap.sew(end(anchor), dart, CHAIN_ALPHA);
+        setAnchor(dart, anchor);
+        setAnchor(otherDart, anchor);
+        setEnd(anchor, otherDart);
+    }
+
+    /**
+     * @return the 1-free dart at the end of the vertex's chain, found by traversing the vertex if it isn't indexed
+     */
+    private NGMap.Dart end(NGMap.Dart anchor) {
+        int id = anchor.getId();
+        if (id < ends.length && ends[id] != 0) {
+            return new NGMap.Dart(ends[id]);
+        }
+        NGMap.Dart end = ngMap.iCell(anchor, VERTEX_DIM).stream()
+                .filter(dart -> ngMap.isIFree(dart, CHAIN_ALPHA))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("The vertex has no 1-free dart"));
+        setEnd(anchor, end);
+        return end;
+    }
+
+    /**
+     * @return true iff the edge hasn't been removed
+     */
+    public boolean contains(@NonNull Edge edge) {
+        int id = edge.getId();
+        return isCurrent(id, edge.getGeneration()) && anchors[id] != 0;
+    }
+
+    /**
+     * @return the four darts of the edge
+     * @throws IllegalStateException if the edge has been removed
+     */
+    public List<NGMap.Dart> darts(@NonNull Edge edge) {
+        return edgeDarts(representative(edge));
+    }
+
+    private NGMap.Dart representative(Edge edge) {
+        Preconditions.checkState(contains(edge), "Stale edge %s", edge);
+        return edge.dart();
+    }
+
+    /**
+     * Removes an edge, closing the gap it leaves in the alpha_1 chains of its vertices
+     * @throws IllegalStateException if the edge has been removed already
+     */
+    public void removeEdge(@NonNull Edge edge) {
+        removeEdgeAt(representative(edge));
+    }
 
-        NGMap.Dart firstLeftDart = left.getDarts().get(0);
-        NGMap.Dart firstRightDart = right.getDarts().get(0);
-        if (ngMap.isSewable(firstLeftDart, firstRightDart, EDGE_DIM)) {
-            ngMap.sew(firstLeftDart, firstRightDart, EDGE_DIM);
-            return new Edge(ngMap.iCell(firstLeftDart, EDGE_DIM));
+    private void removeEdgeAt(NGMap.Dart edgeDart) {
+        List<NGMap.Dart> darts = edgeDarts(edgeDart);
+        Map<NGMap.Dart, NGMap.Dart> neighbors = new HashMap<>();
+        for (NGMap.Dart dart : darts) {
+            ngMap.alpha(dart, CHAIN_ALPHA).ifPresent(neighbor -> neighbors.put(dart, neighbor));
+        }
+        for (NGMap.Dart dart : darts) {
+            ngMap.unsew(dart, CHAIN_ALPHA);
+        }
+        // Each dart outside the edge which was linked to it gets linked to the dart at the far end of the edge's
+        // darts at its vertex, or becomes the end of its vertex's chain if there is none
+        for (NGMap.Dart dart : darts) {
+            NGMap.Dart neighbor = neighbors.get(dart);
+            if (neighbor == null || darts.contains(neighbor) || !ngMap.isIFree(neighbor, CHAIN_ALPHA)) {
+                continue;
+            }
+            NGMap.Dart farEnd = farEnd(dart, darts, neighbors);
+            if (farEnd != null) {
+                ngMap.sew(neighbor, farEnd, CHAIN_ALPHA);
+            } else {
+                NGMap.Dart anchor = anchor(neighbor);
+                if (anchor != null) {
+                    setEnd(anchor, neighbor);
+                }
+            }
         }
-        NGMap.Dart newLeftDart = ngMap.addIsolatedDart();
-        ngMap.sew(firstLeftDart, newLeftDart, VERTEX_DIM);
-        if (ngMap.isSewable(newLeftDart, firstRightDart, EDGE_DIM)) {
-            ngMap.sew(newLeftDart, firstRightDart, EDGE_DIM);
-            return new Edge(ngMap.iCell(newLeftDart, EDGE_DIM));
+        for (NGMap.Dart dart : darts) {
+            ngMap.unsew(dart, SIDE_ALPHA);
         }
-        NGMap.Dart newRightDart = ngMap.addIsolatedDart();
-        ngMap.sew(firstRightDart, newRightDart, VERTEX_DIM);
-        if (ngMap.isSewable(newLeftDart, newRightDart, EDGE_DIM)) {
-            ngMap.sew(newLeftDart, newRightDart, EDGE_DIM);
-            return new Edge(ngMap.iCell(newLeftDart, EDGE_DIM));
+        for (NGMap.Dart dart : darts) {
+            ngMap.unsew(dart, 0);
+        }
+        for (NGMap.Dart dart : darts) {
+            ngMap.removeIsolatedDart(dart);
+            setAnchor(dart, null);
+            retire(dart);
         }
-        throw new IllegalStateException("bad");
     }
 
-    public void removeEdge(@NonNull Edge edge) {
-        checkNonEmptyDarts(edge.getDarts());
+    /**
+     * @return the dart, the other dart of its side and the two darts of the other side, without traversing the cell
+     */
+    private List<NGMap.Dart> edgeDarts(NGMap.Dart dart) {
+        NGMap.Dart other = ngMap.alpha(dart, SIDE_ALPHA).get();
+        return Arrays.asList(dart, ngMap.alpha(dart, 0).get(), other, ngMap.alpha(other, 0).get());
+    }
 
-        edge.getDarts().stream()
-                .forEach(dart -> ngMap.unsew(dart, EDGE_DIM));
+    /**
+     * Walks the vertex's chain across the edge's darts from one of them
+     * @return the first dart outside the edge, or null if the chain ends within the edge
+     */
+    private NGMap.Dart farEnd(NGMap.Dart dart, List<NGMap.Dart> edgeDarts, Map<NGMap.Dart, NGMap.Dart> neighbors) {
+        NGMap.Dart next = neighbors.get(ngMap.alpha(dart, SIDE_ALPHA).get());
+        while (next != null && edgeDarts.contains(next)) {
+            next = neighbors.get(ngMap.alpha(next, SIDE_ALPHA).get());
+        }
+        return next;
     }
 
     public void addEdgeAttribute(@NonNull Edge edge, @NonNull Attribute attribute) {
-        checkNonEmptyDarts(edge.getDarts());
+        ngMap.putAttribute(representative(edge), EDGE_DIM, attribute);
+    }
+
+    /**
+     * Splits the edge of a dart at a new vertex, on both of its sides.  Both halves keep the edge's attribute and the
+     * faces keep theirs.
+     * @param dart, a dart of a face's edge
+     * @return the new vertex's dart on the half of the edge at the dart's vertex, on the dart's side
+     */
+    public NGMap.Dart splitEdge(@NonNull NGMap.Dart dart) {
+        checkFaceDart(dart);
+        NGMap.Dart otherSide = ngMap.alpha(dart, 2).orElse(null);
+        List<NGMap.Sewing> unlinks = new ArrayList<>(2);
+        List<NGMap.Sewing> links = new ArrayList<>(8);
+        NGMap.Dart[] middle = splitSide(dart, unlinks, links);
+        if (otherSide != null) {
+            NGMap.Dart[] otherMiddle = splitSide(otherSide, unlinks, links);
+            links.add(sewing(middle[0], otherMiddle[0], 2));
+            links.add(sewing(middle[1], otherMiddle[1], 2));
+        }
+        ngMap.rewire(unlinks, links);
+        return middle[0];
+    }
+
+    /**
+     * Plans replacing the side of an edge by two sides meeting at a new vertex
+     * @return the new darts at the new vertex, on the half at the dart's vertex then on the other half
+     */
+    private NGMap.Dart[] splitSide(NGMap.Dart dart, List<NGMap.Sewing> unlinks, List<NGMap.Sewing> links) {
+        NGMap.Dart codart = required(dart, 0);
+        NGMap.Dart[] middle = { ngMap.addIsolatedDart(), ngMap.addIsolatedDart() };
+        unlinks.add(sewing(dart, codart, 0));
+        links.add(sewing(dart, middle[0], 0));
+        links.add(sewing(middle[0], middle[1], 1));
+        links.add(sewing(middle[1], codart, 0));
+        return middle;
+    }
+
+    /**
+     * Collapses the edge of a dart, merging its two vertices into one which keeps the vertex attribute of the dart's
+     * vertex.  A triangle on either side of the edge is left with two edges, which are merged into one keeping the
+     * attribute of the one at the dart's vertex.  Collapsing an inner edge between two boundary vertices pinches the
+     * merged vertex, which is then two 0-cells.
+     * @param dart, a dart of a face's edge whose faces have closed corners
+     * @return a dart of the merged vertex
+     * @throws IllegalStateException if a face of the edge has only two sides, or nothing of the vertices would be left
+     */
+    public NGMap.Dart collapseEdge(@NonNull NGMap.Dart dart) {
+        checkFaceDart(dart);
+        NGMap.Dart otherSide = ngMap.alpha(dart, 2).orElse(null);
+        List<NGMap.Dart> sides = otherSide == null ? Arrays.asList(dart) : Arrays.asList(dart, otherSide);
+        List<NGMap.Sewing> unlinks = new ArrayList<>(16);
+        List<NGMap.Sewing> links = new ArrayList<>(4);
+        List<NGMap.Dart> removed = new ArrayList<>(12);
+        // The edge of each dissolved triangle at the dart's vertex, and the dart across it left in the merged edge
+        List<NGMap.Dart> dissolvedEdges = new ArrayList<>(2);
+        List<NGMap.Dart> mergedEdges = new ArrayList<>(2);
+        NGMap.Dart survivor = null;
+        for (NGMap.Dart side : sides) {
+            NGMap.Dart codart = required(side, 0);
+            NGMap.Dart before = required(side, 1);
+            NGMap.Dart after = required(codart, 1);
+            NGMap.Dart beforeEnd = required(before, 0);
+            NGMap.Dart afterEnd = required(after, 0);
+            Preconditions.checkState(!beforeEnd.equals(after), "Can't collapse an edge of a face with two sides");
+            unlinks.add(sewing(side, codart, 0));
+            unlinks.add(sewing(side, before, 1));
+            unlinks.add(sewing(codart, after, 1));
+            removed.add(side);
+            removed.add(codart);
+            if (!required(afterEnd, 1).equals(beforeEnd)) {
+                links.add(sewing(before, after, 1));
+                survivor = survivor != null ? survivor : before;
+                continue;
+            }
+            // The triangle before, after is dissolved: its darts go, and the faces across them are sewn together
+            NGMap.Dart beforeAcross = ngMap.alpha(before, 2).orElse(null);
+            NGMap.Dart afterAcross = ngMap.alpha(after, 2).orElse(null);
+            unlinks.add(sewing(before, beforeEnd, 0));
+            unlinks.add(sewing(after, afterEnd, 0));
+            unlinks.add(sewing(beforeEnd, afterEnd, 1));
+            if (beforeAcross != null) {
+                unlinks.add(sewing(before, beforeAcross, 2));
+                unlinks.add(sewing(beforeEnd, required(beforeAcross, 0), 2));
+            }
+            if (afterAcross != null) {
+                unlinks.add(sewing(after, afterAcross, 2));
+                unlinks.add(sewing(afterEnd, required(afterAcross, 0), 2));
+            }
+            if (beforeAcross != null && afterAcross != null) {
+                links.add(sewing(beforeAcross, afterAcross, 2));
+                links.add(sewing(required(beforeAcross, 0), required(afterAcross, 0), 2));
+                dissolvedEdges.add(before);
+                mergedEdges.add(beforeAcross);
+            }
+            removed.addAll(Arrays.asList(before, beforeEnd, after, afterEnd));
+            NGMap.Dart across = beforeAcross != null ? beforeAcross : afterAcross;
+            survivor = survivor != null ? survivor : across;
+        }
+        if (otherSide != null) {
+            unlinks.add(sewing(dart, otherSide, 2));
+            NGMap.Dart codart = required(dart, 0);
+            unlinks.add(sewing(codart, required(codart, 2), 2));
+        }
+        Preconditions.checkState(survivor != null, "Collapsing the edge would leave nothing of its vertices");
 
-        ngMap.putAttribute(edge.getDarts().get(0), EDGE_DIM, attribute);
+        Attribute[] vertex = attributes(VERTEX_DIM, dart);
+        Attribute[] edges = attributes(EDGE_DIM, dissolvedEdges.toArray(new NGMap.Dart[0]));
+        ngMap.rewire(unlinks, links);
+        for (NGMap.Dart removedDart : removed) {
+            ngMap.removeIsolatedDart(removedDart);
+        }
+        restore(VERTEX_DIM, vertex, survivor);
+        restore(EDGE_DIM, edges, mergedEdges.toArray(new NGMap.Dart[0]));
+        return survivor;
     }
 
+    /**
+     * Flips the edge of a dart between two triangles to the other diagonal of the quadrilateral they make.  The edge
+     * keeps its darts and its attribute and the vertices keep theirs.  The new triangle at the dart's vertex keeps the
+     * face attribute of the dart's old triangle, and the other one that of the other old triangle.
+     * @param dart, a dart of an edge with a triangle on both sides
+     * @throws IllegalStateException if either side of the edge isn't a triangle
+     */
+    public void flipEdge(@NonNull NGMap.Dart dart) {
+        checkFaceDart(dart);
+        // The edge runs from p to q between the triangles p q r and q p s, and becomes r s
+        NGMap.Dart atQ = required(dart, 0);
+        NGMap.Dart across = required(dart, 2);
+        NGMap.Dart acrossAtQ = required(atQ, 2);
+        NGMap.Dart prAtP = required(dart, 1);
+        NGMap.Dart prAtR = required(prAtP, 0);
+        NGMap.Dart rqAtR = required(prAtR, 1);
+        NGMap.Dart rqAtQ = required(rqAtR, 0);
+        Preconditions.checkState(required(rqAtQ, 1).equals(atQ), "Only an edge between triangles can be flipped");
+        NGMap.Dart psAtP = required(across, 1);
+        NGMap.Dart psAtS = required(psAtP, 0);
+        NGMap.Dart sqAtS = required(psAtS, 1);
+        NGMap.Dart sqAtQ = required(sqAtS, 0);
+        Preconditions.checkState(required(sqAtQ, 1).equals(acrossAtQ), "Only an edge between triangles can be flipped");
+
+        Attribute[] vertices = attributes(VERTEX_DIM, prAtP, rqAtQ, prAtR, psAtS);
+        Attribute[] faces = attributes(FACE_DIM, dart, across);
+        // The new triangles are r p s, keeping the edge's darts on the dart's side, and s q r
+        ngMap.rewire(
+                Arrays.asList(sewing(dart, prAtP, 1), sewing(prAtR, rqAtR, 1), sewing(rqAtQ, atQ, 1),
+                        sewing(across, psAtP, 1), sewing(psAtS, sqAtS, 1), sewing(sqAtQ, acrossAtQ, 1)),
+                Arrays.asList(sewing(prAtP, psAtP, 1), sewing(prAtR, dart, 1), sewing(psAtS, atQ, 1),
+                        sewing(rqAtQ, sqAtQ, 1), sewing(rqAtR, across, 1), sewing(sqAtS, acrossAtQ, 1)));
+        restore(VERTEX_DIM, vertices, prAtP, rqAtQ, prAtR, psAtS);
+        restore(FACE_DIM, faces, prAtP, rqAtQ);
+    }
+
+    /**
+     * Splits the face of two darts with a new edge between their vertices.  Both parts keep the face's attribute.
+     * @param dart, a dart of a closed face
+     * @param other, a dart of the same face at another corner
+     * @return the new edge's dart at the dart's vertex, in the part of the face with the dart
+     * @throws IllegalArgumentException if the other dart isn't at another corner of the dart's face
+     */
+    public NGMap.Dart splitFace(@NonNull NGMap.Dart dart, @NonNull NGMap.Dart other) {
+        checkFaceDart(dart);
+        checkFaceDart(other);
+        NGMap.Dart next = required(dart, 1);
+        Preconditions.checkArgument(!other.equals(dart) && !other.equals(next), "The darts are at the same corner");
+        // Walk the face from the dart to the dart arriving at the other's corner
+        NGMap.Dart arriving = null;
+        NGMap.Dart walked = dart;
+        while (arriving == null) {
+            NGMap.Dart codart = required(walked, 0);
+            walked = required(codart, 1);
+            if (codart.equals(other) || walked.equals(other)) {
+                arriving = codart;
+            }
+            Preconditions.checkArgument(!walked.equals(dart), "The darts are not in the same face");
+        }
+        NGMap.Dart leaving = required(arriving, 1);
+
+        NGMap.Edge side = newEdge();
+        NGMap.Edge otherSide = newEdge();
+        ngMap.rewire(
+                Arrays.asList(sewing(dart, next, 1), sewing(arriving, leaving, 1)),
+                Arrays.asList(sewing(side.get_1(), side.get_2(), 0), sewing(otherSide.get_1(), otherSide.get_2(), 0),
+                        sewing(side.get_1(), otherSide.get_1(), 2), sewing(side.get_2(), otherSide.get_2(), 2),
+                        sewing(dart, side.get_1(), 1), sewing(otherSide.get_1(), next, 1),
+                        sewing(arriving, side.get_2(), 1), sewing(otherSide.get_2(), leaving, 1)));
+        return side.get_1();
+    }
+
+    private NGMap.Edge newEdge() {
+        return new NGMap.Edge(ngMap.addIsolatedDart(), ngMap.addIsolatedDart());
+    }
+
+    private void checkFaceDart(NGMap.Dart dart) {
+        Preconditions.checkState(ngMap.containsDart(dart), "dart is not in the 2-GMap");
+        Preconditions.checkState(anchor(dart) == null, "Euler operators edit faces, not edges added with addEdge");
+    }
+
+    /**
+     * @return alpha_i(dart), which the operator needs to be defined
+     */
+    private NGMap.Dart required(NGMap.Dart dart, int i) {
+        return ngMap.alpha(dart, i)
+                .orElseThrow(() -> new IllegalStateException(String.format("%s is %s-free", dart, i)));
+    }
+
+    private static NGMap.Sewing sewing(NGMap.Dart dart, NGMap.Dart codart, int i) {
+        return new NGMap.Sewing(dart, codart, i);
+    }
+
+    /**
+     * @return the attributes of the i-cells of the darts, or null if dimension i isn't indexed and so has none
+     */
+    private Attribute[] attributes(int i, NGMap.Dart... darts) {
+        if (!ngMap.isIndexed(i)) {
+            return null;
+        }
+        Attribute[] attributes = new Attribute[darts.length];
+        for (int k = 0; k < darts.length; k++) {
+            attributes[k] = ngMap.getAttribute(darts[k], i).orElse(null);
+        }
+        return attributes;
+    }
+
+    /**
+     * Puts attributes read before a rewiring on the cells of the given darts, as a cell that took in darts of
+     * another cell may have taken its attribute
+     */
+    private void restore(int i, Attribute[] attributes, NGMap.Dart... darts) {
+        if (attributes == null) {
+            return;
+        }
+        for (int k = 0; k < darts.length; k++) {
+            Attribute current = ngMap.getAttribute(darts[k], i).orElse(null);
+            if (current != attributes[k]) {
+                if (current != null) {
+                    ngMap.removeAttribute(darts[k], i);
+                }
+                if (attributes[k] != null) {
+                    ngMap.putAttribute(darts[k], i, attributes[k]);
+                }
+            }
+        }
+    }
+
+    private NGMap.Dart anchor(NGMap.Dart dart) {
+        int id = dart.getId();
+        return id < anchors.length && anchors[id] != 0 ? new NGMap.Dart(anchors[id]) : null;
+    }
+
+    private void setAnchor(NGMap.Dart dart, NGMap.Dart anchor) {
+        anchors = set(anchors, dart.getId(), anchor == null ? 0 : anchor.getId());
+    }
+
+    private void setEnd(NGMap.Dart anchor, NGMap.Dart end) {
+        ends = set(ends, anchor.getId(), end == null ? 0 : end.getId());
+    }
+
+    private boolean isCurrent(int id, int generation) {
+        return 0 < id && id < anchors.length && generation(id) == generation && ngMap.containsDart(new NGMap.Dart(id));
+    }
+
+    private int generation(int id) {
+        return generationBase + (id < generations.length ? generations[id] : 0);
+    }
+
+    /**
+     * Invalidates the handles to a removed dart
+     */
+    private void retire(NGMap.Dart dart) {
+        int id = dart.getId();
+        generations = set(generations, id, generation(id) + 1 - generationBase);
+    }
+
+    /**
+     * Compacts the 2-GMap, see {@link NGMap#compact()}, moving the anchor and the chain end of every vertex along with
+     * its darts.  Every handle from before is stale afterwards, and must be passed through the returned compaction.
+     * @return the compaction, mapping darts and handles from before to their renumbered counterparts
+     */
+    public Compaction compact() {
+        UnaryOperator<NGMap.Dart> renumbering = ngMap.compact();
+        int[] generationsBefore = new int[Math.max(anchors.length, generations.length)];
+        int maxGeneration = generationBase;
+        for (int id = 1; id < generationsBefore.length; id++) {
+            generationsBefore[id] = generation(id);
+            maxGeneration = Math.max(maxGeneration, generationsBefore[id]);
+        }
+        int[] renumberedAnchors = new int[anchors.length];
+        int[] renumberedEnds = new int[ends.length];
+        for (int id = 1; id < anchors.length; id++) {
+            NGMap.Dart dart = renumbering.apply(new NGMap.Dart(id));
+            if (dart != null && anchors[id] != 0) {
+                renumberedAnchors[dart.getId()] = renumbering.apply(new NGMap.Dart(anchors[id])).getId();
+            }
+        }
+        for (int id = 1; id < ends.length; id++) {
+            NGMap.Dart anchor = renumbering.apply(new NGMap.Dart(id));
+            if (anchor != null && ends[id] != 0) {
+                renumberedEnds[anchor.getId()] = renumbering.apply(new NGMap.Dart(ends[id])).getId();
+            }
+        }
+        anchors = renumberedAnchors;
+        ends = renumberedEnds;
+        generations = new int[INITIAL_CAPACITY];
+        generationBase = maxGeneration + 1;
+        return new Compaction(renumbering, generationsBefore);
+    }
+
+    private static int[] set(int[] column, int index, int value) {
+        if (index >= column.length) {
+            if (value == 0) {
+                return column;
+            }
+            column = Arrays.copyOf(column, Math.max(index + 1, column.length << 1));
+        }
+        column[index] = value;
+        return column;
+    }
+
+    /**
+     * Maps the darts and handles from before a {@link #compact()} to their renumbered counterparts
+     */
+    public final class Compaction {
+        private final UnaryOperator<NGMap.Dart> darts;
+        // The generation of every id before the compaction
+        private final int[] generations;
+
+        private Compaction(UnaryOperator<NGMap.Dart> darts, int[] generations) {
+            this.darts = darts;
+            this.generations = generations;
+        }
+
+        /**
+         * @return the renumbered dart, or null if the dart wasn't in the 2-GMap
+         */
+        public NGMap.Dart dart(@NonNull NGMap.Dart dart) {
+            return darts.apply(dart);
+        }
+
+        /**
+         * @return the renumbered vertex
+         * @throws IllegalStateException if the vertex had been removed
+         */
+        public Vertex vertex(@NonNull Vertex vertex) {
+            Vertex renumbered = new Vertex(renumbered(vertex.getId(), vertex.getGeneration()), generationBase);
+            Preconditions.checkState(contains(renumbered), "Stale vertex %s", vertex);
+            return renumbered;
+        }
+
+        /**
+         * @return the renumbered edge
+         * @throws IllegalStateException if the edge had been removed
+         */
+        public Edge edge(@NonNull Edge edge) {
+            Edge renumbered = new Edge(renumbered(edge.getId(), edge.getGeneration()), generationBase);
+            Preconditions.checkState(contains(renumbered), "Stale edge %s", edge);
+            return renumbered;
+        }
+
+        /**
+         * @return the renumbered id of a handle, or 0 if it wasn't current
+         */
+        private int renumbered(int id, int generation) {
+            if (id <= 0 || id >= generations.length || generations[id] != generation) {
+                return 0;
+            }
+            NGMap.Dart dart = darts.apply(new NGMap.Dart(id));
+            return dart != null ? dart.getId() : 0;
+        }
+    }
+
+    /**
+     * A vertex, as the id of its anchor and the generation of that id
+     */
     @Value
     public static final class Vertex {
-        @NonNull
-        private final List<NGMap.Dart> darts;
+        private final int id;
+        private final int generation;
+
+        NGMap.Dart dart() {
+            return new NGMap.Dart(id);
+        }
     }
 
+    /**
+     * An edge, as the id of its dart at its first vertex and the generation of that id
+     */
     @Value
     public static final class Edge {
-        @NonNull
-        private final List<NGMap.Dart> darts;
+        private final int id;
+        private final int generation;
+
+        NGMap.Dart dart() {
+            return new NGMap.Dart(id);
+        }
     }
 
 }
@@ -0,0 +1,139 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArrayDartStorageTest {
+
+    private ArrayDartStorage storage;
+
+    @Before
+    public void before() {
+        storage = ArrayDartStorage.arrayDartStorage();
+        storage.increaseDimension();
+    }
+
+    @Test
+    public void addedDartIsFree() {
+        storage.addDart(1);
+
+        assertTrue(storage.containsDart(1));
+        assertEquals(DartStorage.FREE, storage.alpha(0, 1));
+        assertEquals(DartStorage.FREE, storage.alpha(1, 1));
+    }
+
+    @Test
+    public void noAddDoesntContain() {
+        assertFalse(storage.containsDart(1));
+        assertFalse(storage.containsDart(1000));
+    }
+
+    @Test
+    public void linkAddsInverse() {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.link(1, 1, 2);
+
+        assertEquals(2, storage.alpha(1, 1));
+        assertEquals(1, storage.alpha(1, 2));
+        assertEquals(DartStorage.FREE, storage.alpha(0, 1));
+    }
+
+    @Test
+    public void unlinkRemovesInverse() {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.link(0, 1, 2);
+        storage.unlink(0, 2);
+
+        assertEquals(DartStorage.FREE, storage.alpha(0, 1));
+        assertEquals(DartStorage.FREE, storage.alpha(0, 2));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        storage.addDart(1);
+        storage.addDart(100000);
+        storage.link(1, 1, 100000);
+
+        assertEquals(100000, storage.alpha(1, 1));
+        assertEquals(1, storage.alpha(1, 100000));
+    }
+
+    @Test
+    public void forEachDartVisitsLiveDarts() {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.addDart(3);
+        storage.removeDart(2);
+
+        Set<Integer> darts = new HashSet<>();
+        storage.forEachDart(darts::add);
+        assertEquals(Sets.newHashSet(1, 3), darts);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantDecreaseDimensionWithLinks() {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.link(1, 1, 2);
+
+        storage.decreaseDimension();
+    }
+
+    @Test
+    public void countsLinks() {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.addDart(3);
+        storage.link(1, 1, 2);
+        storage.unlink(1, 3);
+        assertEquals(1, storage.linkCount(1));
+        assertEquals(0, storage.linkCount(0));
+
+        storage.removeDart(2);
+        assertEquals(0, storage.linkCount(1));
+        assertEquals(DartStorage.FREE, storage.alpha(1, 1));
+    }
+
+    @Test
+    public void canDecreaseDimensionOnceTopAlphaUnlinked() {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.link(1, 1, 2);
+        storage.unlink(1, 1);
+
+        storage.decreaseDimension();
+        assertEquals(0, storage.dimension());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantDecreaseDimensionWithTopAlphaLinked() {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.link(1, 1, 2);
+
+        storage.decreaseDimension();
+    }
+
+    @Test
+    public void wrappedColumnsAreCounted() {
+        int[][] alphas = { { 0, 2, 1, 0 }, { 0, 0, 3, 2 } };
+        BitSet darts = new BitSet();
+        darts.set(1, 4);
+
+        ArrayDartStorage wrapped = ArrayDartStorage.arrayDartStorage(alphas, darts);
+        assertEquals(1, wrapped.linkCount(0));
+        assertEquals(1, wrapped.linkCount(1));
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import lombok.Value;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AttributeStoreTest {
+
+    private AttributeStore attributes;
+
+    @Before
+    public void before() {
+        attributes = new AttributeStore(2);
+    }
+
+    @Test
+    public void canPutGetAndRemove() {
+        attributes.put(1, 5, new StringAttr("edge"));
+        attributes.put(1, 1000, new StringAttr("far edge"));
+
+        assertEquals(new StringAttr("edge"), attributes.get(1, 5));
+        assertEquals(new StringAttr("far edge"), attributes.get(1, 1000));
+        assertNull(attributes.get(0, 5));
+        assertNull(attributes.get(1, 6));
+
+        attributes.remove(1, 5);
+        assertNull(attributes.get(1, 5));
+    }
+
+    @Test
+    public void mergeKeepsTheAttributeOfTheKeptCell() {
+        attributes.put(0, 1, new StringAttr("kept"));
+        attributes.put(0, 3, new StringAttr("dropped"));
+        attributes.put(0, 7, new StringAttr("moved"));
+
+        attributes.merged(0, 1, 3);
+        attributes.merged(0, 5, 7);
+
+        assertEquals(new StringAttr("kept"), attributes.get(0, 1));
+        assertNull(attributes.get(0, 3));
+        assertEquals(new StringAttr("moved"), attributes.get(0, 5));
+        assertNull(attributes.get(0, 7));
+    }
+
+    @Test
+    public void splitCopiesTheAttribute() {
+        attributes.put(2, 1, new StringAttr("volume"));
+
+        attributes.split(2, 1, 9);
+
+        assertEquals(new StringAttr("volume"), attributes.get(2, 1));
+        assertEquals(new StringAttr("volume"), attributes.get(2, 9));
+    }
+
+    @Test
+    public void removedDartLosesItsAttributes() {
+        attributes.put(0, 4, new StringAttr("vertex"));
+        attributes.put(2, 4, new StringAttr("face"));
+
+        attributes.removed(4);
+
+        assertNull(attributes.get(0, 4));
+        assertNull(attributes.get(2, 4));
+    }
+
+    @Value
+    private static class StringAttr implements Attribute {
+        private final String string;
+    }
+
+}
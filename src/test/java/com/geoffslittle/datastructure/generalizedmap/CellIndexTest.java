@@ -0,0 +1,114 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CellIndexTest {
+
+    private ArrayDartStorage storage;
+    private CellIndex cellIndex;
+    private List<String> events;
+
+    /*
+     * Four edges in a 1-GMap: darts 1..8 where alpha_0 pairs (1,2) (3,4) (5,6) (7,8), nothing sewn in alpha_1 yet
+     */
+    @Before
+    public void before() {
+        storage = ArrayDartStorage.arrayDartStorage();
+        storage.increaseDimension();
+        for (int dart = 1; dart <= 8; dart++) {
+            storage.addDart(dart);
+        }
+        for (int dart = 1; dart <= 8; dart += 2) {
+            storage.link(0, dart, dart + 1);
+        }
+        events = Lists.newArrayList();
+        cellIndex = new CellIndex(storage, i -> new int[] {1 - i}, new CellIndex.Listener() {
+            @Override
+            public void merged(int i, int kept, int dropped) {
+                events.add("merged " + i + " " + kept + " " + dropped);
+            }
+
+            @Override
+            public void split(int i, int from, int to) {
+                events.add("split " + i + " " + from + " " + to);
+            }
+        });
+    }
+
+    @Test
+    public void indexLabelsCellsByTheirSmallestDart() {
+        cellIndex.index(1);
+
+        assertTrue(cellIndex.isIndexed(1));
+        assertFalse(cellIndex.isIndexed(0));
+        assertEquals(1, cellIndex.label(1, 2));
+        assertEquals(7, cellIndex.label(1, 8));
+    }
+
+    @Test
+    public void linkMergesCells() {
+        cellIndex.index(0);
+        cellIndex.index(1);
+
+        cellIndex.beforeLink(1, 2, 3);
+        storage.link(1, 2, 3);
+        cellIndex.beforeLink(1, 8, 1);
+        storage.link(1, 8, 1);
+
+        assertEquals(2, cellIndex.label(0, 3));
+        assertEquals(1, cellIndex.label(0, 8));
+        // Edges don't change when sewing in alpha_1
+        assertEquals(3, cellIndex.label(1, 4));
+        assertEquals(Lists.newArrayList("merged 0 2 3", "merged 0 1 8"), events);
+    }
+
+    @Test
+    public void settleSplitsCells() {
+        cellIndex.index(0);
+        cellIndex.beforeLink(1, 2, 3);
+        storage.link(1, 2, 3);
+        events.clear();
+
+        storage.unlink(1, 2);
+        cellIndex.unlinked(1, 2, 3);
+        assertEquals(2, cellIndex.label(0, 3));
+        cellIndex.settle();
+
+        assertEquals(2, cellIndex.label(0, 2));
+        assertEquals(3, cellIndex.label(0, 3));
+        assertEquals(Lists.newArrayList("split 0 2 3"), events);
+    }
+
+    @Test
+    public void addedAndRemovedDartsAreTheirOwnCells() {
+        cellIndex.index(0);
+
+        storage.addDart(20);
+        cellIndex.added(20);
+        assertEquals(20, cellIndex.label(0, 20));
+
+        storage.removeDart(20);
+        cellIndex.removed(20);
+        assertEquals(DartStorage.FREE, cellIndex.label(0, 20));
+    }
+
+    @Test
+    public void droppingTheDimensionDropsItsIndex() {
+        cellIndex.index(1);
+        assertFalse(cellIndex.isEmpty());
+
+        cellIndex.dimensionChanged(0);
+
+        assertFalse(cellIndex.isIndexed(1));
+        assertTrue(cellIndex.isEmpty());
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import com.google.common.collect.Sets;
+import lombok.Value;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentNGMapTest {
+
+    private ConcurrentNGMap ngMap;
+
+    @Before
+    public void before() {
+        ngMap = ConcurrentNGMap.concurrentNGMap(2);
+    }
+
+    @Test
+    public void behavesLikeTheWrappedNGMap() {
+        NGMap.Edge edge1 = ngMap.addEdge();
+        NGMap.Edge edge2 = ngMap.addEdge();
+        ngMap.sew(edge1.get_2(), edge2.get_1(), 1);
+
+        assertEquals(2, ngMap.dimension());
+        assertEquals(Sets.newHashSet(edge1.get_2(), edge2.get_1()), Sets.newHashSet(ngMap.iCell(edge1.get_2(), 0)));
+        assertTrue(ngMap.isIFree(edge1.get_1(), 1));
+        assertEquals(edge1.get_2().getId(), ngMap.cellId(edge2.get_1(), 0));
+
+        ngMap.putAttribute(edge2.get_1(), 0, new StringAttr("vertex"));
+        assertEquals(new StringAttr("vertex"), ngMap.getAttribute(edge1.get_2(), 0).get());
+        assertTrue(ngMap.isIndexed(0));
+        assertEquals(Optional.empty(), ngMap.getAttribute(edge1.get_1(), 2));
+        assertTrue(ngMap.isIndexed(2));
+    }
+
+    @Test
+    public void addNPolygonReturnsEdgesToSewOnto() {
+        List<NGMap.Edge> square = ngMap.addNPolygon(4);
+        List<NGMap.Edge> other = ngMap.addNPolygon(4);
+
+        ngMap.sew(square.get(0).get_1(), other.get(0).get_2(), 2);
+
+        assertEquals(4, square.size());
+        assertEquals(Sets.newHashSet(square.get(0).get_1(), square.get(0).get_2(), other.get(0).get_1(),
+                other.get(0).get_2()), Sets.newHashSet(ngMap.iCell(square.get(0).get_1(), 1)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void optimisticReadsStillThrow() {
+        ngMap.isIFree(ngMap.addIsolatedDart(), 3);
+    }
+
+    @Test
+    public void readersRunAlongsideAWriter() throws Exception {
+        NGMap.Edge edge = ngMap.addEdge();
+        ngMap.putAttribute(edge.get_1(), 1, new StringAttr("edge"));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> {
+            for (int k = 0; k < 500; k++) {
+                ngMap.addNPolygon(4);
+            }
+        }));
+        for (int t = 0; t < 3; t++) {
+            futures.add(executor.submit(() -> {
+                for (int k = 0; k < 2000; k++) {
+                    assertEquals(2, ngMap.iCell(edge.get_2(), 1).size());
+                    assertEquals(new StringAttr("edge"), ngMap.getAttribute(edge.get_2(), 1).get());
+                    assertTrue(ngMap.isIFree(edge.get_1(), 1));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(4002, ngMap.darts().size());
+    }
+
+    @Test
+    public void countsSnapshotsAndSewabilityAreReadAlongsideAWriter() throws Exception {
+        ConcurrentNGMap ngMap = ConcurrentNGMap.concurrentNGMap(NGMap.ngMap(2, ArrayDartStorage.arrayDartStorage()));
+        NGMap.Edge edge = ngMap.addEdge();
+        assertEquals(1, ngMap.cellCount(2));
+        assertEquals(1, ngMap.componentCount());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> {
+            for (int k = 0; k < 500; k++) {
+                ngMap.addNPolygon(4);
+            }
+        }));
+        for (int t = 0; t < 3; t++) {
+            futures.add(executor.submit(() -> {
+                for (int k = 0; k < 500; k++) {
+                    int faces = ngMap.cellCount(2);
+                    assertTrue(1 <= faces && faces <= 501);
+                    assertTrue(ngMap.componentCount() >= 1);
+                    assertTrue(ngMap.isSewable(edge.get_1(), edge.get_2(), 1));
+                    // Polygons are added whole, so a snapshot never sees part of one
+                    assertEquals(2, ngMap.snapshot().darts().size() % 8);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(501, ngMap.cellCount(2));
+        assertEquals(501, ngMap.componentCount());
+    }
+
+    @Value
+    private static class StringAttr implements Attribute {
+        private final String string;
+    }
+
+}
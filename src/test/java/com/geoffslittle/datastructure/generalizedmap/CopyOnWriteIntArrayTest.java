@@ -0,0 +1,62 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CopyOnWriteIntArrayTest {
+
+    private CopyOnWriteIntArray array;
+
+    @Before
+    public void before() {
+        array = new CopyOnWriteIntArray();
+    }
+
+    @Test
+    public void unsetIndicesAreZero() {
+        array.set(5000, 7);
+
+        assertEquals(7, array.get(5000));
+        assertEquals(0, array.get(4999));
+        assertEquals(0, array.get(1 << 20));
+    }
+
+    @Test
+    public void snapshotDoesntSeeLaterWrites() {
+        array.set(1, 10);
+        array.set(3000, 30);
+        CopyOnWriteIntArray snapshot = array.snapshot();
+
+        array.set(1, 11);
+        array.set(2, 20);
+        array.set(100000, 1);
+
+        assertEquals(10, snapshot.get(1));
+        assertEquals(0, snapshot.get(2));
+        assertEquals(0, snapshot.get(100000));
+        assertEquals(11, array.get(1));
+        assertEquals(30, array.get(3000));
+    }
+
+    @Test
+    public void untouchedChunksAreShared() {
+        array.set(1, 10);
+        array.set(3000, 30);
+        CopyOnWriteIntArray snapshot = array.snapshot();
+
+        array.set(1, 11);
+
+        assertEquals(snapshot.chunk(3000 >>> CopyOnWriteIntArray.CHUNK_SHIFT),
+                array.chunk(3000 >>> CopyOnWriteIntArray.CHUNK_SHIFT));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsReadOnly() {
+        array.set(1, 10);
+
+        array.snapshot().set(1, 11);
+    }
+
+}
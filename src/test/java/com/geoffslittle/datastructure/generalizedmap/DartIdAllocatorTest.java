@@ -0,0 +1,76 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DartIdAllocatorTest {
+
+    private DartIdAllocator ids;
+
+    @Before
+    public void before() {
+        ids = new DartIdAllocator();
+    }
+
+    @Test
+    public void allocatesFromOne() {
+        assertEquals(1, ids.allocate());
+        assertEquals(2, ids.allocate());
+        assertEquals(3, ids.bound());
+    }
+
+    @Test
+    public void reusesReleasedIds() {
+        ids.allocate();
+        int id = ids.allocate();
+        ids.allocate();
+        ids.release(id);
+
+        assertEquals(1, ids.freeCount());
+        assertEquals(id, ids.allocate());
+        assertEquals(4, ids.allocate());
+    }
+
+    @Test
+    public void resetFreesIdsNotInUse() {
+        DartRegistry inUse = new DartRegistry();
+        inUse.add(2);
+        inUse.add(4);
+        ids.reset(6, inUse);
+
+        assertEquals(3, ids.freeCount());
+        assertEquals(1, ids.allocate());
+        assertEquals(3, ids.allocate());
+        assertEquals(5, ids.allocate());
+        assertEquals(6, ids.allocate());
+    }
+
+    @Test
+    public void unallocateAndReclaimUndoAllocateAndRelease() {
+        int first = ids.allocate();
+        int second = ids.allocate();
+        ids.release(first);
+
+        int reused = ids.allocate();
+        ids.unallocate(reused, false);
+        int grown = ids.allocate();
+        assertEquals(first, grown);
+        ids.unallocate(ids.allocate(), true);
+        assertEquals(3, ids.bound());
+
+        ids.release(second);
+        ids.reclaim(second);
+        assertEquals(0, ids.freeCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantReclaimIdThatWasntLastReleased() {
+        ids.allocate();
+        int id = ids.allocate();
+        ids.release(id);
+        ids.reclaim(1);
+    }
+
+}
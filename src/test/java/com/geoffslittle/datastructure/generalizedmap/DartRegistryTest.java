@@ -0,0 +1,66 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DartRegistryTest {
+
+    private DartRegistry registry;
+
+    @Before
+    public void before() {
+        registry = new DartRegistry();
+        registry.add(1);
+        registry.add(2);
+        registry.add(100);
+    }
+
+    @Test
+    public void containsAddedDarts() {
+        assertTrue(registry.contains(1));
+        assertTrue(registry.contains(100));
+        assertFalse(registry.contains(3));
+        assertFalse(registry.contains(0));
+        assertFalse(registry.contains(1000));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    public void addingTwiceIsIgnored() {
+        registry.add(2);
+
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    public void removeKeepsTheOtherDarts() {
+        registry.remove(1);
+        registry.remove(7);
+
+        assertFalse(registry.contains(1));
+        assertEquals(2, registry.size());
+        Set<Integer> darts = new HashSet<>();
+        registry.forEach(darts::add);
+        assertEquals(Sets.newHashSet(2, 100), darts);
+    }
+
+    @Test
+    public void staleSparseEntriesArentMembers() {
+        // 100 is moved into position 0, the stale entry of 1 still points there
+        registry.remove(1);
+        registry.remove(100);
+
+        assertFalse(registry.contains(1));
+        assertFalse(registry.contains(100));
+        assertTrue(registry.contains(2));
+    }
+
+}
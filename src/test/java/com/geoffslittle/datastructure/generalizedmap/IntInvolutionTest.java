@@ -0,0 +1,134 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IntInvolutionTest {
+
+    private IntInvolution involution;
+
+    @Before
+    public void before() {
+        involution = IntInvolution.intInvolution();
+    }
+
+    @Test
+    public void addOnlyKeyContains() {
+        involution.put(1);
+
+        assertTrue(involution.containsElement(1));
+    }
+
+    @Test
+    public void addOnlyKeyGetsEmpty() {
+        involution.put(1);
+
+        assertEquals(IntInvolution.FREE, involution.get(1));
+    }
+
+    @Test
+    public void noAddDoesntContain() {
+        assertFalse(involution.containsElement(1));
+    }
+
+    @Test
+    public void addContainsValue() {
+        involution.put(1, 2);
+
+        assertTrue(involution.containsCoelement(2));
+    }
+
+    @Test
+    public void addsInverse() {
+        involution.put(1, 2);
+
+        assertEquals(2, involution.get(1));
+        assertEquals(1, involution.get(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantAddFixedPoint() {
+        involution.put(1, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantOverwriteExistingKey() {
+        involution.put(1, 2);
+        involution.put(1, 3);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantOverwriteExistingValue() {
+        involution.put(1, 2);
+        involution.put(2, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cantAddZero() {
+        involution.put(0);
+    }
+
+    @Test
+    public void removesInverseFromValue() {
+        involution.put(1, 2);
+        involution.remove(2);
+
+        assertFalse(involution.containsElement(1));
+        assertFalse(involution.containsElement(2));
+        assertEquals(0, involution.size());
+    }
+
+    @Test
+    public void matchesHashMapUnderChurn() {
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int n = 0; n < 100000; n++) {
+            int element = 1 + random.nextInt(2000);
+            int coelement = 1 + random.nextInt(2000);
+            if (random.nextBoolean()) {
+                Integer value = expected.remove(element);
+                if (value != null && value != IntInvolution.FREE) {
+                    expected.remove(value);
+                }
+                involution.remove(element);
+            } else if (element != coelement
+                    && expected.getOrDefault(element, IntInvolution.FREE) == IntInvolution.FREE
+                    && expected.getOrDefault(coelement, IntInvolution.FREE) == IntInvolution.FREE) {
+                expected.put(element, coelement);
+                expected.put(coelement, element);
+                involution.put(element, coelement);
+            }
+        }
+
+        assertEquals(expected.size(), involution.size());
+        for (int element = 1; element <= 2000; element++) {
+            assertEquals(expected.containsKey(element), involution.containsElement(element));
+            assertEquals((int) expected.getOrDefault(element, IntInvolution.FREE), involution.get(element));
+        }
+    }
+
+    @Test
+    public void countsLinks() {
+        involution.put(1, 2);
+        involution.put(3, 4);
+        involution.put(5);
+        assertEquals(2, involution.linkCount());
+
+        involution.remove(2);
+        involution.remove(5);
+        assertEquals(1, involution.linkCount());
+        assertTrue(involution.hasLinks());
+
+        involution.remove(3);
+        assertFalse(involution.hasLinks());
+    }
+
+}
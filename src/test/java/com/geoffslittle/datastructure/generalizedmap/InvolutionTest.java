@@ -101,4 +101,29 @@ public class InvolutionTest {
         assertFalse(involution.containsElement(2));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void countsLinks() {
+        involution.put(1, 2);
+        involution.put(3, 4);
+        involution.put(5);
+        assertEquals(2, involution.linkCount());
+
+        involution.remove(2);
+        involution.remove(5);
+        assertEquals(1, involution.linkCount());
+        assertTrue(involution.hasLinks());
+
+        involution.remove(3);
+        assertFalse(involution.hasLinks());
+    }
+
+    @Test
+    public void puttingLinkedElementKeepsLink() {
+        involution.put(1, 2);
+        involution.put(1);
+
+        assertEquals(Optional.of(2), involution.get(1));
+        assertEquals(1, involution.linkCount());
+    }
+
+}
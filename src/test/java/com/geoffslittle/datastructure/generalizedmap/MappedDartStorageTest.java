@@ -0,0 +1,227 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedDartStorageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private MappedDartStorage storage;
+
+    @Before
+    public void before() throws IOException {
+        directory = folder.newFolder().toPath();
+        storage = MappedDartStorage.mappedDartStorage(directory);
+        storage.increaseDimension();
+    }
+
+    @After
+    public void after() throws IOException {
+        storage.close();
+    }
+
+    @Test
+    public void linkIsSymmetricAndUnlinkRemovesBothSides() {
+        storage.addDart(1);
+        storage.addDart(2);
+
+        storage.link(1, 1, 2);
+        assertEquals(2, storage.alpha(1, 1));
+        assertEquals(1, storage.alpha(1, 2));
+
+        storage.unlink(1, 2);
+        assertEquals(DartStorage.FREE, storage.alpha(1, 1));
+        assertEquals(DartStorage.FREE, storage.alpha(1, 2));
+        assertTrue(storage.containsDart(1));
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        storage.addDart(1);
+        storage.addDart(5000);
+        storage.link(0, 1, 5000);
+
+        assertEquals(5000, storage.alpha(0, 1));
+        assertEquals(DartStorage.FREE, storage.alpha(0, 100000));
+        Set<Integer> darts = new HashSet<>();
+        storage.forEachDart(darts::add);
+        assertEquals(Sets.newHashSet(1, 5000), darts);
+    }
+
+    @Test
+    public void reopensWhereItLeftOff() throws IOException {
+        storage.increaseDimension();
+        storage.addDart(3);
+        storage.addDart(4000);
+        storage.link(2, 3, 4000);
+        storage.close();
+
+        storage = MappedDartStorage.mappedDartStorage(directory);
+
+        assertEquals(2, storage.dimension());
+        assertTrue(storage.containsDart(3));
+        assertTrue(storage.containsDart(4000));
+        assertFalse(storage.containsDart(4));
+        assertEquals(4000, storage.alpha(2, 3));
+    }
+
+    @Test
+    public void decreaseDimensionDeletesTheColumn() {
+        storage.decreaseDimension();
+
+        assertEquals(0, storage.dimension());
+        assertFalse(Files.exists(directory.resolve("alpha-1")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantDecreaseDimensionWithLinks() {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.link(1, 1, 2);
+
+        storage.decreaseDimension();
+    }
+
+    @Test
+    public void reopenedNGMapKeepsSewingAfterItsDarts() throws IOException {
+        NGMap ngMap = NGMap.ngMap(1, storage);
+        NGMap.Edge edge = ngMap.addEdge();
+        storage.close();
+
+        storage = MappedDartStorage.mappedDartStorage(directory);
+        ngMap = NGMap.ngMap(1, storage);
+        NGMap.Edge next = ngMap.addEdge();
+        ngMap.sew(edge.get_2(), next.get_1(), 1);
+
+        assertEquals(Sets.newHashSet(edge.get_1(), edge.get_2(), next.get_1(), next.get_2()), ngMap.darts());
+        assertEquals(4, ngMap.iCell(edge.get_1(), 1).size() + ngMap.iCell(next.get_1(), 1).size());
+        assertEquals(2, ngMap.iCell(edge.get_2(), 0).size());
+    }
+
+    @Test
+    public void reopensWithTheCountsOfItsHeader() throws IOException {
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.addDart(2);
+        storage.addDart(3);
+        storage.link(1, 1, 2);
+        storage.removeDart(3);
+        storage.close();
+
+        storage = MappedDartStorage.mappedDartStorage(directory);
+
+        assertEquals(2, storage.dartCount());
+        assertEquals(0, storage.linkCount(0));
+        assertEquals(1, storage.linkCount(1));
+    }
+
+    @Test
+    public void increaseDimensionTruncatesAColumnLeftBehind() throws IOException {
+        Files.write(directory.resolve("alpha-2"), new byte[] { 0, 0, 0, 0, 7, 0, 0, 0 });
+
+        storage.increaseDimension();
+
+        assertEquals(DartStorage.FREE, storage.alpha(2, 1));
+    }
+
+    @Test
+    public void reopenedNGMapKeepsItsFreeIdsAndAttributes() throws IOException {
+        storage.close();
+        storage = MappedDartStorage.mappedDartStorage(directory, StringAttr.CODEC);
+        NGMap ngMap = NGMap.ngMap(1, storage);
+        NGMap.Edge edge = ngMap.addEdge();
+        NGMap.Dart first = ngMap.addIsolatedDart();
+        NGMap.Dart last = ngMap.addIsolatedDart();
+        ngMap.putAttribute(edge.get_1(), 1, new StringAttr("edge"));
+        ngMap.putAttribute(edge.get_2(), 0, new StringAttr("vertex"));
+        // A rebuilt allocator would hand out the lowest free id first, the reopened one the last released
+        ngMap.removeIsolatedDart(first);
+        ngMap.removeIsolatedDart(last);
+        storage.close();
+
+        storage = MappedDartStorage.mappedDartStorage(directory, StringAttr.CODEC);
+        ngMap = NGMap.ngMap(1, storage);
+
+        assertEquals(Sets.newHashSet(edge.get_1(), edge.get_2()), ngMap.darts());
+        assertEquals(Optional.of(new StringAttr("edge")), ngMap.getAttribute(edge.get_2(), 1));
+        assertEquals(Optional.of(new StringAttr("vertex")), ngMap.getAttribute(edge.get_2(), 0));
+        assertEquals(Optional.empty(), ngMap.getAttribute(edge.get_1(), 0));
+        assertEquals(last, ngMap.addIsolatedDart());
+    }
+
+    @Test
+    public void compactingMovesMappedAttributesWithTheirCells() throws IOException {
+        storage.close();
+        storage = MappedDartStorage.mappedDartStorage(directory, StringAttr.CODEC);
+        NGMap ngMap = NGMap.ngMap(1, storage);
+        NGMap.Dart removed = ngMap.addIsolatedDart();
+        NGMap.Edge edge = ngMap.addEdge();
+        ngMap.putAttribute(edge.get_1(), 1, new StringAttr("edge"));
+        ngMap.removeAttribute(edge.get_1(), 1);
+        ngMap.putAttribute(edge.get_1(), 1, new StringAttr("replaced"));
+        ngMap.removeIsolatedDart(removed);
+
+        UnaryOperator<NGMap.Dart> renumbering = ngMap.compact();
+        storage.close();
+        storage = MappedDartStorage.mappedDartStorage(directory, StringAttr.CODEC);
+        ngMap = NGMap.ngMap(1, storage);
+
+        assertEquals(Optional.of(new StringAttr("replaced")),
+                ngMap.getAttribute(renumbering.apply(edge.get_2()), 1));
+        assertEquals(Sets.newHashSet(new NGMap.Dart(1), new NGMap.Dart(2)), ngMap.darts());
+    }
+
+    @Test
+    public void replacedAttributesAreCompactedAway() throws IOException {
+        storage.close();
+        storage = MappedDartStorage.mappedDartStorage(directory, StringAttr.CODEC);
+        NGMap ngMap = NGMap.ngMap(1, storage);
+        NGMap.Dart dart = ngMap.addIsolatedDart();
+        NGMap.Dart other = ngMap.addIsolatedDart();
+        ngMap.putAttribute(other, 0, new StringAttr("kept"));
+
+        for (int k = 0; k < 10000; k++) {
+            ngMap.removeAttribute(dart, 0);
+            ngMap.putAttribute(dart, 0, new StringAttr("attribute " + k));
+        }
+
+        assertTrue(Files.size(directory.resolve("attribute-data-0")) <= 1 << 17);
+        assertEquals(Optional.of(new StringAttr("attribute 9999")), ngMap.getAttribute(dart, 0));
+        assertEquals(Optional.of(new StringAttr("kept")), ngMap.getAttribute(other, 0));
+    }
+
+    @Test
+    public void decreaseDimensionDeletesTheAttributesOfTheDimension() throws IOException {
+        storage.close();
+        storage = MappedDartStorage.mappedDartStorage(directory, StringAttr.CODEC);
+        NGMap ngMap = NGMap.ngMap(1, storage);
+        NGMap.Dart dart = ngMap.addIsolatedDart();
+        ngMap.putAttribute(dart, 1, new StringAttr("edge"));
+        assertTrue(Files.exists(directory.resolve("attributes-1")));
+
+        ngMap.decreaseDimension();
+
+        assertFalse(Files.exists(directory.resolve("attributes-1")));
+        assertFalse(Files.exists(directory.resolve("attribute-data-1")));
+    }
+
+}
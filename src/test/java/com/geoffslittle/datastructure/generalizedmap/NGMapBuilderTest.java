@@ -0,0 +1,96 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NGMapBuilderTest {
+
+    private static final int[][] TETRAHEDRON = { { 0, 1, 2 }, { 0, 3, 1 }, { 1, 3, 2 }, { 2, 3, 0 } };
+
+    @Test
+    public void buildsClosedSurface() {
+        NGMapBuilder builder = NGMapBuilder.ngMapBuilder();
+        for (int[] face : TETRAHEDRON) {
+            builder.addFace(face);
+        }
+        NGMap ngMap = builder.build(true);
+
+        assertEquals(2, ngMap.dimension());
+        assertEquals(24, ngMap.dartCount());
+        assertEquals(0, ngMap.freeDartCount(0));
+        assertEquals(0, ngMap.freeDartCount(1));
+        assertEquals(0, ngMap.freeDartCount(2));
+        assertEquals(4, ngMap.cells(0).count());
+        assertEquals(6, ngMap.cells(1).count());
+        assertEquals(4, ngMap.cells(2).count());
+    }
+
+    @Test
+    public void vertexDartsAreAtTheirVertex() {
+        NGMapBuilder builder = NGMapBuilder.ngMapBuilder();
+        for (int[] face : TETRAHEDRON) {
+            builder.addFace(face);
+        }
+        NGMap ngMap = builder.build();
+
+        for (int vertex = 0; vertex < 4; vertex++) {
+            // Three triangles meet at each vertex, each with two darts at it
+            assertEquals(6, ngMap.iCell(builder.vertexDart(vertex), 0).size());
+        }
+        assertEquals(4, ImmutableSet.of(ngMap.cellId(builder.vertexDart(0), 0), ngMap.cellId(builder.vertexDart(1), 0),
+                ngMap.cellId(builder.vertexDart(2), 0), ngMap.cellId(builder.vertexDart(3), 0)).size());
+    }
+
+    @Test
+    public void sewsFacesOfEitherOrientation() {
+        // The shared edge 1-2 runs the same way in both faces
+        NGMap ngMap = NGMapBuilder.ngMapBuilder()
+                .addFace(0, 1, 2)
+                .addFace(1, 2, 3)
+                .build(true);
+
+        assertEquals(2, ngMap.linkCount(2));
+        assertEquals(8, ngMap.freeDartCount(2));
+        assertEquals(4, ngMap.cells(0).count());
+        assertEquals(5, ngMap.cells(1).count());
+    }
+
+    @Test
+    public void boundaryDartsStayFree() {
+        NGMap ngMap = NGMapBuilder.ngMapBuilder()
+                .addFace(0, 1, 2, 3)
+                .build(true);
+
+        assertEquals(8, ngMap.freeDartCount(2));
+        assertTrue(ngMap.isIFree(new NGMap.Dart(1), 2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantShareAnEdgeBetweenThreeFaces() {
+        NGMapBuilder.ngMapBuilder()
+                .addFace(0, 1, 2)
+                .addFace(1, 0, 3)
+                .addFace(0, 1, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cantAddDegenerateFace() {
+        NGMapBuilder.ngMapBuilder().addFace(0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cantRepeatVertexConsecutively() {
+        NGMapBuilder.ngMapBuilder().addFace(0, 1, 1, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantAddFaceOnceBuilt() {
+        NGMapBuilder builder = NGMapBuilder.ngMapBuilder().addFace(0, 1, 2);
+        builder.build();
+        builder.addFace(2, 1, 3);
+    }
+
+}
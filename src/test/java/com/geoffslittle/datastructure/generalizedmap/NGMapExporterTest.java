@@ -0,0 +1,110 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Position;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NGMapExporterTest {
+
+    private NGMap ngMap;
+
+    /*
+     * Two triangles sharing the edge 1-2, with positions on every vertex
+     */
+    @Before
+    public void before() {
+        NGMapBuilder builder = NGMapBuilder.ngMapBuilder()
+                .addFace(0, 1, 2)
+                .addFace(2, 1, 3);
+        ngMap = builder.build(true);
+        for (int vertex = 0; vertex < 4; vertex++) {
+            ngMap.putAttribute(builder.vertexDart(vertex), 0, new Position(vertex, 0.5, -1));
+        }
+    }
+
+    @Test
+    public void writesJson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NGMapExporter.writeJson(ngMap, out);
+        JsonObject json = new JsonParser().parse(out.toString(StandardCharsets.UTF_8.name())).getAsJsonObject();
+
+        assertEquals(2, json.get("dimension").getAsInt());
+        assertEquals(12, json.getAsJsonArray("darts").size());
+        JsonArray alphas = json.getAsJsonArray("alphas");
+        assertEquals(6, alphas.get(0).getAsJsonArray().size());
+        assertEquals(6, alphas.get(1).getAsJsonArray().size());
+        assertEquals(2, alphas.get(2).getAsJsonArray().size());
+        JsonArray link = alphas.get(0).getAsJsonArray().get(0).getAsJsonArray();
+        assertTrue(ngMap.iCell(new NGMap.Dart(link.get(0).getAsInt()), 1)
+                .contains(new NGMap.Dart(link.get(1).getAsInt())));
+
+        JsonArray vertices = json.getAsJsonArray("attributes").get(0).getAsJsonArray();
+        assertEquals(4, vertices.size());
+        JsonObject vertex = vertices.get(0).getAsJsonObject();
+        assertEquals(Position.class.getName(), vertex.get("type").getAsString());
+        int cell = vertex.get("cell").getAsInt();
+        Position position = (Position) ngMap.getAttribute(new NGMap.Dart(cell), 0).get();
+        assertEquals(position.getX(), vertex.getAsJsonObject("value").get("x").getAsDouble(), 0);
+    }
+
+    @Test
+    public void writesOff() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NGMapExporter.writeOff(ngMap, out);
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+
+        assertEquals("OFF", lines[0]);
+        assertEquals("4 2 0", lines[1]);
+        assertEquals(8, lines.length);
+        assertEquals('3', lines[6].charAt(0));
+        assertEquals('3', lines[7].charAt(0));
+    }
+
+    @Test
+    public void objRoundTripsThroughTheBuilder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NGMapExporter.writeObj(ngMap, out);
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+
+        assertEquals(6, lines.length);
+        NGMapBuilder builder = NGMapBuilder.ngMapBuilder();
+        for (String line : lines) {
+            if (line.startsWith("f ")) {
+                String[] tokens = line.split(" ");
+                builder.addFace(Integer.parseInt(tokens[1]) - 1, Integer.parseInt(tokens[2]) - 1,
+                        Integer.parseInt(tokens[3]) - 1);
+            }
+        }
+        NGMap rebuilt = builder.build(true);
+        assertEquals(12, rebuilt.dartCount());
+        assertEquals(2, rebuilt.linkCount(2));
+    }
+
+    @Test
+    public void skipsOpenFaces() throws IOException {
+        NGMap open = NGMap.ngMap(2);
+        NGMap.Edge edge1 = open.addEdge();
+        NGMap.Edge edge2 = open.addEdge();
+        open.sew(edge1.get_2(), edge2.get_1(), 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NGMapExporter.writeOff(open, out);
+        assertEquals("OFF\n3 0 0\n", out.toString(StandardCharsets.UTF_8.name()).substring(0, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyWritesTwoGMapsAsMeshes() throws IOException {
+        NGMapExporter.writeOff(NGMap.ngMap(3), new ByteArrayOutputStream());
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+
+public class NGMapSerializerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+    private NGMap ngMap;
+
+    /*
+     * Two squares (darts 1..8 and 9..16) sharing an edge
+     */
+    @Before
+    public void before() throws IOException {
+        path = folder.newFile().toPath();
+        ngMap = NGMap.ngMap(2);
+        ngMap.addNPolygon(4);
+        ngMap.addNPolygon(4);
+        ngMap.sew(new NGMap.Dart(1), new NGMap.Dart(10), 2);
+        ngMap.removeIsolatedDart(ngMap.addIsolatedDart());
+    }
+
+    @Test
+    public void roundTripsTheTopology() throws IOException {
+        NGMapSerializer.save(ngMap, path);
+        NGMap loaded = NGMapSerializer.load(path);
+
+        assertEquals(2, loaded.dimension());
+        assertEquals(ngMap.darts(), loaded.darts());
+        for (NGMap.Dart dart : ngMap.darts()) {
+            for (int i = 0; i <= 2; i++) {
+                assertEquals(Sets.newHashSet(ngMap.iCell(dart, i)), Sets.newHashSet(loaded.iCell(dart, i)));
+            }
+        }
+        // The id of the removed dart is free again, and only then is the id space grown
+        assertEquals(17, loaded.addIsolatedDart().getId());
+        assertEquals(18, loaded.addIsolatedDart().getId());
+    }
+
+    @Test
+    public void roundTripsAttributes() throws IOException {
+        ngMap.putAttribute(new NGMap.Dart(2), 0, new StringAttr("vertex"));
+        ngMap.putAttribute(new NGMap.Dart(9), 1, new StringAttr("shared edge"));
+        ngMap.putAttribute(new NGMap.Dart(16), 2, new StringAttr("face"));
+
+        NGMapSerializer.save(ngMap, path, StringAttr.CODEC);
+        NGMap loaded = NGMapSerializer.load(path, StringAttr.CODEC);
+
+        assertEquals(new StringAttr("vertex"), loaded.getAttribute(new NGMap.Dart(3), 0).get());
+        assertEquals(new StringAttr("shared edge"), loaded.getAttribute(new NGMap.Dart(1), 1).get());
+        assertEquals(new StringAttr("face"), loaded.getAttribute(new NGMap.Dart(9), 2).get());
+        assertFalse(loaded.getAttribute(new NGMap.Dart(1), 2).isPresent());
+    }
+
+    @Test
+    public void roundTripsColumnsLargerThanTheBuffer() throws IOException {
+        NGMap large = NGMap.ngMap(1, ArrayDartStorage.arrayDartStorage());
+        large.addNPolygon(20000);
+
+        NGMapSerializer.save(large, path);
+        NGMap loaded = NGMapSerializer.load(path);
+
+        assertEquals(40000, loaded.darts().size());
+        // The polygon is still one closed ring
+        assertEquals(40000, Iterators.size(loaded.genericIterator(new NGMap.Dart(1), Lists.newArrayList(0, 1))));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void savingAttributesNeedsACodec() throws IOException {
+        ngMap.putAttribute(new NGMap.Dart(1), 0, new StringAttr("vertex"));
+
+        NGMapSerializer.save(ngMap, path);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOtherFiles() throws IOException {
+        NGMapSerializer.load(folder.newFile().toPath());
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import com.google.common.collect.Sets;
+import lombok.Value;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NGMapSnapshotTest {
+
+    private NGMap ngMap;
+    private NGMap.Edge edge1;
+    private NGMap.Edge edge2;
+
+    @Before
+    public void before() {
+        ngMap = NGMap.ngMap(1, PersistentDartStorage.persistentDartStorage());
+        edge1 = ngMap.addEdge();
+        edge2 = ngMap.addEdge();
+        ngMap.sew(edge1.get_2(), edge2.get_1(), 1);
+        ngMap.putAttribute(edge2.get_1(), 0, new StringAttr("vertex"));
+    }
+
+    @Test
+    public void snapshotIsUnaffectedByLaterEdits() {
+        NGMapSnapshot snapshot = ngMap.snapshot();
+
+        ngMap.unsew(edge1.get_2(), 1);
+        ngMap.removeAttribute(edge1.get_2(), 0);
+        NGMap.Edge edge3 = ngMap.addEdge();
+
+        assertEquals(Sets.newHashSet(edge1.get_1(), edge1.get_2(), edge2.get_1(), edge2.get_2()), snapshot.darts());
+        assertFalse(snapshot.containsDart(edge3.get_1()));
+        assertFalse(snapshot.isIFree(edge1.get_2(), 1));
+        assertEquals(Sets.newHashSet(edge1.get_2(), edge2.get_1()), Sets.newHashSet(snapshot.iCell(edge2.get_1(), 0)));
+        assertEquals(new StringAttr("vertex"), snapshot.getAttribute(edge2.get_1(), 0).get());
+
+        assertTrue(ngMap.isIFree(edge1.get_2(), 1));
+        assertEquals(Optional.empty(), ngMap.getAttribute(edge1.get_2(), 0));
+        assertEquals(Optional.empty(), snapshot.getAttribute(edge1.get_1(), 0));
+    }
+
+    @Test
+    public void snapshotsFindAttributesByCellId() {
+        NGMapSnapshot snapshot = ngMap.snapshot();
+
+        assertEquals(edge1.get_2().getId(), snapshot.cellId(edge2.get_1(), 0));
+        assertEquals(new StringAttr("vertex"), snapshot.getAttribute(edge1.get_2(), 0).get());
+        assertEquals(Optional.empty(), snapshot.getAttribute(edge1.get_1(), 0));
+    }
+
+    @Test
+    public void defaultStorageTakesSnapshots() {
+        NGMap ngMap = NGMap.ngMap(1);
+        NGMap.Edge edge1 = ngMap.addEdge();
+        NGMap.Edge edge2 = ngMap.addEdge();
+        ngMap.sew(edge1.get_2(), edge2.get_1(), 1);
+        ngMap.putAttribute(edge2.get_1(), 0, new StringAttr("vertex"));
+        NGMapSnapshot snapshot = ngMap.snapshot();
+
+        ngMap.unsew(edge1.get_2(), 1);
+        ngMap.removeIsolatedDart(ngMap.addIsolatedDart());
+
+        assertEquals(Sets.newHashSet(edge1.get_1(), edge1.get_2(), edge2.get_1(), edge2.get_2()), snapshot.darts());
+        assertFalse(snapshot.isIFree(edge1.get_2(), 1));
+        assertEquals(new StringAttr("vertex"), snapshot.getAttribute(edge1.get_2(), 0).get());
+        assertTrue(ngMap.isIFree(edge1.get_2(), 1));
+    }
+
+    @Test
+    public void snapshotKeepsCellLabelsOfIndexedDimensions() {
+        ngMap.indexCells(0);
+        NGMapSnapshot snapshot = ngMap.snapshot();
+
+        ngMap.unsew(edge1.get_2(), 1);
+
+        assertEquals(edge1.get_2().getId(), snapshot.cellId(edge2.get_1(), 0));
+        assertEquals(new StringAttr("vertex"), snapshot.getAttribute(edge1.get_2(), 0).get());
+        assertEquals(edge2.get_1().getId(), ngMap.cellId(edge2.get_1(), 0));
+    }
+
+    @Value
+    private static class StringAttr implements Attribute {
+        private final String string;
+    }
+
+}
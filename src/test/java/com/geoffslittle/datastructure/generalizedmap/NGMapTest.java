@@ -2,6 +2,7 @@ package com.geoffslittle.datastructure.generalizedmap;
 
 import com.geoffslittle.datastructure.maps.Attribute;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import lombok.Data;
@@ -9,8 +10,12 @@ import lombok.Value;
 import org.junit.Test;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 import static junit.framework.TestCase.assertFalse;
 import static org.junit.Assert.assertEquals;
@@ -94,6 +99,108 @@ public class NGMapTest {
         assertTrue(ngMap.isIsolated(isolatedDart));
     }
 
+    @Test
+    public void dartsIsALiveView() {
+        NGMap ngMap = NGMap.ngMap();
+        Set<NGMap.Dart> darts = ngMap.darts();
+        NGMap.Dart dart1 = ngMap.addIsolatedDart();
+        NGMap.Dart dart2 = ngMap.addIsolatedDart();
+
+        assertEquals(2, darts.size());
+        assertEquals(2, ngMap.dartCount());
+        assertTrue(darts.contains(dart1));
+
+        ngMap.removeIsolatedDart(dart1);
+        assertEquals(ImmutableSet.of(dart2), darts);
+        assertFalse(ngMap.containsDart(dart1));
+    }
+
+    @Test
+    public void countsLinksAndFreeDarts() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Dart dart1 = ngMap.addIsolatedDart();
+        NGMap.Dart dart2 = ngMap.addIsolatedDart();
+        ngMap.addIsolatedDart();
+        ngMap.sew(dart1, dart2, 1);
+
+        assertEquals(1, ngMap.linkCount(1));
+        assertEquals(1, ngMap.freeDartCount(1));
+        assertEquals(3, ngMap.freeDartCount(0));
+
+        ngMap.unsew(dart1, 1);
+        assertEquals(0, ngMap.linkCount(1));
+        assertEquals(3, ngMap.freeDartCount(1));
+    }
+
+    @Test
+    public void reusesIdsOfRemovedDarts() {
+        NGMap ngMap = NGMap.ngMap();
+        ngMap.addIsolatedDart();
+        NGMap.Dart removed = ngMap.addIsolatedDart();
+        ngMap.removeIsolatedDart(removed);
+
+        assertEquals(removed, ngMap.addIsolatedDart());
+        assertEquals(2, ngMap.dartCount());
+    }
+
+    @Test
+    public void compactRenumbersDartsDensely() {
+        NGMap ngMap = NGMap.ngMap(1);
+        List<NGMap.Dart> isolated = Lists.newArrayList(ngMap.addIsolatedDart(), ngMap.addIsolatedDart());
+        NGMap.Edge edge1 = ngMap.addEdge();
+        ngMap.addIsolatedDart();
+        NGMap.Edge edge2 = ngMap.addEdge();
+        ngMap.sew(edge1.get_2(), edge2.get_1(), 1);
+        ngMap.putAttribute(edge2.get_2(), 0, new StringAttr(VERTEX_1));
+        ngMap.putAttribute(edge1.get_1(), 1, new StringAttr(VERTEX_2));
+        isolated.forEach(ngMap::removeIsolatedDart);
+
+        UnaryOperator<NGMap.Dart> renumbering = ngMap.compact();
+
+        assertEquals(ImmutableSet.of(1, 2, 3, 4, 5),
+                ngMap.darts().stream().map(NGMap.Dart::getId).collect(Collectors.toSet()));
+        assertEquals(null, renumbering.apply(isolated.get(0)));
+        NGMap.Dart d1 = renumbering.apply(edge1.get_1());
+        NGMap.Dart d2 = renumbering.apply(edge1.get_2());
+        NGMap.Dart d3 = renumbering.apply(edge2.get_1());
+        NGMap.Dart d4 = renumbering.apply(edge2.get_2());
+        assertEquals(new NGMap.Dart(1), d1);
+        assertEquals(ImmutableSet.of(d1, d2), ImmutableSet.copyOf(ngMap.iCell(d1, 1)));
+        assertEquals(ImmutableSet.of(d2, d3), ImmutableSet.copyOf(ngMap.iCell(d3, 0)));
+        assertEquals(2, ngMap.linkCount(0));
+        assertEquals(1, ngMap.linkCount(1));
+        assertEquals(Optional.of(new StringAttr(VERTEX_1)), ngMap.getAttribute(d4, 0));
+        assertEquals(Optional.of(new StringAttr(VERTEX_2)), ngMap.getAttribute(d2, 1));
+        assertEquals(d1.getId(), ngMap.cellId(d2, 1));
+        assertEquals(new NGMap.Dart(6), ngMap.addIsolatedDart());
+    }
+
+    @Test
+    public void sewnNGMapIsValid() {
+        NGMap ngMap = NGMap.ngMap(2);
+        ngMap.addNPolygon(4);
+        ngMap.addNPolygon(4);
+        ngMap.sew(new NGMap.Dart(1), new NGMap.Dart(10), 2);
+
+        assertTrue(ngMap.isValid());
+    }
+
+    @Test
+    public void mismatchedAlphasAreInvalid() {
+        ArrayDartStorage storage = ArrayDartStorage.arrayDartStorage();
+        storage.increaseDimension();
+        storage.increaseDimension();
+        for (int dart = 1; dart <= 4; dart++) {
+            storage.addDart(dart);
+        }
+        storage.link(0, 1, 2);
+        storage.link(0, 3, 4);
+        // 1 is 2-sewn to 3, but their alpha_0 images aren't 2-sewn
+        storage.link(2, 1, 3);
+
+        assertFalse(NGMap.ngMap(storage).isValid());
+    }
+
     @Test
     public void removingNonExistentDartAllowed() {
         NGMap ngMap = NGMap.ngMap();
@@ -185,6 +292,19 @@ public class NGMapTest {
         assertEquals(Sets.newHashSet(dart3, dart4), edge2);
     }
 
+    @Test
+    public void addNPolygonReturnsItsEdgesInOrder() {
+        NGMap ngMap = NGMap.ngMap(1);
+
+        List<NGMap.Edge> edges = ngMap.addNPolygon(3);
+
+        assertEquals(3, edges.size());
+        for (int k = 0; k < 3; k++) {
+            assertEquals(Optional.of(edges.get(k).get_2()), ngMap.alpha(edges.get(k).get_1(), 0));
+            assertEquals(Optional.of(edges.get((k + 1) % 3).get_1()), ngMap.alpha(edges.get(k).get_2(), 1));
+        }
+    }
+
     @Test
     public  void create2DManifoldWith4Vertices5EdgesAnd2Faces() {
         NGMap ngMap = NGMap.ngMap(2);
@@ -506,6 +626,386 @@ public class NGMapTest {
 
     }
 
+    @Test
+    public void arrayStorageCubeMatchesDefaultStorage() {
+        NGMap ngMap = NGMap.ngMap(3);
+        NGMap arrayNGMap = NGMap.ngMap(3, ArrayDartStorage.arrayDartStorage());
+        Cube cube = addCube(ngMap);
+        addCube(arrayNGMap);
+
+        assertEquals(ngMap.darts(), arrayNGMap.darts());
+        for (NGMap.Dart dart : ngMap.darts()) {
+            for (int i = 0; i <= 3; i++) {
+                assertEquals(Sets.newHashSet(ngMap.iCell(dart, i)), Sets.newHashSet(arrayNGMap.iCell(dart, i)));
+            }
+        }
+
+        arrayNGMap.unsew(cube.get_1().get_1().get_1(), 2);
+        assertTrue(arrayNGMap.isIFree(cube.get_1().get_1().get_1(), 2));
+        assertTrue(arrayNGMap.isIFree(cube.get_2().get_3().get_2(), 2));
+    }
+
+    @Test
+    public void trySewSewsTheWholeOrbit() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square1 = addSquare(ngMap);
+        Square square2 = addSquare(ngMap);
+
+        assertTrue(ngMap.trySew(square1._1._1, square2._1._2, 2));
+
+        assertTrue(ngMap.iCell(square1._1._1, 1).contains(square2._1._2));
+        assertFalse(ngMap.isIFree(square1._1._2, 2));
+        assertFalse(ngMap.isIFree(square2._1._1, 2));
+    }
+
+    @Test
+    public void trySewLeavesUnsewableDartsUntouched() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square = addSquare(ngMap);
+
+        assertFalse(ngMap.trySew(square._1._1, square._1._2, 2));
+        assertFalse(ngMap.trySew(square._1._1, square._1._1, 2));
+
+        assertTrue(ngMap.isIFree(square._1._1, 2));
+        assertTrue(ngMap.isIFree(square._1._2, 2));
+    }
+
+    @Test
+    public void sewAllBuildsTheSameCube() {
+        NGMap ngMap = NGMap.ngMap(3);
+        NGMap batchNGMap = NGMap.ngMap(3);
+        addCube(ngMap);
+        List<NGMap.Sewing> sewings = Lists.newArrayList();
+        for (int k = 0; k < 6; k++) {
+            batchNGMap.addNPolygon(4);
+        }
+        // addNPolygon adds and 1-sews the darts of a square the same way addSquare does
+        for (NGMap.Dart dart : ngMap.darts()) {
+            NGMap.Dart codart = Iterators.getLast(ngMap.genericIterator(dart, Lists.newArrayList(2)));
+            if (dart.getId() < codart.getId()) {
+                sewings.add(new NGMap.Sewing(dart, codart, 2));
+            }
+        }
+
+        batchNGMap.sewAll(sewings);
+
+        for (NGMap.Dart dart : ngMap.darts()) {
+            assertEquals(Sets.newHashSet(ngMap.iCell(dart, 2)), Sets.newHashSet(batchNGMap.iCell(dart, 2)));
+            assertEquals(Sets.newHashSet(ngMap.iCell(dart, 0)), Sets.newHashSet(batchNGMap.iCell(dart, 0)));
+        }
+    }
+
+    @Test
+    public void sewAllRejectsConflictingSewings() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square1 = addSquare(ngMap);
+        Square square2 = addSquare(ngMap);
+        Square square3 = addSquare(ngMap);
+
+        try {
+            ngMap.sewAll(Lists.newArrayList(
+                    new NGMap.Edge(square1._1._1, square2._1._2),
+                    new NGMap.Edge(square3._1._1, square1._1._2)), 2);
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("differently by another sewing of the batch"));
+            assertTrue(ngMap.isIFree(square1._1._1, 2));
+            assertTrue(ngMap.isIFree(square2._1._2, 2));
+            return;
+        }
+        throw new AssertionError("Conflicting sewings were accepted");
+    }
+
+    @Test
+    public void sewAllUndoesEarlierDimensionsWhenALaterOneFails() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Edge edge1 = addEdge(ngMap);
+        NGMap.Edge edge2 = addEdge(ngMap);
+        Square square = addSquare(ngMap);
+
+        try {
+            ngMap.sewAll(Lists.newArrayList(
+                    new NGMap.Sewing(edge1._2, edge2._1, 1),
+                    new NGMap.Sewing(square._1._1, square._1._2, 2)));
+        } catch (IllegalStateException e) {
+            assertTrue(ngMap.isIFree(edge1._2, 1));
+            assertTrue(ngMap.isIFree(edge2._1, 1));
+            return;
+        }
+        throw new AssertionError("An edge was identified with itself");
+    }
+
+    @Test
+    public void rewireRelinksDartsAndKeepsTheIndexUpToDate() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Edge edge1 = addEdge(ngMap);
+        NGMap.Edge edge2 = addEdge(ngMap);
+        NGMap.Edge edge3 = addEdge(ngMap);
+        ngMap.sew(edge1._1, edge2._1, 2);
+        ngMap.indexCells(1);
+
+        // Swap edge2 for edge3 across edge1
+        ngMap.rewire(
+                Lists.newArrayList(new NGMap.Sewing(edge1._1, edge2._1, 2), new NGMap.Sewing(edge1._2, edge2._2, 2)),
+                Lists.newArrayList(new NGMap.Sewing(edge1._1, edge3._2, 2), new NGMap.Sewing(edge1._2, edge3._1, 2)));
+        assertTrue(ngMap.isValid());
+        assertEquals(edge3._2, ngMap.alpha(edge1._1, 2).get());
+        assertTrue(ngMap.isIFree(edge2._1, 2));
+        assertEquals(ngMap.cellId(edge1._1, 1), ngMap.cellId(edge3._1, 1));
+        assertEquals(edge2._1.getId(), ngMap.cellId(edge2._2, 1));
+    }
+
+    @Test
+    public void rewireLeavesTheNGMapUntouchedWhenItWouldBreakIt() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Edge edge1 = addEdge(ngMap);
+        NGMap.Edge edge2 = addEdge(ngMap);
+
+        try {
+            // alpha_0 alpha_2 wouldn't be an involution with only one pair of the edges linked
+            ngMap.rewire(Lists.newArrayList(), Lists.newArrayList(new NGMap.Sewing(edge1._1, edge2._1, 2)));
+        } catch (IllegalStateException e) {
+            assertTrue(ngMap.isIFree(edge1._1, 2));
+            assertEquals(edge1._2, ngMap.alpha(edge1._1, 0).get());
+            assertTrue(ngMap.isValid());
+            return;
+        }
+        throw new AssertionError("A rewiring breaking the involutions was accepted");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantRewireUnlinkedDarts() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Edge edge1 = addEdge(ngMap);
+        NGMap.Edge edge2 = addEdge(ngMap);
+
+        ngMap.rewire(Lists.newArrayList(new NGMap.Sewing(edge1._1, edge2._1, 1)), Lists.newArrayList());
+    }
+
+    @Test
+    public void rollbackUndoesEveryChangeSinceBegin() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square = addSquare(ngMap);
+        NGMap.Edge edge = addEdge(ngMap);
+        ngMap.removeIsolatedDart(ngMap.addIsolatedDart());
+        ngMap.indexCells(0);
+        Set<NGMap.Dart> darts = ImmutableSet.copyOf(ngMap.darts());
+        int nextId = ngMap.nextId();
+
+        ngMap.begin();
+        ngMap.unsew(square._1._1, 1);
+        ngMap.sew(square._1._1, edge._1, 1);
+        ngMap.unsew(edge._1, 0);
+        ngMap.removeIsolatedDart(edge._2);
+        NGMap.Edge added = addEdge(ngMap);
+        ngMap.unsew(added._1, 0);
+        ngMap.sew(added._1, edge._1, 0);
+        addEdge(ngMap);
+        ngMap.rollback();
+
+        assertFalse(ngMap.inTransaction());
+        assertTrue(ngMap.isValid());
+        assertEquals(darts, ImmutableSet.copyOf(ngMap.darts()));
+        assertEquals(nextId, ngMap.nextId());
+        assertEquals(square._4._2, ngMap.alpha(square._1._1, 1).get());
+        assertEquals(edge._2, ngMap.alpha(edge._1, 0).get());
+        assertTrue(ngMap.isIFree(edge._1, 1));
+        assertEquals(8, ngMap.iCell(square._1._1, 2).size());
+        assertEquals(square._1._1.getId(), ngMap.cellId(square._4._2, 0));
+        // The dart removed before the transaction is still the first id reused
+        assertEquals(nextId - 1, ngMap.addIsolatedDart().getId());
+    }
+
+    @Test
+    public void rollbackRestoresAttributesOfMergedCells() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Edge edge1 = addEdge(ngMap);
+        NGMap.Edge edge2 = addEdge(ngMap);
+        ngMap.putAttribute(edge1._2, 0, new StringAttr(VERTEX_1));
+        ngMap.putAttribute(edge2._1, 0, new StringAttr(VERTEX_2));
+
+        ngMap.begin();
+        // The merged vertex keeps only the first attribute
+        ngMap.sew(edge1._2, edge2._1, 1);
+        ngMap.putAttribute(edge1._1, 0, new StringAttr(VERTEX_3));
+        ngMap.rollback();
+
+        assertEquals(new StringAttr(VERTEX_1), ngMap.getAttribute(edge1._2, 0).get());
+        assertEquals(new StringAttr(VERTEX_2), ngMap.getAttribute(edge2._1, 0).get());
+        assertEquals(Optional.empty(), ngMap.getAttribute(edge1._1, 0));
+    }
+
+    @Test
+    public void commitKeepsChanges() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Edge edge1 = addEdge(ngMap);
+        NGMap.Edge edge2 = addEdge(ngMap);
+
+        ngMap.begin();
+        ngMap.sew(edge1._2, edge2._1, 1);
+        ngMap.commit();
+
+        assertFalse(ngMap.inTransaction());
+        assertEquals(edge2._1, ngMap.alpha(edge1._2, 1).get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantRollbackWithoutTransaction() {
+        NGMap.ngMap(2).rollback();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantCompactWithinTransaction() {
+        NGMap ngMap = NGMap.ngMap(2);
+        ngMap.begin();
+        ngMap.compact();
+    }
+
+    @Test
+    public void cellCountsFollowSewAndUnsew() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square = addSquare(ngMap);
+
+        assertEquals(4, ngMap.cellCount(0));
+        assertEquals(4, ngMap.cellCount(1));
+        assertEquals(1, ngMap.cellCount(2));
+        assertEquals(1, ngMap.eulerCharacteristic());
+        assertEquals(8, ngMap.freeDartCount(2));
+
+        ngMap.unsew(square._1._1, 1);
+        assertEquals(5, ngMap.cellCount(0));
+        ngMap.addIsolatedDart();
+        assertEquals(6, ngMap.cellCount(0));
+        assertEquals(5, ngMap.cellCount(1));
+        assertEquals(2, ngMap.cellCount(2));
+        assertEquals(3, ngMap.eulerCharacteristic());
+    }
+
+    @Test
+    public void unsewingLastLinkOfDartKeepsItCounted() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Dart dart1 = ngMap.addIsolatedDart();
+        NGMap.Dart dart2 = ngMap.addIsolatedDart();
+        assertEquals(2, ngMap.cellCount(0));
+
+        // Once unlinked in every alpha, the darts must still be found by the cell index
+        for (int i = 0; i <= 2; i++) {
+            ngMap.sew(dart1, dart2, i);
+            ngMap.unsew(dart1, i);
+        }
+        assertEquals(2, ngMap.cellCount(0));
+        assertEquals(2, ngMap.componentCount());
+        assertEquals(2, ngMap.cells(0).count());
+    }
+
+    @Test
+    public void componentCountFollowsSewAndUnsew() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square1 = addSquare(ngMap);
+        Square square2 = addSquare(ngMap);
+        assertEquals(2, ngMap.componentCount());
+
+        ngMap.sew(square1._1._1, square2._1._1, 2);
+        assertEquals(1, ngMap.componentCount());
+        // Opening a corner leaves the squares whole
+        ngMap.unsew(square1._2._1, 1);
+        assertEquals(1, ngMap.componentCount());
+        ngMap.unsew(square1._1._1, 2);
+        assertEquals(2, ngMap.componentCount());
+
+        NGMap.Dart dart = ngMap.addIsolatedDart();
+        assertEquals(3, ngMap.componentCount());
+        ngMap.removeIsolatedDart(dart);
+        assertEquals(2, ngMap.componentCount());
+    }
+
+    @Test
+    public void countsMatchTraversalsThroughRandomEdits() {
+        Random random = new Random(42);
+        NGMap ngMap = NGMap.ngMap(2);
+        for (int k = 0; k < 6; k++) {
+            ngMap.addNPolygon(3 + random.nextInt(3));
+        }
+        ngMap.componentCount();
+        ngMap.eulerCharacteristic();
+
+        for (int step = 0; step < 400; step++) {
+            List<NGMap.Dart> darts = Lists.newArrayList(ngMap.darts());
+            NGMap.Dart dart = darts.get(random.nextInt(darts.size()));
+            int i = random.nextInt(3);
+            switch (random.nextInt(6)) {
+                case 0:
+                    ngMap.unsew(dart, i);
+                    break;
+                case 1:
+                    if (ngMap.isIsolated(dart)) {
+                        ngMap.removeIsolatedDart(dart);
+                    } else {
+                        ngMap.addIsolatedDart();
+                    }
+                    break;
+                case 2:
+                    if (ngMap.inTransaction()) {
+                        ngMap.rollback();
+                    } else {
+                        ngMap.begin();
+                    }
+                    break;
+                default:
+                    ngMap.trySew(dart, darts.get(random.nextInt(darts.size())), i);
+            }
+            for (int j = 0; j <= 2; j++) {
+                assertEquals(ngMap.cells(j).count(), ngMap.cellCount(j));
+            }
+            assertEquals(countComponents(ngMap), ngMap.componentCount());
+        }
+    }
+
+    private static int countComponents(NGMap ngMap) {
+        Set<NGMap.Dart> visited = Sets.newHashSet();
+        int components = 0;
+        for (NGMap.Dart dart : ngMap.darts()) {
+            if (visited.add(dart)) {
+                components++;
+                Iterators.addAll(visited, ngMap.genericIterator(dart, Lists.newArrayList(0, 1, 2)));
+            }
+        }
+        return components;
+    }
+
+    @Test
+    public void cellsEnumeratesEachCellOnce() {
+        NGMap ngMap = NGMap.ngMap(3);
+        addCube(ngMap);
+        int[] counts = {8, 12, 6, 1};
+
+        for (int i = 0; i <= 3; i++) {
+            List<List<NGMap.Dart>> cells = ngMap.cells(i).collect(Collectors.toList());
+            assertEquals(counts[i], cells.size());
+            assertEquals(ngMap.darts(), cells.stream().flatMap(List::stream).collect(Collectors.toSet()));
+            for (List<NGMap.Dart> cell : cells) {
+                assertEquals(Sets.newHashSet(ngMap.iCell(cell.get(0), i)), Sets.newHashSet(cell));
+            }
+        }
+    }
+
+    @Test
+    public void parallelCellsMatchSequentialCells() {
+        NGMap ngMap = NGMap.ngMap(1, ArrayDartStorage.arrayDartStorage());
+        for (int k = 0; k < 1000; k++) {
+            ngMap.addNPolygon(k % 7 + 1);
+        }
+
+        Set<Set<NGMap.Dart>> sequential = ngMap.cells(0).map(Sets::newHashSet).collect(Collectors.toSet());
+        List<Set<NGMap.Dart>> parallel = ngMap.cells(0).parallel().map(Sets::newHashSet).collect(Collectors.toList());
+        ngMap.indexCells(0);
+        List<Set<NGMap.Dart>> indexed = ngMap.cells(0).parallel().map(Sets::newHashSet).collect(Collectors.toList());
+
+        assertEquals(sequential.size(), parallel.size());
+        assertEquals(sequential, Sets.newHashSet(parallel));
+        assertEquals(sequential.size(), indexed.size());
+        assertEquals(sequential, Sets.newHashSet(indexed));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void cantIdentifyEdgeWithItself() {
         NGMap ngMap = NGMap.ngMap(2);
@@ -623,6 +1123,76 @@ public class NGMapTest {
         intNGMap.putAttribute(square._4._2, 0, new StringAttr(VERTEX_1));
     }
 
+    @Test
+    public void indexedCellIdsFollowSewAndUnsew() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square = addSquare(ngMap);
+        ngMap.indexCells(0);
+        ngMap.indexCells(2);
+
+        for (NGMap.Dart dart : ngMap.darts()) {
+            for (int i = 0; i <= 2; i++) {
+                int min = ngMap.iCell(dart, i).stream().mapToInt(NGMap.Dart::getId).min().getAsInt();
+                assertEquals(min, ngMap.cellId(dart, i));
+            }
+        }
+
+        ngMap.unsew(square._1._1, 1);
+        assertEquals(square._1._1.getId(), ngMap.cellId(square._1._1, 0));
+        assertEquals(square._4._2.getId(), ngMap.cellId(square._4._2, 0));
+        assertEquals(ngMap.cellId(square._1._1, 2), ngMap.cellId(square._4._2, 2));
+
+        ngMap.sew(square._1._1, square._4._2, 1);
+        assertEquals(ngMap.cellId(square._1._1, 0), ngMap.cellId(square._4._2, 0));
+    }
+
+    @Test
+    public void indexedAttributesFollowSewAndUnsew() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square = addSquare(ngMap);
+        ngMap.putAttribute(square._4._2, 0, new StringAttr(VERTEX_1));
+        ngMap.indexCells(0);
+
+        assertTrue(ngMap.isIndexed(0));
+        assertEquals(new StringAttr(VERTEX_1), ngMap.getAttribute(square._1._1, 0).get());
+
+        // Both halves of a split vertex keep its attribute
+        ngMap.unsew(square._1._1, 1);
+        assertEquals(new StringAttr(VERTEX_1), ngMap.getAttribute(square._1._1, 0).get());
+        assertEquals(new StringAttr(VERTEX_1), ngMap.getAttribute(square._4._2, 0).get());
+
+        ngMap.removeAttribute(square._4._2, 0);
+        ngMap.sew(square._1._1, square._4._2, 1);
+        assertEquals(new StringAttr(VERTEX_1), ngMap.getAttribute(square._4._2, 0).get());
+
+        ngMap.removeAttribute(square._1._1, 0);
+        assertEquals(Optional.empty(), ngMap.getAttribute(square._4._2, 0));
+    }
+
+    @Test
+    public void mergingAttributedCellsKeepsTheAttributeOfTheSmallerId() {
+        NGMap ngMap = NGMap.ngMap(2);
+        Square square = addSquare(ngMap);
+        ngMap.unsew(square._1._1, 1);
+        ngMap.putAttribute(square._1._1, 0, new StringAttr(VERTEX_1));
+        ngMap.putAttribute(square._4._2, 0, new StringAttr(VERTEX_2));
+
+        ngMap.sew(square._1._1, square._4._2, 1);
+
+        String kept = square._1._1.getId() < square._4._2.getId() ? VERTEX_1 : VERTEX_2;
+        assertEquals(new StringAttr(kept), ngMap.getAttribute(square._4._2, 0).get());
+    }
+
+    @Test
+    public void attributeOfAbsentDartIsEmpty() {
+        NGMap ngMap = NGMap.ngMap(2);
+        NGMap.Dart dart = ngMap.addIsolatedDart();
+        ngMap.removeIsolatedDart(dart);
+
+        assertEquals(Optional.empty(), ngMap.getAttribute(dart, 0));
+        assertFalse(ngMap.isIndexed(0));
+    }
+
     @Value
     private static class StringAttr implements Attribute {
         private final String string;
@@ -0,0 +1,59 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrbitTraversalTest {
+
+    private ArrayDartStorage storage;
+    private OrbitTraversal traversal;
+
+    /*
+     * A square face: darts 1..8 where alpha_0 pairs (1,2) (3,4) (5,6) (7,8) and alpha_1 pairs (2,3) (4,5) (6,7) (8,1)
+     */
+    @Before
+    public void before() {
+        storage = ArrayDartStorage.arrayDartStorage();
+        storage.increaseDimension();
+        for (int dart = 1; dart <= 8; dart++) {
+            storage.addDart(dart);
+        }
+        for (int dart = 1; dart <= 8; dart += 2) {
+            storage.link(0, dart, dart + 1);
+            storage.link(1, dart + 1, (dart + 1) % 8 + 1);
+        }
+        traversal = new OrbitTraversal();
+    }
+
+    @Test
+    public void visitsInBreadthFirstOrder() {
+        assertEquals(8, traversal.traverse(storage, 1, new int[] {0, 1}));
+
+        assertArrayEquals(new int[] {1, 2, 8, 3, 7, 4, 6, 5}, traversal.toArray());
+        assertEquals(0, traversal.position(1));
+        assertEquals(7, traversal.position(5));
+    }
+
+    @Test
+    public void restrictsToGivenAlphas() {
+        assertEquals(2, traversal.traverse(storage, 3, new int[] {0}));
+
+        assertArrayEquals(new int[] {3, 4}, traversal.toArray());
+    }
+
+    @Test
+    public void reuseForgetsPreviousMarks() {
+        traversal.traverse(storage, 1, new int[] {0, 1});
+        traversal.traverse(storage, 5, new int[] {1});
+
+        assertArrayEquals(new int[] {5, 4}, traversal.toArray());
+        assertTrue(traversal.visited(4));
+        assertFalse(traversal.visited(1));
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentDartStorageTest {
+
+    private PersistentDartStorage storage;
+
+    @Before
+    public void before() {
+        storage = PersistentDartStorage.persistentDartStorage();
+        storage.increaseDimension();
+        storage.addDart(1);
+        storage.addDart(2);
+        storage.addDart(2000);
+    }
+
+    @Test
+    public void linkIsSymmetricAndUnlinkRemovesBothSides() {
+        storage.link(1, 1, 2000);
+        assertEquals(2000, storage.alpha(1, 1));
+        assertEquals(1, storage.alpha(1, 2000));
+
+        storage.unlink(1, 2000);
+        assertEquals(DartStorage.FREE, storage.alpha(1, 1));
+        assertEquals(DartStorage.FREE, storage.alpha(1, 2000));
+    }
+
+    @Test
+    public void forEachDartVisitsEveryDart() {
+        Set<Integer> darts = new HashSet<>();
+        storage.forEachDart(darts::add);
+
+        assertEquals(Sets.newHashSet(1, 2, 2000), darts);
+    }
+
+    @Test
+    public void snapshotKeepsItsVersion() {
+        storage.link(0, 1, 2);
+        DartStorage snapshot = storage.snapshot();
+
+        storage.unlink(0, 1);
+        storage.link(1, 1, 2);
+        storage.removeDart(2000);
+        storage.addDart(3);
+
+        assertEquals(2, snapshot.alpha(0, 1));
+        assertEquals(DartStorage.FREE, snapshot.alpha(1, 1));
+        assertTrue(snapshot.containsDart(2000));
+        assertFalse(snapshot.containsDart(3));
+        assertEquals(DartStorage.FREE, storage.alpha(0, 1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsReadOnly() {
+        storage.snapshot().addDart(4);
+    }
+
+    @Test
+    public void copyOfKeepsDartsLinksAndCounts() {
+        InvolutionDartStorage source = InvolutionDartStorage.involutionDartStorage();
+        source.increaseDimension();
+        source.addDart(1);
+        source.addDart(2);
+        source.addDart(3);
+        source.link(1, 1, 3);
+
+        PersistentDartStorage copy = PersistentDartStorage.copyOf(source);
+
+        assertEquals(1, copy.dimension());
+        assertEquals(3, copy.alpha(1, 1));
+        assertEquals(1, copy.alpha(1, 3));
+        assertEquals(DartStorage.FREE, copy.alpha(0, 2));
+        assertEquals(1, copy.linkCount(1));
+        assertEquals(0, copy.linkCount(0));
+        assertTrue(copy.containsDart(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantDecreaseDimensionWithLinks() {
+        storage.link(1, 1, 2);
+
+        storage.decreaseDimension();
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SewingPlanTest {
+
+    @Test
+    public void keepsPairsInOrder() {
+        SewingPlan plan = new SewingPlan(2);
+
+        assertTrue(plan.add(1, 40));
+        assertTrue(plan.add(3, 2));
+
+        assertEquals(2, plan.dimension());
+        assertEquals(2, plan.size());
+        assertEquals(1, plan.dart(0));
+        assertEquals(40, plan.codart(0));
+        assertEquals(3, plan.dart(1));
+        assertEquals(2, plan.codart(1));
+    }
+
+    @Test
+    public void repeatedPairIsLetThroughOnce() {
+        SewingPlan plan = new SewingPlan(0);
+        plan.add(1, 2);
+
+        assertTrue(plan.add(2, 1));
+        assertEquals(1, plan.size());
+    }
+
+    @Test
+    public void dartCantBeClaimedForAnotherPartner() {
+        SewingPlan plan = new SewingPlan(0);
+        plan.add(1, 2);
+
+        assertFalse(plan.add(3, 2));
+        assertFalse(plan.add(1, 4));
+        assertEquals(1, plan.size());
+    }
+
+    @Test
+    public void largeIdsAreClaimedWithoutGrowingToThem() {
+        SewingPlan plan = new SewingPlan(1);
+
+        assertTrue(plan.add(Integer.MAX_VALUE - 1, 1));
+        assertFalse(plan.add(2, Integer.MAX_VALUE - 1));
+        assertEquals(Integer.MAX_VALUE - 1, plan.dart(0));
+    }
+
+}
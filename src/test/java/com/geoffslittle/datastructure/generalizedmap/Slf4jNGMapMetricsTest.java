@@ -0,0 +1,80 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Slf4jNGMapMetricsTest {
+
+    private NGMap ngMap;
+    private Slf4jNGMapMetrics metrics;
+
+    @Before
+    public void before() {
+        ngMap = NGMap.ngMap(2);
+        metrics = Slf4jNGMapMetrics.slf4jNGMapMetrics(LoggerFactory.getLogger(Slf4jNGMapMetricsTest.class), 4);
+        ngMap.setMetrics(metrics);
+    }
+
+    @Test
+    public void recordsSewsAndRejections() {
+        ngMap.addNPolygon(4);
+        ngMap.addNPolygon(4);
+        // Each square sews its 4 edges and then links them at its 4 corners
+        assertEquals(16, metrics.calls(NGMapMetrics.Operation.SEW));
+
+        // Sewing two squares along an edge links both darts of the edge
+        ngMap.sew(new NGMap.Dart(1), new NGMap.Dart(10), 2);
+        assertEquals(17, metrics.calls(NGMapMetrics.Operation.SEW));
+        assertEquals(2, metrics.maxOrbitSize(NGMapMetrics.Operation.SEW));
+
+        assertEquals(false, ngMap.trySew(new NGMap.Dart(1), new NGMap.Dart(12), 2));
+        assertEquals(false, ngMap.isSewable(new NGMap.Dart(1), new NGMap.Dart(12), 2));
+        assertEquals(1, metrics.rejections(NGMapMetrics.Operation.SEW));
+        assertEquals(1, metrics.rejections(NGMapMetrics.Operation.IS_SEWABLE));
+        assertEquals(1, metrics.calls(NGMapMetrics.Operation.IS_SEWABLE));
+
+        ngMap.unsew(new NGMap.Dart(1), 2);
+        assertEquals(1, metrics.calls(NGMapMetrics.Operation.UNSEW));
+        assertEquals(2, metrics.maxOrbitSize(NGMapMetrics.Operation.UNSEW));
+        metrics.report();
+    }
+
+    @Test
+    public void recordsTraversalsAndAttributes() {
+        ngMap.addNPolygon(6);
+        ngMap.iCell(new NGMap.Dart(1), 2);
+        ngMap.putAttribute(new NGMap.Dart(1), 2, new Attribute() { });
+        ngMap.getAttribute(new NGMap.Dart(2), 2);
+        ngMap.removeAttribute(new NGMap.Dart(3), 2);
+
+        assertEquals(12, metrics.maxOrbitSize(NGMapMetrics.Operation.I_CELL));
+        assertEquals(1, metrics.calls(NGMapMetrics.Operation.PUT_ATTRIBUTE));
+        assertEquals(1, metrics.calls(NGMapMetrics.Operation.GET_ATTRIBUTE));
+        assertEquals(1, metrics.calls(NGMapMetrics.Operation.REMOVE_ATTRIBUTE));
+        metrics.report();
+    }
+
+    @Test
+    public void orbitQuantilesAreWithinAFactorOfTwo() {
+        for (int darts = 1; darts <= 100; darts++) {
+            metrics.recordOrbitSize(NGMapMetrics.Operation.I_CELL, darts);
+        }
+        long median = metrics.orbitSizeQuantile(NGMapMetrics.Operation.I_CELL, 0.5);
+        assertTrue(50 <= median && median < 100);
+        assertEquals(100, metrics.orbitSizeQuantile(NGMapMetrics.Operation.I_CELL, 1));
+    }
+
+    @Test
+    public void noopRecordsNothing() {
+        ngMap.setMetrics(NGMapMetrics.NOOP);
+        ngMap.addEdge();
+
+        assertEquals(0, metrics.calls(NGMapMetrics.Operation.SEW));
+    }
+
+}
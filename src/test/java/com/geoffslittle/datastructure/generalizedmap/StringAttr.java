@@ -0,0 +1,28 @@
+package com.geoffslittle.datastructure.generalizedmap;
+
+import com.geoffslittle.datastructure.maps.Attribute;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A string attribute shared by the tests which persist attributes, along with its UTF-8 codec
+ */
+@Value
+class StringAttr implements Attribute {
+
+    static final AttributeCodec CODEC = new AttributeCodec() {
+        @Override
+        public byte[] encode(Attribute attribute) {
+            return ((StringAttr) attribute).getString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Attribute decode(byte[] bytes) {
+            return new StringAttr(new String(bytes, StandardCharsets.UTF_8));
+        }
+    };
+
+    private final String string;
+
+}
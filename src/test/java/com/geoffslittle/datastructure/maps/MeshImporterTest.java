@@ -0,0 +1,168 @@
+package com.geoffslittle.datastructure.maps;
+
+import com.geoffslittle.datastructure.generalizedmap.NGMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MeshImporterTest {
+
+    private static final String TETRAHEDRON_OBJ = "# a tetrahedron\n"
+            + "o tetrahedron\n"
+            + "v 0 0 0\n"
+            + "v 1.5 0 0\r\n"
+            + "v 0 -2.25e0 0\n"
+            + "\n"
+            + "vt 0.5 0.5\n"
+            + "v 0 0 1E-1 1.0\n"
+            + "f 1/1 2/1 3/1\n"
+            + "f 1//1 4//1 2//1\n"
+            + "f -3 -1 -2 # relative indices\n"
+            + "f 3 4 1";
+
+    private static final String CUBE_OFF = "OFF\n"
+            + "# a cube\n"
+            + "8 6 12\n"
+            + "0 0 0\n1 0 0\n1 1 0\n0 1 0\n"
+            + "0 0 1\n1 0 1\n1 1 1\n0 1 1\n"
+            + "4 0 3 2 1\n"
+            + "4 4 5 6 7\n"
+            + "4 0 1 5 4 255 0 0\n"
+            + "4 1 2 6 5\n"
+            + "4 2 3 7 6\n"
+            + "4 3 0 4 7\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String name, String contents) throws IOException {
+        Path path = folder.getRoot().toPath().resolve(name);
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Test
+    public void importsObj() throws IOException {
+        NGMap ngMap = MeshImporter.importMesh(write("tetrahedron.obj", TETRAHEDRON_OBJ)).ngMap();
+
+        assertEquals(24, ngMap.dartCount());
+        assertEquals(0, ngMap.freeDartCount(2));
+        assertEquals(4, ngMap.cells(0).count());
+        assertEquals(positions(new Position(0, 0, 0), new Position(1.5, 0, 0), new Position(0, -2.25, 0),
+                new Position(0, 0, 0.1)), positions(ngMap));
+    }
+
+    @Test
+    public void importsOff() throws IOException {
+        NGMap ngMap = MeshImporter.importMesh(write("cube.off", CUBE_OFF)).ngMap();
+
+        assertEquals(48, ngMap.dartCount());
+        assertEquals(0, ngMap.freeDartCount(2));
+        assertEquals(8, ngMap.cells(0).count());
+        assertEquals(12, ngMap.cells(1).count());
+        assertEquals(6, ngMap.cells(2).count());
+        assertEquals(8, positions(ngMap).size());
+    }
+
+    @Test
+    public void tinyBuffersAndBatchesGiveTheSameMap() throws IOException {
+        Path path = write("cube.off", CUBE_OFF);
+        NGMap ngMap = MeshImporter.importMesh(path, MeshImporter.Format.OFF, 3, 6).ngMap();
+
+        assertEquals(48, ngMap.dartCount());
+        assertEquals(0, ngMap.freeDartCount(2));
+        assertEquals(positions(MeshImporter.importOff(path).ngMap()), positions(ngMap));
+    }
+
+    @Test
+    public void importsLargeGrid() throws IOException {
+        int side = 300;
+        StringBuilder obj = new StringBuilder();
+        for (int row = 0; row <= side; row++) {
+            for (int column = 0; column <= side; column++) {
+                obj.append("v ").append(column * 0.25).append(' ').append(row * 0.25).append(" 0\n");
+            }
+        }
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int v = row * (side + 1) + column + 1;
+                obj.append("f ").append(v).append(' ').append(v + 1).append(' ').append(v + side + 2).append(' ')
+                        .append(v + side + 1).append('\n');
+            }
+        }
+        NGMap ngMap = MeshImporter.importObj(write("grid.obj", obj.toString())).ngMap();
+
+        assertEquals(8 * side * side, ngMap.dartCount());
+        // Only the darts on the border of the grid are 2-free
+        assertEquals(8 * side, ngMap.freeDartCount(2));
+        assertEquals((side + 1) * (side + 1), positions(ngMap).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void malformedObjFails() throws IOException {
+        MeshImporter.importObj(write("bad.obj", "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 x 3\n"));
+    }
+
+    @Test
+    public void objFaceIndexOutOfRangeFailsWithItsLine() throws IOException {
+        Path bad = write("bad.obj", "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n# comment\nf 1 2 4\n");
+        try {
+            MeshImporter.importObj(bad);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Vertex index out of range on line 6", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void negativeObjFaceIndexOutOfRangeFails() throws IOException {
+        MeshImporter.importObj(write("bad.obj", "v 0 0 0\nv 1 0 0\nv 0 1 0\nf -1 -2 -4\n"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void offFaceIndexOutOfRangeFails() throws IOException {
+        MeshImporter.importOff(write("bad.off", "OFF\n3 1 3\n0 0 0\n1 0 0\n0 1 0\n3 0 1 3\n"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void truncatedOffFails() throws IOException {
+        MeshImporter.importOff(write("bad.off", "OFF\n3 1 3\n0 0 0\n1 0 0\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownExtensionFails() throws IOException {
+        MeshImporter.importMesh(write("mesh.ply", ""));
+    }
+
+    private static Set<Position> positions(Position... positions) {
+        Set<Position> set = new HashSet<>();
+        for (Position position : positions) {
+            set.add(position);
+        }
+        return set;
+    }
+
+    private static Set<Position> positions(NGMap ngMap) {
+        List<List<NGMap.Dart>> vertices = ngMap.cells(0).collect(Collectors.toList());
+        Set<Position> positions = new HashSet<>();
+        for (List<NGMap.Dart> vertex : vertices) {
+            ngMap.getAttribute(vertex.get(0), 0).ifPresent(attribute -> positions.add((Position) attribute));
+        }
+        assertTrue(positions.size() <= vertices.size());
+        return positions;
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.geoffslittle.datastructure.maps;
 
+import com.geoffslittle.datastructure.generalizedmap.NGMap;
 import lombok.Value;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TwoGMapTest {
 
@@ -21,7 +24,7 @@ public class TwoGMapTest {
         TwoGMap twoGMap = TwoGMap.twoGMap();
 
         TwoGMap.Vertex vertex = twoGMap.addVertex();
-        assertEquals(vertex.getDarts(), twoGMap.ngMap().iCell(vertex.getDarts().get(0), 0));
+        assertEquals(twoGMap.darts(vertex), twoGMap.ngMap().iCell(vertex.dart(), 0));
     }
 
     @Test
@@ -31,7 +34,7 @@ public class TwoGMapTest {
         TwoGMap.Vertex vertex1 = twoGMap.addVertex();
         TwoGMap.Vertex vertex2 = twoGMap.addVertex();
 
-        assertEquals(vertex.getDarts(), twoGMap.ngMap().iCell(vertex.getDarts().get(0), 0));
+        assertEquals(twoGMap.darts(vertex), twoGMap.ngMap().iCell(vertex.dart(), 0));
     }
 
     @Test
@@ -59,6 +62,265 @@ public class TwoGMapTest {
         twoGMap.addEdgeAttribute(edge4, new StringAttr(EDGE_4));
     }
 
+    @Test
+    public void hubVertexTakesOneDartChainPerEdge() {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex hub = twoGMap.addVertex();
+        for (int k = 0; k < 300; k++) {
+            twoGMap.addEdge(hub, twoGMap.addVertex());
+        }
+
+        NGMap ngMap = twoGMap.ngMap();
+        assertEquals(1 + 2 * 300, ngMap.iCell(hub.dart(), 0).size());
+        assertEquals(301 + 4 * 300, ngMap.dartCount());
+        assertEquals(301, ngMap.cells(0).count());
+        // Every anchor is a 1-cell of its own besides the edges
+        assertEquals(301 + 300, ngMap.cells(1).count());
+        assertTrue(ngMap.isValid());
+    }
+
+    @Test
+    public void removingEdgeKeepsTheOtherEdgesAtTheVertex() {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex hub = twoGMap.addVertex();
+        TwoGMap.Vertex vertex1 = twoGMap.addVertex();
+        TwoGMap.Vertex vertex2 = twoGMap.addVertex();
+        TwoGMap.Vertex vertex3 = twoGMap.addVertex();
+        twoGMap.addEdge(hub, vertex1);
+        TwoGMap.Edge middle = twoGMap.addEdge(hub, vertex2);
+        twoGMap.addEdge(hub, vertex3);
+
+        twoGMap.removeEdge(middle);
+        NGMap ngMap = twoGMap.ngMap();
+        assertEquals(5, ngMap.iCell(hub.dart(), 0).size());
+        assertEquals(1, ngMap.iCell(vertex2.dart(), 0).size());
+        assertTrue(ngMap.isValid());
+
+        // The hub's chain is still open at its end
+        twoGMap.addEdge(hub, vertex2);
+        assertEquals(7, ngMap.iCell(hub.dart(), 0).size());
+    }
+
+    @Test
+    public void removingLastEdgeReopensTheChain() {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex vertex1 = twoGMap.addVertex();
+        TwoGMap.Vertex vertex2 = twoGMap.addVertex();
+        TwoGMap.Edge edge = twoGMap.addEdge(vertex1, vertex2);
+        twoGMap.removeEdge(edge);
+
+        assertEquals(2, twoGMap.ngMap().dartCount());
+        twoGMap.addEdge(vertex1, vertex2);
+        assertEquals(6, twoGMap.ngMap().dartCount());
+        assertTrue(twoGMap.ngMap().isValid());
+    }
+
+    @Test
+    public void removingVertexRemovesItsEdges() {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex hub = twoGMap.addVertex();
+        TwoGMap.Vertex vertex1 = twoGMap.addVertex();
+        TwoGMap.Vertex vertex2 = twoGMap.addVertex();
+        twoGMap.addEdge(hub, vertex1);
+        twoGMap.addEdge(vertex2, hub);
+        twoGMap.addEdge(hub, hub);
+        twoGMap.addEdge(vertex1, vertex2);
+
+        twoGMap.removeVertex(hub);
+        NGMap ngMap = twoGMap.ngMap();
+        assertEquals(2 + 4, ngMap.dartCount());
+        assertEquals(3, ngMap.iCell(vertex1.dart(), 0).size());
+        assertTrue(ngMap.isValid());
+    }
+
+    @Test
+    public void removedHandlesAreStaleEvenOnceTheirIdsAreReused() {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex vertex1 = twoGMap.addVertex();
+        TwoGMap.Vertex vertex2 = twoGMap.addVertex();
+        TwoGMap.Edge edge = twoGMap.addEdge(vertex1, vertex2);
+        assertEquals(4, twoGMap.darts(edge).size());
+        twoGMap.removeEdge(edge);
+        twoGMap.removeVertex(vertex2);
+
+        assertFalse(twoGMap.contains(edge));
+        assertFalse(twoGMap.contains(vertex2));
+        // The new vertex and edge reuse the removed ids
+        TwoGMap.Vertex vertex3 = twoGMap.addVertex();
+        TwoGMap.Edge loop = twoGMap.addEdge(vertex1, vertex3);
+        assertEquals(vertex2.getId(), vertex3.getId());
+        assertFalse(twoGMap.contains(vertex2));
+        assertTrue(twoGMap.contains(vertex3));
+        assertTrue(twoGMap.contains(loop));
+        assertFalse(twoGMap.contains(edge));
+    }
+
+    @Test
+    public void compactingKeepsVerticesAndEdgesWithTheirDarts() {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex removed = twoGMap.addVertex();
+        TwoGMap.Vertex vertex1 = twoGMap.addVertex();
+        TwoGMap.Vertex vertex2 = twoGMap.addVertex();
+        TwoGMap.Edge edge = twoGMap.addEdge(vertex1, vertex2);
+        twoGMap.addEdge(removed, vertex1);
+        twoGMap.removeVertex(removed);
+
+        TwoGMap.Compaction compaction = twoGMap.compact();
+        TwoGMap.Vertex renumbered1 = compaction.vertex(vertex1);
+        TwoGMap.Vertex renumbered2 = compaction.vertex(vertex2);
+        TwoGMap.Edge renumberedEdge = compaction.edge(edge);
+
+        assertEquals(6, twoGMap.ngMap().dartCount());
+        assertFalse(twoGMap.contains(vertex2));
+        assertFalse(twoGMap.contains(edge));
+        assertEquals(compaction.dart(vertex1.dart()), renumbered1.dart());
+        assertEquals(4, twoGMap.darts(renumberedEdge).size());
+        // Adding an edge sews it to the renumbered end of each vertex's chain
+        twoGMap.addEdge(renumbered1, renumbered2);
+        assertEquals(5, twoGMap.darts(renumbered1).size());
+        assertEquals(5, twoGMap.darts(renumbered2).size());
+        assertTrue(twoGMap.ngMap().isValid());
+        // The ids freed by the compaction are reused without reviving handles from before
+        TwoGMap.Vertex vertex3 = twoGMap.addVertex();
+        assertFalse(twoGMap.contains(removed));
+        assertTrue(twoGMap.contains(vertex3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void removedVertexCantBeRenumbered() {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex vertex = twoGMap.addVertex();
+        twoGMap.addVertex();
+        twoGMap.removeVertex(vertex);
+
+        twoGMap.compact().vertex(vertex);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void removingRemovedVertexThrows() {
+        TwoGMap twoGMap = TwoGMap.twoGMap();
+        TwoGMap.Vertex vertex = twoGMap.addVertex();
+        twoGMap.removeVertex(vertex);
+        twoGMap.removeVertex(vertex);
+    }
+
+    @Test
+    public void canBuildFromFaces() {
+        TwoGMap twoGMap = TwoGMap.fromFaces(new int[][] { { 0, 1, 2, 3 }, { 3, 2, 4, 5 } });
+
+        assertEquals(16, twoGMap.ngMap().dartCount());
+        assertEquals(2, twoGMap.ngMap().linkCount(2));
+        assertEquals(7, twoGMap.ngMap().cells(1).count());
+    }
+
+    @Test
+    public void splitEdgeAddsAVertexOnBothSides() {
+        // Dart 5 is the first quad's dart at vertex 2 on the edge 2-3 the quads share
+        TwoGMap twoGMap = TwoGMap.fromFaces(new int[][] { { 0, 1, 2, 3 }, { 3, 2, 4, 5 } });
+        NGMap ngMap = twoGMap.ngMap();
+        ngMap.putAttribute(new NGMap.Dart(5), 1, new StringAttr(EDGE_1));
+
+        NGMap.Dart middle = twoGMap.splitEdge(new NGMap.Dart(5));
+        assertTrue(ngMap.isValid());
+        assertEquals(20, ngMap.dartCount());
+        assertEquals(4, ngMap.iCell(middle, 0).size());
+        assertEquals(7, ngMap.cells(0).count());
+        assertEquals(8, ngMap.cells(1).count());
+        assertEquals(2, ngMap.cells(2).count());
+        assertEquals(10, ngMap.iCell(new NGMap.Dart(5), 2).size());
+        assertEquals(new StringAttr(EDGE_1), ngMap.getAttribute(new NGMap.Dart(5), 1).get());
+        assertEquals(new StringAttr(EDGE_1), ngMap.getAttribute(new NGMap.Dart(6), 1).get());
+    }
+
+    @Test
+    public void splitFaceAddsAnEdgeAcrossIt() {
+        // Darts 1 and 5 are at vertices 0 and 2 of the quad
+        TwoGMap twoGMap = TwoGMap.fromFaces(new int[][] { { 0, 1, 2, 3 } });
+        NGMap ngMap = twoGMap.ngMap();
+
+        NGMap.Dart dart = twoGMap.splitFace(new NGMap.Dart(1), new NGMap.Dart(5));
+        assertTrue(ngMap.isValid());
+        assertEquals(12, ngMap.dartCount());
+        assertEquals(5, ngMap.cells(1).count());
+        assertEquals(2, ngMap.cells(2).count());
+        assertEquals(6, ngMap.iCell(dart, 2).size());
+        assertEquals(6, ngMap.iCell(ngMap.alpha(dart, 2).get(), 2).size());
+    }
+
+    @Test
+    public void flipEdgeKeepsVertexAndFaceAttributes() {
+        // Dart 3 is the first triangle's dart at vertex 1 on the edge 1-2 the triangles share
+        TwoGMap twoGMap = TwoGMap.fromFaces(new int[][] { { 0, 1, 2 }, { 2, 1, 3 } });
+        NGMap ngMap = twoGMap.ngMap();
+        int[] vertexDarts = { 1, 2, 5, 10 };
+        for (int v = 0; v < vertexDarts.length; v++) {
+            ngMap.putAttribute(new NGMap.Dart(vertexDarts[v]), 0, new StringAttr("vertex_" + v));
+        }
+        ngMap.putAttribute(new NGMap.Dart(1), 2, new StringAttr("face_1"));
+        ngMap.putAttribute(new NGMap.Dart(7), 2, new StringAttr("face_2"));
+
+        twoGMap.flipEdge(new NGMap.Dart(3));
+        assertTrue(ngMap.isValid());
+        assertEquals(4, ngMap.cells(0).count());
+        assertEquals(5, ngMap.cells(1).count());
+        // The edge now runs from 0 to 3
+        assertEquals(4, ngMap.iCell(new NGMap.Dart(1), 0).size());
+        assertEquals(4, ngMap.iCell(new NGMap.Dart(10), 0).size());
+        assertEquals(2, ngMap.iCell(new NGMap.Dart(2), 0).size());
+        for (int v = 0; v < vertexDarts.length; v++) {
+            assertEquals(new StringAttr("vertex_" + v), ngMap.getAttribute(new NGMap.Dart(vertexDarts[v]), 0).get());
+        }
+        // The triangles are 0 1 3, with darts of both old ones, and 3 2 0
+        assertEquals(new StringAttr("face_1"), ngMap.getAttribute(new NGMap.Dart(9), 2).get());
+        assertEquals(new StringAttr("face_2"), ngMap.getAttribute(new NGMap.Dart(5), 2).get());
+    }
+
+    @Test
+    public void collapseEdgeBetweenQuadsLeavesTriangles() {
+        // A 2x2 grid of quads; dart 3 is at vertex 1 on the edge 1-4
+        TwoGMap twoGMap = TwoGMap.fromFaces(new int[][] {
+                { 0, 1, 4, 3 }, { 1, 2, 5, 4 }, { 3, 4, 7, 6 }, { 4, 5, 8, 7 } });
+        NGMap ngMap = twoGMap.ngMap();
+
+        NGMap.Dart vertex = twoGMap.collapseEdge(new NGMap.Dart(3));
+        assertTrue(ngMap.isValid());
+        assertEquals(28, ngMap.dartCount());
+        assertEquals(8, ngMap.cells(0).count());
+        assertEquals(11, ngMap.cells(1).count());
+        assertEquals(4, ngMap.cells(2).count());
+        assertEquals(8, ngMap.iCell(vertex, 0).size());
+    }
+
+    @Test
+    public void collapseEdgeDissolvesItsTriangles() {
+        // An octahedron; dart 1 is at vertex 0 on the edge 0-1, dart 6 on the edge 2-0 and dart 3 on the edge 1-2
+        TwoGMap twoGMap = TwoGMap.fromFaces(new int[][] {
+                { 0, 1, 2 }, { 0, 2, 3 }, { 0, 3, 4 }, { 0, 4, 1 },
+                { 5, 2, 1 }, { 5, 3, 2 }, { 5, 4, 3 }, { 5, 1, 4 } });
+        NGMap ngMap = twoGMap.ngMap();
+        ngMap.putAttribute(new NGMap.Dart(1), 0, new StringAttr(VERTEX_1));
+        ngMap.putAttribute(new NGMap.Dart(2), 0, new StringAttr(VERTEX_2));
+        ngMap.putAttribute(new NGMap.Dart(6), 1, new StringAttr(EDGE_1));
+        ngMap.putAttribute(new NGMap.Dart(3), 1, new StringAttr(EDGE_2));
+
+        NGMap.Dart vertex = twoGMap.collapseEdge(new NGMap.Dart(1));
+        assertTrue(ngMap.isValid());
+        assertEquals(36, ngMap.dartCount());
+        assertEquals(5, ngMap.cells(0).count());
+        assertEquals(9, ngMap.cells(1).count());
+        assertEquals(6, ngMap.cells(2).count());
+        assertEquals(new StringAttr(VERTEX_1), ngMap.getAttribute(vertex, 0).get());
+        // Dart 7 is across the edge 2-0, which took in the edge 1-2
+        assertEquals(new StringAttr(EDGE_1), ngMap.getAttribute(new NGMap.Dart(7), 1).get());
+        assertEquals(ngMap.cellId(new NGMap.Dart(7), 1), ngMap.cellId(ngMap.alpha(new NGMap.Dart(7), 2).get(), 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantFlipEdgeOfQuads() {
+        TwoGMap twoGMap = TwoGMap.fromFaces(new int[][] { { 0, 1, 2, 3 }, { 3, 2, 4, 5 } });
+        twoGMap.flipEdge(new NGMap.Dart(5));
+    }
+
     @Value
     private static final class StringAttr implements Attribute {
         private final String string;